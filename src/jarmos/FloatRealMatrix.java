@@ -0,0 +1,177 @@
+package jarmos;
+
+import org.apache.commons.math.linear.AbstractRealMatrix;
+import org.apache.commons.math.linear.ArrayRealVector;
+import org.apache.commons.math.linear.MatrixUtils;
+import org.apache.commons.math.linear.RealMatrix;
+import org.apache.commons.math.linear.RealVector;
+
+/**
+ * @short A RealMatrix storing its entries in single precision.
+ * 
+ * The entries are kept row-wise in one float array, which halves the memory (and memory bandwidth) compared to
+ * Array2DRowRealMatrix. All computations are carried out in double precision; values are rounded to float only when
+ * stored.
+ * 
+ * Used by jarmos.io.MathObjectReader when single precision loading is enabled.
+ * 
+ * @author Daniel Wirtz @date 2013-08-07
+ * 
+ */
+public class FloatRealMatrix extends AbstractRealMatrix {
+
+	private int cols;
+	private float[] data;
+	private int rows;
+
+	/**
+	 * Creates a new zero matrix.
+	 * 
+	 * @param rows
+	 * @param cols
+	 */
+	public FloatRealMatrix(int rows, int cols) {
+		this(new float[getLength(rows, cols)], rows, cols);
+	}
+
+	/**
+	 * Creates a new matrix using the given array directly (no copy).
+	 * 
+	 * @param data
+	 * The row-wise matrix data of length rows*cols
+	 * @param rows
+	 * @param cols
+	 */
+	public FloatRealMatrix(float[] data, int rows, int cols) {
+		if (rows < 0 || cols < 0 || data.length != (long) rows * cols) {
+			throw new IllegalArgumentException("Data length " + data.length + " does not match a " + rows + "x" + cols
+					+ " matrix.");
+		}
+		this.data = data;
+		this.rows = rows;
+		this.cols = cols;
+	}
+
+	/**
+	 * @param rows
+	 * @param cols
+	 * @return rows * cols, computed without int overflow
+	 * @throws IllegalArgumentException
+	 * If the dimensions are negative or the matrix does not fit into a single array
+	 */
+	private static int getLength(int rows, int cols) {
+		long len = (long) rows * cols;
+		if (rows < 0 || cols < 0 || len > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid matrix dimensions " + rows + "x" + cols + ".");
+		}
+		return (int) len;
+	}
+
+	@Override
+	public RealMatrix createMatrix(int rowDimension, int columnDimension) {
+		return new FloatRealMatrix(rowDimension, columnDimension);
+	}
+
+	@Override
+	public RealMatrix copy() {
+		return new FloatRealMatrix(data.clone(), rows, cols);
+	}
+
+	/**
+	 * Returns the row-wise data array of this matrix (no copy).
+	 * 
+	 * @return
+	 */
+	public float[] getDataRef() {
+		return data;
+	}
+
+	@Override
+	public double getEntry(int row, int column) {
+		MatrixUtils.checkRowIndex(this, row);
+		MatrixUtils.checkColumnIndex(this, column);
+		return data[row * cols + column];
+	}
+
+	@Override
+	public double[] getRow(int row) {
+		MatrixUtils.checkRowIndex(this, row);
+		double[] res = new double[cols];
+		int off = row * cols;
+		for (int j = 0; j < cols; j++) {
+			res[j] = data[off + j];
+		}
+		return res;
+	}
+
+	@Override
+	public double[] operate(double[] v) {
+		if (v.length != cols) {
+			throw new IllegalArgumentException("Vector length mismatch: got " + v.length + " but expected " + cols);
+		}
+		double[] out = new double[rows];
+		int off = 0;
+		for (int i = 0; i < rows; i++) {
+			double sum = 0;
+			for (int j = 0; j < cols; j++) {
+				sum += data[off + j] * v[j];
+			}
+			out[i] = sum;
+			off += cols;
+		}
+		return out;
+	}
+
+	@Override
+	public RealVector operate(RealVector v) {
+		return new ArrayRealVector(operate(v.getData()), false);
+	}
+
+	@Override
+	public double[] preMultiply(double[] v) {
+		if (v.length != rows) {
+			throw new IllegalArgumentException("Vector length mismatch: got " + v.length + " but expected " + rows);
+		}
+		double[] out = new double[cols];
+		int off = 0;
+		for (int i = 0; i < rows; i++) {
+			double vi = v[i];
+			for (int j = 0; j < cols; j++) {
+				out[j] += data[off + j] * vi;
+			}
+			off += cols;
+		}
+		return out;
+	}
+
+	@Override
+	public void setEntry(int row, int column, double value) {
+		MatrixUtils.checkRowIndex(this, row);
+		MatrixUtils.checkColumnIndex(this, column);
+		data[row * cols + column] = (float) value;
+	}
+
+	@Override
+	public void addToEntry(int row, int column, double increment) {
+		MatrixUtils.checkRowIndex(this, row);
+		MatrixUtils.checkColumnIndex(this, column);
+		data[row * cols + column] += increment;
+	}
+
+	@Override
+	public void multiplyEntry(int row, int column, double factor) {
+		MatrixUtils.checkRowIndex(this, row);
+		MatrixUtils.checkColumnIndex(this, column);
+		data[row * cols + column] *= factor;
+	}
+
+	@Override
+	public int getRowDimension() {
+		return rows;
+	}
+
+	@Override
+	public int getColumnDimension() {
+		return cols;
+	}
+}
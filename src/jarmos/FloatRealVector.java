@@ -0,0 +1,161 @@
+package jarmos;
+
+import org.apache.commons.math.linear.AbstractRealVector;
+import org.apache.commons.math.linear.ArrayRealVector;
+import org.apache.commons.math.linear.RealVector;
+
+/**
+ * @short A RealVector storing its entries in single precision.
+ * 
+ * The counterpart of FloatRealMatrix for vectors. Operations creating new vectors return double precision
+ * ArrayRealVector instances.
+ * 
+ * @author Daniel Wirtz @date 2013-08-07
+ * 
+ */
+public class FloatRealVector extends AbstractRealVector {
+
+	private float[] data;
+
+	/**
+	 * Creates a new zero vector.
+	 * 
+	 * @param size
+	 */
+	public FloatRealVector(int size) {
+		this(new float[size]);
+	}
+
+	/**
+	 * Creates a new vector using the given array directly (no copy).
+	 * 
+	 * @param data
+	 */
+	public FloatRealVector(float[] data) {
+		this.data = data;
+	}
+
+	@Override
+	public AbstractRealVector copy() {
+		return new FloatRealVector(data.clone());
+	}
+
+	/**
+	 * Returns the data array of this vector (no copy).
+	 * 
+	 * @return
+	 */
+	public float[] getDataRef() {
+		return data;
+	}
+
+	@Override
+	public double[] getData() {
+		double[] res = new double[data.length];
+		for (int i = 0; i < data.length; i++) {
+			res[i] = data[i];
+		}
+		return res;
+	}
+
+	@Override
+	public double dotProduct(RealVector v) {
+		checkVectorDimensions(v);
+		double sum = 0;
+		for (int i = 0; i < data.length; i++) {
+			sum += data[i] * v.getEntry(i);
+		}
+		return sum;
+	}
+
+	@Override
+	public RealVector ebeMultiply(RealVector v) {
+		checkVectorDimensions(v);
+		double[] res = getData();
+		for (int i = 0; i < data.length; i++) {
+			res[i] *= v.getEntry(i);
+		}
+		return new ArrayRealVector(res, false);
+	}
+
+	@Override
+	public RealVector ebeDivide(RealVector v) {
+		checkVectorDimensions(v);
+		double[] res = getData();
+		for (int i = 0; i < data.length; i++) {
+			res[i] /= v.getEntry(i);
+		}
+		return new ArrayRealVector(res, false);
+	}
+
+	@Override
+	public RealVector projection(RealVector v) {
+		return v.mapMultiply(dotProduct(v) / v.dotProduct(v));
+	}
+
+	@Override
+	public double getEntry(int index) {
+		checkIndex(index);
+		return data[index];
+	}
+
+	@Override
+	public void setEntry(int index, double value) {
+		checkIndex(index);
+		data[index] = (float) value;
+	}
+
+	@Override
+	public int getDimension() {
+		return data.length;
+	}
+
+	@Override
+	public RealVector append(RealVector v) {
+		return new ArrayRealVector(getData(), v.getData());
+	}
+
+	@Override
+	public RealVector append(double d) {
+		return append(new double[] { d });
+	}
+
+	@Override
+	public RealVector append(double[] a) {
+		return new ArrayRealVector(getData(), a);
+	}
+
+	@Override
+	public RealVector getSubVector(int index, int n) {
+		checkIndex(index);
+		checkIndex(index + n - 1);
+		double[] res = new double[n];
+		for (int i = 0; i < n; i++) {
+			res[i] = data[index + i];
+		}
+		return new ArrayRealVector(res, false);
+	}
+
+	@Override
+	public boolean isNaN() {
+		for (float f : data) {
+			if (Float.isNaN(f)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean isInfinite() {
+		if (isNaN()) {
+			return false;
+		}
+		for (float f : data) {
+			if (Float.isInfinite(f)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
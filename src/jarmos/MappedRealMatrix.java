@@ -0,0 +1,142 @@
+package jarmos;
+
+import java.nio.DoubleBuffer;
+
+import org.apache.commons.math.linear.AbstractRealMatrix;
+import org.apache.commons.math.linear.Array2DRowRealMatrix;
+import org.apache.commons.math.linear.ArrayRealVector;
+import org.apache.commons.math.linear.MatrixUtils;
+import org.apache.commons.math.linear.RealMatrix;
+import org.apache.commons.math.linear.RealVector;
+
+/**
+ * @short A read-only RealMatrix backed by a (memory mapped) DoubleBuffer.
+ * 
+ * The matrix entries are stored row-wise inside the buffer, as in the binary matrix files read by
+ * jarmos.io.MathObjectReader. When backed by a mapped region of such a file, the matrix data is not copied onto the
+ * heap; only the pages actually touched by getEntry, getRow or operate are loaded by the operating system.
+ * 
+ * Any modifying operations throw an UnsupportedOperationException; use copy() to obtain a modifiable on-heap matrix.
+ * 
+ * @author Daniel Wirtz @date 2013-08-07
+ * 
+ */
+public class MappedRealMatrix extends AbstractRealMatrix {
+
+	private int cols;
+	private DoubleBuffer data;
+	private int rows;
+
+	/**
+	 * Creates a new mapped matrix.
+	 * 
+	 * @param data
+	 * The buffer containing rows*cols values in row-wise order, starting at the buffers current position.
+	 * @param rows
+	 * @param cols
+	 */
+	public MappedRealMatrix(DoubleBuffer data, int rows, int cols) {
+		if (rows < 0 || cols < 0) {
+			throw new IllegalArgumentException("Invalid matrix dimensions " + rows + "x" + cols + ".");
+		}
+		if (data.remaining() < (long) rows * cols) {
+			throw new IllegalArgumentException("Buffer of size " + data.remaining() + " too small for a " + rows + "x"
+					+ cols + " matrix.");
+		}
+		this.data = data.slice();
+		this.rows = rows;
+		this.cols = cols;
+	}
+
+	@Override
+	public RealMatrix createMatrix(int rowDimension, int columnDimension) {
+		return new Array2DRowRealMatrix(rowDimension, columnDimension);
+	}
+
+	/**
+	 * Returns an on-heap copy of this matrix.
+	 * 
+	 * @see org.apache.commons.math.linear.AbstractRealMatrix#copy()
+	 */
+	@Override
+	public RealMatrix copy() {
+		return new Array2DRowRealMatrix(getData(), false);
+	}
+
+	@Override
+	public double[][] getData() {
+		double[][] res = new double[rows][];
+		DoubleBuffer d = data.duplicate();
+		for (int i = 0; i < rows; i++) {
+			res[i] = new double[cols];
+			d.get(res[i]);
+		}
+		return res;
+	}
+
+	@Override
+	public double getEntry(int row, int column) {
+		MatrixUtils.checkRowIndex(this, row);
+		MatrixUtils.checkColumnIndex(this, column);
+		return data.get(row * cols + column);
+	}
+
+	@Override
+	public double[] getRow(int row) {
+		MatrixUtils.checkRowIndex(this, row);
+		double[] res = new double[cols];
+		DoubleBuffer d = data.duplicate();
+		d.position(row * cols);
+		d.get(res);
+		return res;
+	}
+
+	@Override
+	public double[] operate(double[] v) {
+		if (v.length != cols) {
+			throw new IllegalArgumentException("Vector length mismatch: got " + v.length + " but expected " + cols);
+		}
+		double[] out = new double[rows];
+		DoubleBuffer d = data.duplicate();
+		double[] row = new double[cols];
+		for (int i = 0; i < rows; i++) {
+			d.get(row);
+			double sum = 0;
+			for (int j = 0; j < cols; j++) {
+				sum += row[j] * v[j];
+			}
+			out[i] = sum;
+		}
+		return out;
+	}
+
+	@Override
+	public RealVector operate(RealVector v) {
+		return new ArrayRealVector(operate(v.getData()), false);
+	}
+
+	@Override
+	public void setEntry(int row, int column, double value) {
+		throw new UnsupportedOperationException("MappedRealMatrix instances are read-only.");
+	}
+
+	@Override
+	public void addToEntry(int row, int column, double increment) {
+		throw new UnsupportedOperationException("MappedRealMatrix instances are read-only.");
+	}
+
+	@Override
+	public void multiplyEntry(int row, int column, double factor) {
+		throw new UnsupportedOperationException("MappedRealMatrix instances are read-only.");
+	}
+
+	@Override
+	public int getRowDimension() {
+		return rows;
+	}
+
+	@Override
+	public int getColumnDimension() {
+		return cols;
+	}
+}
@@ -0,0 +1,139 @@
+package jarmos;
+
+import java.nio.DoubleBuffer;
+
+import org.apache.commons.math.linear.AbstractRealVector;
+import org.apache.commons.math.linear.ArrayRealVector;
+import org.apache.commons.math.linear.RealVector;
+
+/**
+ * @short A read-only RealVector backed by a (memory mapped) DoubleBuffer.
+ * 
+ * The counterpart of MappedRealMatrix for vectors. Any operations creating new vectors return on-heap ArrayRealVector
+ * instances, modifying operations throw an UnsupportedOperationException.
+ * 
+ * @author Daniel Wirtz @date 2013-08-07
+ * 
+ */
+public class MappedRealVector extends AbstractRealVector {
+
+	private DoubleBuffer data;
+	private int size;
+
+	/**
+	 * Creates a new mapped vector using all remaining values of the given buffer.
+	 * 
+	 * @param data
+	 */
+	public MappedRealVector(DoubleBuffer data) {
+		this.data = data.slice();
+		size = this.data.remaining();
+	}
+
+	/**
+	 * Returns an on-heap copy of this vector.
+	 * 
+	 * @see org.apache.commons.math.linear.AbstractRealVector#copy()
+	 */
+	@Override
+	public AbstractRealVector copy() {
+		return new ArrayRealVector(getData(), false);
+	}
+
+	@Override
+	public double[] getData() {
+		double[] res = new double[size];
+		data.duplicate().get(res);
+		return res;
+	}
+
+	@Override
+	public RealVector ebeMultiply(RealVector v) {
+		checkVectorDimensions(v);
+		double[] res = getData();
+		for (int i = 0; i < size; i++) {
+			res[i] *= v.getEntry(i);
+		}
+		return new ArrayRealVector(res, false);
+	}
+
+	@Override
+	public RealVector ebeDivide(RealVector v) {
+		checkVectorDimensions(v);
+		double[] res = getData();
+		for (int i = 0; i < size; i++) {
+			res[i] /= v.getEntry(i);
+		}
+		return new ArrayRealVector(res, false);
+	}
+
+	@Override
+	public RealVector projection(RealVector v) {
+		return v.mapMultiply(dotProduct(v) / v.dotProduct(v));
+	}
+
+	@Override
+	public double getEntry(int index) {
+		checkIndex(index);
+		return data.get(index);
+	}
+
+	@Override
+	public void setEntry(int index, double value) {
+		throw new UnsupportedOperationException("MappedRealVector instances are read-only.");
+	}
+
+	@Override
+	public int getDimension() {
+		return size;
+	}
+
+	@Override
+	public RealVector append(RealVector v) {
+		return new ArrayRealVector(getData(), v.getData());
+	}
+
+	@Override
+	public RealVector append(double d) {
+		return append(new double[] { d });
+	}
+
+	@Override
+	public RealVector append(double[] a) {
+		return new ArrayRealVector(getData(), a);
+	}
+
+	@Override
+	public RealVector getSubVector(int index, int n) {
+		checkIndex(index);
+		checkIndex(index + n - 1);
+		double[] res = new double[n];
+		DoubleBuffer d = data.duplicate();
+		d.position(index);
+		d.get(res);
+		return new ArrayRealVector(res, false);
+	}
+
+	@Override
+	public boolean isNaN() {
+		for (int i = 0; i < size; i++) {
+			if (Double.isNaN(data.get(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public boolean isInfinite() {
+		if (isNaN()) {
+			return false;
+		}
+		for (int i = 0; i < size; i++) {
+			if (Double.isInfinite(data.get(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -1,5 +1,7 @@
 package jarmos;
 
+import java.nio.DoubleBuffer;
+
 import org.apache.commons.math.linear.Array2DRowRealMatrix;
 import org.apache.commons.math.linear.ArrayRealVector;
 import org.apache.commons.math.linear.RealMatrix;
@@ -28,6 +30,42 @@ public class MathFactory {
 		return new Array2DRowRealMatrix(data);
 	}
 
+	/**
+	 * @param data
+	 * @param copyArray
+	 * Whether to copy the data array. If false, the matrix uses the given array directly.
+	 * @return
+	 */
+	public static RealMatrix createRealMatrix(double[][] data, boolean copyArray) {
+		return new Array2DRowRealMatrix(data, copyArray);
+	}
+
+	/**
+	 * Creates a read-only matrix directly backed by the given (memory mapped) buffer.
+	 * 
+	 * @param data
+	 * The row-wise matrix data, starting at the buffers current position
+	 * @param rows
+	 * @param cols
+	 * @return A MappedRealMatrix instance
+	 */
+	public static RealMatrix createRealMatrix(DoubleBuffer data, int rows, int cols) {
+		return new MappedRealMatrix(data, rows, cols);
+	}
+
+	/**
+	 * Creates a single precision matrix using the given array directly.
+	 * 
+	 * @param data
+	 * The row-wise matrix data of length rows*cols
+	 * @param rows
+	 * @param cols
+	 * @return A FloatRealMatrix instance
+	 */
+	public static RealMatrix createRealMatrix(float[] data, int rows, int cols) {
+		return new FloatRealMatrix(data, rows, cols);
+	}
+
 	public static RealVector createRealVector() {
 		return new ArrayRealVector();
 	}
@@ -39,4 +77,35 @@ public class MathFactory {
 	public static RealVector createRealVector(double[] data) {
 		return new ArrayRealVector(data);
 	}
+
+	/**
+	 * @param data
+	 * @param copyArray
+	 * Whether to copy the data array. If false, the vector uses the given array directly.
+	 * @return
+	 */
+	public static RealVector createRealVector(double[] data, boolean copyArray) {
+		return new ArrayRealVector(data, copyArray);
+	}
+
+	/**
+	 * Creates a read-only vector directly backed by the given (memory mapped) buffer.
+	 * 
+	 * @param data
+	 * The vector data, all remaining values of the buffer
+	 * @return A MappedRealVector instance
+	 */
+	public static RealVector createRealVector(DoubleBuffer data) {
+		return new MappedRealVector(data);
+	}
+
+	/**
+	 * Creates a single precision vector using the given array directly.
+	 * 
+	 * @param data
+	 * @return A FloatRealVector instance
+	 */
+	public static RealVector createRealVector(float[] data) {
+		return new FloatRealVector(data);
+	}
 }
@@ -3,7 +3,9 @@ package jarmos;
 import jarmos.geometry.GeometryData;
 import jarmos.io.AModelManager;
 import jarmos.io.AModelManager.ModelManagerException;
+import jarmos.io.ConcurrentLoader;
 import jarmos.io.MathObjectReader.MathReaderException;
+import jarmos.util.IProgressReporter;
 
 import java.io.IOException;
 
@@ -27,6 +29,22 @@ public abstract class ModelBase {
 
 	private int numDoFfields;
 
+	private IProgressReporter progress = null;
+
+	/**
+	 * Creates a loader for concurrent loading of independent offline data files, reporting to the progress reporter
+	 * set via {@link #setProgressReporter(IProgressReporter)}.
+	 * 
+	 * Subclasses can use this to load their model matrices in parallel.
+	 * 
+	 * @param title
+	 * The progress title
+	 * @return A new ConcurrentLoader
+	 */
+	protected ConcurrentLoader createLoader(String title) {
+		return new ConcurrentLoader(progress, title);
+	}
+
 	/**
 	 * Loads the model's offline data.
 	 * 
@@ -41,7 +59,7 @@ public abstract class ModelBase {
 		 * Load geometry
 		 */
 		geoData = new GeometryData();
-		geoData.loadModelGeometry(m);
+		geoData.loadModelGeometry(m, progress);
 
 		/*
 		 * Read number of DoF-fields
@@ -70,6 +88,16 @@ public abstract class ModelBase {
 		return geoData;
 	}
 
+	/**
+	 * Sets a progress reporter for the offline data loading.
+	 * 
+	 * @param pr
+	 * The progress reporter, or null for no progress reporting
+	 */
+	public void setProgressReporter(IProgressReporter pr) {
+		progress = pr;
+	}
+
 	/**
 	 * Returns the number of degree-of-freedom fields generated/computed by the model
 	 * 
@@ -2,8 +2,10 @@ package jarmos;
 
 import jarmos.io.AModelManager;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Date;
+import java.util.concurrent.Callable;
 
 /**
  * @short Represents a short description of a model managed by a model manager.
@@ -43,16 +45,104 @@ public class ModelDescriptor {
 	 */
 	public String shortDescription = null;
 
+	/**
+	 * The file name of the model image inside the model directory, if given. Otherwise null.
+	 */
+	public String imageFile = null;
+
+	/**
+	 * A hash (CRC32) of the model's model.xml contents, which can be used to detect model changes. -1 if unknown.
+	 */
+	public long contentHash = -1;
+
 	/**
 	 * An input stream pointing to an available model image, if given. Otherwise null.
+	 * 
+	 * Only set by {@link #ModelDescriptor(String, String, ModelType, InputStream, Date)}. The descriptors of the model
+	 * managers open their images lazily and leave this field null.
+	 * 
+	 * @deprecated Use {@link #openImage()} or a ThumbnailCache
 	 */
-	public InputStream image;
+	@Deprecated
+	public InputStream image = null;
+
+	private Callable<InputStream> imageSource;
 
-	public ModelDescriptor(String mdir, String t, ModelType type, InputStream i, Date created) {
+	/**
+	 * @param mdir
+	 * @param t
+	 * @param type
+	 * @param image
+	 * Opens a stream of the model image when called, may be null if no image is available. The image is not opened
+	 * before {@link #openImage()} is called.
+	 * @param created
+	 */
+	public ModelDescriptor(String mdir, String t, ModelType type, Callable<InputStream> image, Date created) {
 		modeldir = mdir;
 		title = t;
-		image = i;
+		imageSource = image;
 		this.type = type;
 		this.created = created;
 	}
+
+	/**
+	 * @param mdir
+	 * @param t
+	 * @param type
+	 * @param i
+	 * A stream of the model image or null, returned by {@link #openImage()}
+	 * @param created
+	 * @deprecated Use {@link #ModelDescriptor(String, String, ModelType, Callable, Date)}, which opens the image only
+	 * when needed
+	 */
+	@Deprecated
+	public ModelDescriptor(String mdir, String t, ModelType type, final InputStream i, Date created) {
+		this(mdir, t, type, i == null ? null : new Callable<InputStream>() {
+			@Override
+			public InputStream call() {
+				return i;
+			}
+		}, created);
+		image = i;
+	}
+
+	/**
+	 * Opens a new stream of the model image. The caller is responsible for closing it.
+	 * 
+	 * Use a ThumbnailCache to load and keep decoded images for display.
+	 * 
+	 * @return The image stream or null if the model has no image
+	 * @throws IOException
+	 * If the model's image cannot be opened
+	 */
+	public InputStream openImage() throws IOException {
+		if (imageSource == null) {
+			return null;
+		}
+		try {
+			return imageSource.call();
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IOException("Opening the image of model " + modeldir + " failed", e);
+		}
+	}
+
+	/**
+	 * Opens a new stream of the model image like the former image field, i.e. falls back to the "notfound.png"
+	 * resource if the model has no image or its image cannot be opened.
+	 * 
+	 * @return The image stream
+	 * @deprecated Use {@link #openImage()} or a ThumbnailCache
+	 */
+	@Deprecated
+	public InputStream getImage() {
+		InputStream in = null;
+		try {
+			in = openImage();
+		} catch (IOException e) {
+			Log.d("ModelDescriptor", "Image of model " + modeldir + " not available: " + e.getMessage());
+		}
+		return in != null ? in : ModelDescriptor.class.getClassLoader().getResourceAsStream("notfound.png");
+	}
 }
@@ -3,11 +3,21 @@ package jarmos.geometry;
 import jarmos.Log;
 import jarmos.ModelType;
 import jarmos.io.AModelManager;
+import jarmos.io.ConcurrentLoader;
+import jarmos.io.FileModelManager;
 import jarmos.io.MathObjectReader;
+import jarmos.io.NumberTokenizer;
+import jarmos.util.IProgressReporter;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 /**
  * This is a container class for all geometry-related data of a reduced model.
@@ -23,6 +33,31 @@ import java.util.List;
  */
 public class GeometryData {
 
+	/**
+	 * File name of the binary vertex transformation function numbers for converted rbappmit geometry.
+	 */
+	public static final String RBAPPMIT_LTFUNC_FILE = "vertex_ltfuncs.bin";
+
+	/**
+	 * File name of the binary face subdomain numbers for converted rbappmit geometry.
+	 */
+	public static final String RBAPPMIT_FACEDOMAIN_FILE = "face_domains.bin";
+
+	/**
+	 * File name of the information on converted rbappmit geometry, containing the version of the geometry.dat file it
+	 * has been converted from and the number of subdomains. Written last, so that it marks a complete conversion.
+	 */
+	public static final String RBAPPMIT_INFO_FILE = "geometry_info.bin";
+
+	/**
+	 * If set, geometry loaded from an rbappmit geometry.dat text file via a FileModelManager is converted once to the
+	 * binary vertices.bin/faces.bin layout (plus the rbappmit-specific domain information), which is used on any
+	 * later loads.
+	 * 
+	 * Default: false
+	 */
+	public static boolean ConvertTextGeometry = false;
+
 	public float boxsize; // bounding box size
 
 	// /**
@@ -298,11 +333,46 @@ public class GeometryData {
 	 * 
 	 * So far those comprise a nodes.bin file for the geometry vertices and a faces.bin containing the faces and their
 	 * three edge vertex numbers.
+	 * 
+	 * The files are fetched concurrently using a ConcurrentLoader; post-processing starts when all files are read.
 	 */
-	private void loadGeometry(AModelManager m) throws IOException {
+	private void loadGeometry(final AModelManager m, IProgressReporter pr) throws IOException {
+
+		final MathObjectReader mr = new MathObjectReader();
+		ConcurrentLoader l = new ConcurrentLoader(pr, "Loading geometry");
+		Future<float[]> fvertices = l.submit(new Callable<float[]>() {
+			@Override
+			public float[] call() throws Exception {
+				// Copy the shared array, as the public field may be modified
+				return m.readMathObject("vertices.bin", float[].class, mr).clone();
+			}
+		});
+		Future<short[]> ffaces = l.submit(new Callable<short[]>() {
+			@Override
+			public short[] call() throws Exception {
+				if (m.modelFileExists("faces.bin") // check included for backwards
+													// compatibility.
+						|| m.xmlTagExists("geometry.hasFaces")
+						&& Boolean.parseBoolean(m.getModelXMLTagValue("geometry.hasFaces"))) {
+					// Copy the shared array, as it is modified below
+					return m.readMathObject("faces.bin", short[].class, mr).clone();
+				}
+				return null;
+			}
+		});
+		Future<short[]> fedges = l.submit(new Callable<short[]>() {
+			@Override
+			public short[] call() throws Exception {
+				if (m.modelFileExists("edges.bin")) {
+					// Copy the shared array, as the public field may be modified
+					return m.readMathObject("edges.bin", short[].class, mr).clone();
+				}
+				return null;
+			}
+		});
+		l.join();
 
-		MathObjectReader mr = new MathObjectReader();
-		originalVertices = mr.readRawFloatVector(m.getInStream("vertices.bin"));
+		originalVertices = l.get(fvertices);
 		Log.d("GeoData", "Loaded " + originalVertices.length + " vertex values");
 
 		/*
@@ -328,12 +398,8 @@ public class GeometryData {
 		// Only one transformation function for JRB models if any
 		vertexLTFuncNr = new int[numOrigVertices];
 
-		faces = null;
-		if (m.modelFileExists("faces.bin") // check included for backwards
-											// compatibility.
-				|| m.xmlTagExists("geometry.hasFaces")
-				&& Boolean.parseBoolean(m.getModelXMLTagValue("geometry.hasFaces"))) {
-			faces = mr.readRawShortVector(m.getInStream("faces.bin"));
+		faces = l.get(ffaces);
+		if (faces != null) {
 			// Subtract the indices, as the nodes are addressed with zero offset
 			// inside java arrays
 			for (int i = 0; i < faces.length; i++) {
@@ -345,10 +411,7 @@ public class GeometryData {
 			domain_of_face = new int[numFaces];
 		}
 
-		edges = null;
-		if (m.modelFileExists("edges.bin")) {
-			edges = mr.readRawShortVector(m.getInStream("edges.bin"));
-		}
+		edges = l.get(fedges);
 
 		// dir_nodes = null;
 		// if (m.modelFileExists("dir_nodes.bin")) {
@@ -363,11 +426,23 @@ public class GeometryData {
 	 * @return True if loading was successful, false otherwise
 	 */
 	public boolean loadModelGeometry(AModelManager m) {
+		return loadModelGeometry(m, null);
+	}
+
+	/**
+	 * Reads the geometry data for the current model using the ModelManager.
+	 * 
+	 * @param m
+	 * @param pr
+	 * A progress reporter for the geometry file loading, may be null.
+	 * @return True if loading was successful, false otherwise
+	 */
+	public boolean loadModelGeometry(AModelManager m, IProgressReporter pr) {
 
 		try {
 			// rb model or rbappmit-type model with new geometry
 			if (m.getModelType() == ModelType.JRB || m.getModelType() == ModelType.JKerMor) {
-				loadGeometry(m);
+				loadGeometry(m, pr);
 			} else if (m.getModelType() == ModelType.rbappmit) {
 				loadrbappmitGeometry(m);
 			} else {
@@ -397,65 +472,196 @@ public class GeometryData {
 	/**
 	 * Old geometry loading method, using the geometry.dat file which is to parse! (slow)
 	 * 
-	 * @param tokens
+	 * The text file is read using a streaming NumberTokenizer filling the geometry arrays directly. If a binary
+	 * version of the geometry has been written before (see {@link #ConvertTextGeometry}) from the current version of
+	 * geometry.dat, it is used instead.
+	 * 
+	 * @param m
 	 * @throws IOException
 	 */
 	private void loadrbappmitGeometry(AModelManager m) throws IOException {
-		String[] tokens = null;
+		if (m.modelFileExists(RBAPPMIT_INFO_FILE) && m.modelFileExists("vertices.bin") && m.modelFileExists("faces.bin")
+				&& m.modelFileExists(RBAPPMIT_LTFUNC_FILE) && m.modelFileExists(RBAPPMIT_FACEDOMAIN_FILE)) {
+			if (loadrbappmitBinaryGeometry(m)) {
+				return;
+			}
+		}
+
 		BufferedReader reader = m.getBufReader("geometry.dat");
 		try {
-			tokens = reader.readLine().split(" ");
+			NumberTokenizer tokens = new NumberTokenizer(reader);
+
+			/**
+			 * Read nodes and their locations
+			 */
+			numOrigVertices = tokens.nextInt();
+			originalVertices = new float[numOrigVertices * 3];
+			for (int i = 0; i < numOrigVertices * 3; i++) {
+				originalVertices[i] = tokens.nextFloat();
+			}
+
+			/**
+			 * Read faces and their connections
+			 */
+			subdomains = tokens.nextInt();
+			numFaces = tokens.nextInt();
+			faces = new short[numFaces * 3];
+			for (int i = 0; i < numFaces * 3; i++) {
+				faces[i] = tokens.nextShort();
+			}
+			/**
+			 * Read in the number of the transformation function for each vertex (effectively modeling different
+			 * functions for different geometry domains)
+			 */
+			vertexLTFuncNr = new int[numOrigVertices];
+			for (int i = 0; i < numOrigVertices; i++) {
+				vertexLTFuncNr[i] = tokens.nextInt();
+			}
+			domain_of_face = new int[numFaces];
+			for (int i = 0; i < numFaces; i++) {
+				domain_of_face[i] = tokens.nextInt();
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid geometry.dat file: " + e.getMessage(), e);
 		} finally {
 			reader.close();
 		}
-
-		/**
-		 * Read nodes and their locations
-		 */
-		numOrigVertices = Integer.parseInt(tokens[0]);
-		int count = 1;
-		originalVertices = new float[numOrigVertices * 3];
-		for (int i = 0; i < numOrigVertices; i++) {
-			originalVertices[i * 3 + 0] = Float.parseFloat(tokens[count]);
-			originalVertices[i * 3 + 1] = Float.parseFloat(tokens[count + 1]);
-			originalVertices[i * 3 + 2] = Float.parseFloat(tokens[count + 2]);
-			count += 3;
-		}
 		// Manually check if geometry is 2D
 		is2D = true;
 		for (int i = 0; i < numOrigVertices; i++) {
 			is2D &= originalVertices[i * 3 + 2] == 0;
 		}
+		// No edges for rbappmit-models (new feature)
+		edges = null;
 
-		/**
-		 * Read faces and their connections
-		 */
-		subdomains = Integer.parseInt(tokens[count]);
-		numFaces = Integer.parseInt(tokens[count + 1]);
-		count += 2;
-		faces = new short[numFaces * 3];
-		for (int i = 0; i < numFaces; i++) {
-			faces[i * 3 + 0] = Short.parseShort(tokens[count]);
-			faces[i * 3 + 1] = Short.parseShort(tokens[count + 1]);
-			faces[i * 3 + 2] = Short.parseShort(tokens[count + 2]);
-			count += 3;
+		if (ConvertTextGeometry && m instanceof FileModelManager) {
+			writerbappmitBinaryGeometry((FileModelManager) m);
 		}
-		/**
-		 * Read in the number of the transformation function for each vertex (effectively modeling different functions
-		 * for different geometry domains)
-		 */
-		vertexLTFuncNr = new int[numOrigVertices];
-		for (int i = 0; i < numOrigVertices; i++) {
-			vertexLTFuncNr[i] = Integer.parseInt(tokens[count]);
-			count++;
+	}
+
+	/**
+	 * Loads rbappmit geometry from the binary files written by writerbappmitBinaryGeometry.
+	 * 
+	 * @param m
+	 * @return False if the binary files have been converted from another version of geometry.dat
+	 * @throws IOException
+	 */
+	private boolean loadrbappmitBinaryGeometry(AModelManager m) throws IOException {
+		DataInputStream in = new DataInputStream(m.getInStream(RBAPPMIT_INFO_FILE));
+		String source;
+		try {
+			source = in.readUTF();
+			subdomains = in.readInt();
+		} finally {
+			in.close();
 		}
-		domain_of_face = new int[numFaces];
-		for (int i = 0; i < numFaces; i++) {
-			domain_of_face[i] = Integer.parseInt(tokens[count]);
-			count++;
+		if (m.modelFileExists("geometry.dat") && !source.equals(m.getModelFileVersion("geometry.dat"))) {
+			Log.d("GeoData", "Binary rbappmit geometry is outdated, parsing geometry.dat");
+			return false;
+		}
+		MathObjectReader mr = new MathObjectReader();
+		// Copy the shared arrays, as the public fields may be modified
+		originalVertices = m.readMathObject("vertices.bin", float[].class, mr).clone();
+		numOrigVertices = originalVertices.length / 3;
+		faces = m.readMathObject("faces.bin", short[].class, mr).clone();
+		for (int i = 0; i < faces.length; i++) {
+			faces[i] -= 1;
+		}
+		numFaces = faces.length / 3;
+		short[] hlp = m.readMathObject(RBAPPMIT_LTFUNC_FILE, short[].class, mr);
+		vertexLTFuncNr = new int[hlp.length];
+		for (int i = 0; i < hlp.length; i++) {
+			vertexLTFuncNr[i] = hlp[i];
+		}
+		hlp = m.readMathObject(RBAPPMIT_FACEDOMAIN_FILE, short[].class, mr);
+		domain_of_face = new int[hlp.length];
+		for (int i = 0; i < hlp.length; i++) {
+			domain_of_face[i] = hlp[i];
+		}
+		is2D = true;
+		for (int i = 0; i < numOrigVertices; i++) {
+			is2D &= originalVertices[i * 3 + 2] == 0;
 		}
-		// No edges for rbappmit-models (new feature)
 		edges = null;
+		Log.d("GeoData", "Loaded binary rbappmit geometry with " + numOrigVertices + " vertices and " + numFaces
+				+ " faces");
+		return true;
+	}
+
+	/**
+	 * Writes the currently loaded rbappmit geometry to the binary geometry files (big endian), so that later loads can
+	 * skip parsing the geometry.dat text file.
+	 * 
+	 * The faces are stored with one-based indices as in the faces.bin files of JRB models. Geometry whose indices,
+	 * transformation function or domain numbers do not fit into shorts is not converted. Failures are logged only,
+	 * as the geometry itself has been loaded successfully.
+	 * 
+	 * @param m
+	 */
+	private void writerbappmitBinaryGeometry(FileModelManager m) {
+		String source = m.getModelFileVersion("geometry.dat");
+		if (source == null) {
+			return;
+		}
+		for (short f : faces) {
+			if (f == Short.MAX_VALUE) {
+				Log.w("GeoData", "Too many vertices for binary rbappmit geometry, keeping geometry.dat");
+				return;
+			}
+		}
+		if (!fitsShort(vertexLTFuncNr) || !fitsShort(domain_of_face)) {
+			Log.w("GeoData", "Function or domain numbers out of range for binary rbappmit geometry, "
+					+ "keeping geometry.dat");
+			return;
+		}
+		try {
+
+			ByteArrayOutputStream bout = new ByteArrayOutputStream(4 + originalVertices.length * 4);
+			DataOutputStream out = new DataOutputStream(bout);
+			out.writeInt(originalVertices.length);
+			for (float f : originalVertices) {
+				out.writeFloat(f);
+			}
+			m.writeModelFile("vertices.bin", new ByteArrayInputStream(bout.toByteArray()));
+
+			bout.reset();
+			out.writeInt(faces.length);
+			for (short f : faces) {
+				out.writeShort(f + 1);
+			}
+			m.writeModelFile("faces.bin", new ByteArrayInputStream(bout.toByteArray()));
+
+			bout.reset();
+			out.writeInt(vertexLTFuncNr.length);
+			for (int f : vertexLTFuncNr) {
+				out.writeShort(f);
+			}
+			m.writeModelFile(RBAPPMIT_LTFUNC_FILE, new ByteArrayInputStream(bout.toByteArray()));
+
+			bout.reset();
+			out.writeInt(domain_of_face.length);
+			for (int d : domain_of_face) {
+				out.writeShort(d);
+			}
+			m.writeModelFile(RBAPPMIT_FACEDOMAIN_FILE, new ByteArrayInputStream(bout.toByteArray()));
+
+			bout.reset();
+			out.writeUTF(source);
+			out.writeInt(subdomains);
+			m.writeModelFile(RBAPPMIT_INFO_FILE, new ByteArrayInputStream(bout.toByteArray()));
+			Log.d("GeoData", "Converted geometry.dat to binary geometry files.");
+		} catch (IOException e) {
+			Log.e("GeometryData", "Writing binary rbappmit geometry failed: " + e.getMessage(), e);
+		}
+	}
+
+	private static boolean fitsShort(int[] values) {
+		for (int v : values) {
+			if (v < Short.MIN_VALUE || v > Short.MAX_VALUE) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	// /**
@@ -6,13 +6,16 @@ import jarmos.Log;
 import jarmos.ModelDescriptor;
 import jarmos.ModelType;
 import jarmos.Parameters;
-import jarmos.SolutionFieldType;
-import jarmos.geometry.FieldMapping;
-import jarmos.io.MathObjectReader.MachineFormats;
+import jarmos.io.ModelXMLIndex.XMLElement;
 import jarmos.util.ConsoleProgressReporter;
 import jarmos.util.IProgressReporter;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -22,22 +25,34 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.dom.DOMSource;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.apache.commons.math.linear.RealMatrix;
+import org.apache.commons.math.linear.RealVector;
 import org.xml.sax.SAXException;
 
 /**
@@ -94,23 +109,85 @@ public abstract class AModelManager {
 	 */
 	public static final String CLASSES_JARFILE = "classes.jar";
 
+	/**
+	 * A cached model class loader together with the classes resolved by it.
+	 */
+	static final class LoaderEntry {
+		final ClassLoader loader;
+		final Map<String, Class<?>> classes = new ConcurrentHashMap<String, Class<?>>();
+		volatile boolean closed = false;
+
+		private LoaderEntry(ClassLoader loader) {
+			this.loader = loader;
+		}
+	}
+
+	/**
+	 * Model class loaders by model location and classes jar version, shared by all managers.
+	 */
+	private static final Map<String, LoaderEntry> loaders = new HashMap<String, LoaderEntry>();
+
 	/**
 	 * The model's info html file name (imported from rbappmit, might change later)
 	 */
 	public static final String info_filename = "site_info.html";
 
-	private DocumentBuilder db = null;
+	/**
+	 * The number of threads used for asynchronous operations of a manager.
+	 */
+	public static final int ASYNC_THREADS = 4;
+
+	/**
+	 * The maximum number of parsed model.xml documents kept by a manager.
+	 */
+	public static final int MODELXML_CACHE_SIZE = 256;
+
+	private static Schema schema = null;
+	private static boolean schemaLoaded = false;
+
+	/**
+	 * The maximum number of model directories that are scanned concurrently by
+	 * {@link #getModelDescriptors(IProgressReporter)}.
+	 */
+	public static final int CATALOG_THREADS = 8;
+
+	/**
+	 * SAX parsers are not thread safe, so each thread gets its own.
+	 */
+	private static final ThreadLocal<SAXParser> parser = new ThreadLocal<SAXParser>() {
+		@Override
+		protected SAXParser initialValue() {
+			try {
+				return SAXParserFactory.newInstance().newSAXParser();
+			} catch (ParserConfigurationException e) {
+				throw new RuntimeException("Error creating a XML parser", e);
+			} catch (SAXException e) {
+				throw new RuntimeException("Error creating a XML parser", e);
+			}
+		}
+	};
+
 	private Validator dv = null;
+	private Map<String, CachedIndex> xmlcache = new LinkedHashMap<String, CachedIndex>(16, .75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedIndex> eldest) {
+			return size() > MODELXML_CACHE_SIZE;
+		}
+	};
+	private volatile File catalogFile = null;
 	private String mdir = "notset";
+	private ExecutorService executor = null;
+	private LoaderEntry loader = null;
 	private List<IMessageHandler> mhandlers;
-	private Node modelnode = null;
-	private Document modelxml = null;
-	private ModelType mtype = ModelType.Unknown;
+	private final List<IModelIOListener> iolisteners = new CopyOnWriteArrayList<IModelIOListener>();
+	private ModelHandle model = null;
 
 	private MathObjectReader mor = null;
 
 	/**
-	 * Constructs a new ModelManager and a private DocumentBuilder and SchemaFactory.
+	 * Constructs a new ModelManager. The model.xml schema is shared among all instances.
 	 * 
 	 * Unfortunately, the Android 8 API does not seem to support the W3C XML Schema, so no validation is performed on an
 	 * android :-(
@@ -123,35 +200,45 @@ public abstract class AModelManager {
 	 */
 	public AModelManager() {
 		mhandlers = new ArrayList<IMessageHandler>();
-		try {
-			// Create the document builder
-			DocumentBuilderFactory bf = DocumentBuilderFactory.newInstance();
-			bf.setIgnoringElementContentWhitespace(true);
-
-			db = bf.newDocumentBuilder();
-
-			InputStream in = getClass().getResourceAsStream("/model.xsd");
+		// Create the schema validator (if xsd was found)
+		Schema s = getSchema();
+		if (s != null) {
+			// dv = s.newValidator();
+		}
+	}
 
-			// Create the schema validator (if xsd was found)
+	/**
+	 * Returns the model.xml schema, which is built once per process.
+	 * 
+	 * @return The schema or null if no model.xsd resource was found or the platform does not support W3C XML Schema.
+	 */
+	private static synchronized Schema getSchema() {
+		if (!schemaLoaded) {
+			schemaLoaded = true;
+			InputStream in = AModelManager.class.getResourceAsStream("/model.xsd");
 			if (in != null) {
 				try {
 					SchemaFactory sf = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-					Schema s = sf.newSchema(new StreamSource(in));
-					// dv = s.newValidator();
+					schema = sf.newSchema(new StreamSource(in));
 				} catch (IllegalArgumentException e) { //
 					/*
-					 * See constructor comment on what happens here.. Set Validator to null if the
+					 * See constructor comment on what happens here.. Leave the schema null if the
 					 * IllegalArgumentException gets thrown
 					 */
-					dv = null;
+					schema = null;
+				} catch (SAXException e) {
+					throw new RuntimeException("Error creating a XML schema validator", e);
+				} finally {
+					try {
+						in.close();
+					} catch (IOException e) {
+						// ignore
+					}
 				}
 			} else
 				Log.e("AModelManager", "No model.xsd validation resource found!");
-		} catch (ParserConfigurationException e) {
-			throw new RuntimeException("Error creating a XML document builder", e);
-		} catch (SAXException e) {
-			throw new RuntimeException("Error creating a XML schema validator", e);
 		}
+		return schema;
 	}
 
 	/**
@@ -161,6 +248,61 @@ public abstract class AModelManager {
 		mhandlers.add(h);
 	}
 
+	/**
+	 * Adds a listener for the I/O of model files, e.g. an {@link IOMetrics} instance.
+	 * 
+	 * Streams of model files are only instrumented while listeners are attached.
+	 * 
+	 * @param l
+	 */
+	public void addIOListener(IModelIOListener l) {
+		iolisteners.add(l);
+	}
+
+	/**
+	 * @param l
+	 */
+	public void removeIOListener(IModelIOListener l) {
+		iolisteners.remove(l);
+	}
+
+	/**
+	 * Reports the opening of the given model file to the I/O listeners and instruments its stream. Returns the stream
+	 * unchanged if no listeners are attached.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @param filename
+	 * @param in
+	 * @param start
+	 * The time the file was requested, as returned by System.nanoTime()
+	 * @return The instrumented stream
+	 */
+	protected final InputStream instrument(String dir, String filename, InputStream in, long start) {
+		if (iolisteners.isEmpty()) {
+			return in;
+		}
+		long t = System.nanoTime() - start;
+		for (IModelIOListener l : iolisteners) {
+			l.fileOpened(dir, filename, t);
+		}
+		return new InstrumentedInputStream(in, iolisteners, dir, filename, start);
+	}
+
+	/**
+	 * Reports a cache access to the I/O listeners.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @param filename
+	 * @param hit
+	 */
+	protected final void fireCacheAccess(String dir, String filename, boolean hit) {
+		for (IModelIOListener l : iolisteners) {
+			l.cacheAccess(dir, filename, hit);
+		}
+	}
+
 	/**
 	 * Loads a class available in the precompiled classes associated with the current model. The model.xml-tag "package"
 	 * is used if set to specify the package under which the class can be found; if not set the default package (="") is
@@ -172,13 +314,36 @@ public abstract class AModelManager {
 	 */
 	public Object loadModelClass(String name) throws ModelManagerException {
 		ClassLoader cl = getClassLoader();
-		String pkg = getModelPackageStr();
+		LoaderEntry e = loader;
+		return loadModelClass(e != null && e.loader == cl ? e : null, cl, getModelPackageStr(), name);
+	}
+
+	/**
+	 * Loads a model class with the given class loader and remembers the resolved class in the cached loader entry.
+	 * 
+	 * @param e
+	 * The cached loader entry of the class loader, null if not cached
+	 * @param cl
+	 * @param pkg
+	 * @param name
+	 * @return A new instance of the class
+	 * @throws ModelManagerException
+	 */
+	Object loadModelClass(LoaderEntry e, ClassLoader cl, String pkg, String name) throws ModelManagerException {
 		try {
-			Class<?> af = cl.loadClass(pkg + name);
+			// Remember resolved classes of cached loaders
+			Map<String, Class<?>> classes = e != null ? e.classes : null;
+			Class<?> af = classes != null ? classes.get(pkg + name) : null;
+			if (af == null) {
+				af = cl.loadClass(pkg + name);
+				if (classes != null) {
+					classes.put(pkg + name, af);
+				}
+			}
 			return af.newInstance();
-		} catch (Exception e) {
+		} catch (Exception ex) {
 			throw new ModelManagerException("Error loading the model class '" + name + "' of package '"
-					+ (pkg != "" ? pkg : "(default)") + "'.", e);
+					+ (pkg != "" ? pkg : "(default)") + "'.", ex);
 		}
 	}
 
@@ -206,10 +371,101 @@ public abstract class AModelManager {
 	 * The class loader must be configured in a way that a call to loadClass(String name) must search also inside the
 	 * current model's directory.
 	 * 
+	 * The default implementation returns the class loader created by {@link #createClassLoader(String)}, which is
+	 * cached for all managers by model location and version of the CLASSES_JARFILE, or the system class loader if
+	 * there is none. The version is determined once per {@link #useModel(String)}. Loaders of outdated versions are
+	 * closed.
+	 * 
 	 * @return A custom class loader instance.
 	 */
 	public ClassLoader getClassLoader() {
-		return ClassLoader.getSystemClassLoader();
+		LoaderEntry e = loader;
+		if (e == null || e.closed) {
+			e = getLoaderEntry(getModelDir());
+			if (e == null) {
+				return ClassLoader.getSystemClassLoader();
+			}
+			loader = e;
+		}
+		return e.loader;
+	}
+
+	/**
+	 * Returns the cached class loader of the given model directory or creates it.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @return The loader entry or null if the model has no own classes
+	 */
+	LoaderEntry getLoaderEntry(String dir) {
+		String prefix = getModelURI(dir) + "#";
+		String key = prefix + getModelFileVersion(dir, CLASSES_JARFILE);
+		synchronized (loaders) {
+			LoaderEntry e = loaders.get(key);
+			if (e == null) {
+				closeClassLoaders(prefix);
+				ClassLoader cl = createClassLoader(dir);
+				if (cl == null) {
+					return null;
+				}
+				e = new LoaderEntry(cl);
+				loaders.put(key, e);
+			}
+			return e;
+		}
+	}
+
+	/**
+	 * Creates a new class loader for the given model directory. Called by {@link #getClassLoader()} if no cached
+	 * loader exists.
+	 * 
+	 * Returns null by default, i.e. the system class loader is used.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @return A new class loader or null if the model has no own classes
+	 */
+	protected ClassLoader createClassLoader(String dir) {
+		return null;
+	}
+
+	/**
+	 * Closes and evicts the cached class loaders of the current model. Instances of the model's classes must not be
+	 * used afterwards.
+	 * 
+	 * Call when the model is not used anymore, e.g. before deleting its files. Other managers using the same model
+	 * location create a new class loader on their next {@link #getClassLoader()} call.
+	 */
+	public void unloadModel() {
+		synchronized (loaders) {
+			closeClassLoaders(getModelURI(getModelDir()) + "#");
+		}
+		loader = null;
+	}
+
+	/**
+	 * Closes and evicts all cached class loaders whose key starts with the given prefix. Must be called while holding
+	 * the loaders lock.
+	 * 
+	 * @param prefix
+	 */
+	private static void closeClassLoaders(String prefix) {
+		Iterator<Map.Entry<String, LoaderEntry>> it = loaders.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, LoaderEntry> e = it.next();
+			if (e.getKey().startsWith(prefix)) {
+				it.remove();
+				e.getValue().closed = true;
+				e.getValue().classes.clear();
+				if (e.getValue().loader instanceof Closeable) {
+					try {
+						((Closeable) e.getValue().loader).close();
+					} catch (IOException ex) {
+						Log.e("ModelManager", "Error closing class loader of " + e.getKey(), ex);
+					}
+				}
+			}
+		}
 	}
 
 	/**
@@ -238,9 +494,139 @@ public abstract class AModelManager {
 	 * @throws IOException
 	 */
 	public final InputStream getInStream(String filename) throws IOException {
+		sendFileMessage(filename);
+		long start = System.nanoTime();
+		return instrument(getModelDir(), filename, getInStreamImpl(filename), start);
+	}
+
+	/**
+	 * Asynchronously opens a stream for the given file of the current model.
+	 * 
+	 * The stream is opened on the manager's executor (see {@link #getExecutor()}), so that the calling thread (e.g. a
+	 * UI thread) is not blocked. Loaders can use this to pipeline fetching, decoding and geometry processing.
+	 * 
+	 * The request is bound to the model directory at call time, so that a later call of {@link #useModel(String)}
+	 * does not change the file read.
+	 * 
+	 * @param filename
+	 * The model file to return a stream for
+	 * @return A future for the stream
+	 */
+	public Future<InputStream> getInStreamAsync(final String filename) {
+		final String dir = getModelDir();
+		return getExecutor().submit(new Callable<InputStream>() {
+			@Override
+			public InputStream call() throws Exception {
+				sendFileMessage(filename);
+				long start = System.nanoTime();
+				return instrument(dir, filename, getModelInStream(dir, filename), start);
+			}
+		});
+	}
+
+	/**
+	 * Asynchronously reads the complete contents of the given file of the current model.
+	 * 
+	 * See {@link #getInStreamAsync(String)} for details.
+	 * 
+	 * @param filename
+	 * The model file to read
+	 * @return A future for the file contents
+	 */
+	public Future<byte[]> readAllAsync(final String filename) {
+		final String dir = getModelDir();
+		return getExecutor().submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws Exception {
+				sendFileMessage(filename);
+				long start = System.nanoTime();
+				return readAll(instrument(dir, filename, getModelInStream(dir, filename), start), -1);
+			}
+		});
+	}
+
+	/**
+	 * Reads the given stream completely and closes it.
+	 * 
+	 * @param in
+	 * @param size
+	 * The expected number of bytes or -1 if unknown
+	 * @return The stream contents
+	 * @throws IOException
+	 */
+	protected static byte[] readAll(InputStream in, int size) throws IOException {
+		try {
+			if (size >= 0) {
+				byte[] res = new byte[size];
+				int pos = 0, n;
+				while (pos < size && (n = in.read(res, pos, size - pos)) > 0) {
+					pos += n;
+				}
+				if (pos < size) {
+					byte[] tmp = new byte[pos];
+					System.arraycopy(res, 0, tmp, 0, pos);
+					return tmp;
+				}
+				// Check if the stream actually had the expected size
+				int next = in.read();
+				if (next == -1) {
+					return res;
+				}
+				ByteArrayOutputStream out = new ByteArrayOutputStream(size * 2);
+				out.write(res);
+				out.write(next);
+				copy(in, out);
+				return out.toByteArray();
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream(65536);
+			copy(in, out);
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static void copy(InputStream in, ByteArrayOutputStream out) throws IOException {
+		byte[] buf = new byte[65536];
+		int n;
+		while ((n = in.read(buf)) > 0) {
+			out.write(buf, 0, n);
+		}
+	}
+
+	/**
+	 * Returns the executor used for asynchronous operations of this manager.
+	 * 
+	 * The executor is created on first use and runs up to {@link #ASYNC_THREADS} daemon threads.
+	 * 
+	 * @return
+	 */
+	protected synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(ASYNC_THREADS, new DaemonThreadFactory(getClass().getSimpleName()));
+		}
+		return executor;
+	}
+
+	/**
+	 * Shuts down the executor used for asynchronous operations, if created. Already submitted operations are still
+	 * carried out. A new executor is created if asynchronous methods are used afterwards.
+	 */
+	public synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Sends the loading message for a model file to all message handlers.
+	 * 
+	 * @param filename
+	 */
+	protected void sendFileMessage(String filename) {
 		int pos = filename.indexOf(".bin");
 		sendMessage((pos > -1) ? filename.substring(0, pos) : filename);
-		return getInStreamImpl(filename);
 	}
 
 	/**
@@ -266,6 +652,139 @@ public abstract class AModelManager {
 		return mor;
 	}
 
+	/**
+	 * Reads a matrix from the given file of the current model, using the decoded objects cache (see
+	 * {@link MathObjectCache}). The returned matrix may be shared and must not be modified.
+	 * 
+	 * @param filename
+	 * @return The matrix
+	 * @throws IOException
+	 */
+	public RealMatrix readMatrix(String filename) throws IOException {
+		return readMathObject(filename, RealMatrix.class, getMathObjReader());
+	}
+
+	/**
+	 * Reads a vector from the given file of the current model.
+	 * 
+	 * @see #readMatrix(String)
+	 * @param filename
+	 * @return The vector
+	 * @throws IOException
+	 */
+	public RealVector readVector(String filename) throws IOException {
+		return readMathObject(filename, RealVector.class, getMathObjReader());
+	}
+
+	/**
+	 * Reads a double array from the given file of the current model.
+	 * 
+	 * @see #readMatrix(String)
+	 * @param filename
+	 * @return The array
+	 * @throws IOException
+	 */
+	public double[] readRawDoubleVector(String filename) throws IOException {
+		return readMathObject(filename, double[].class, getMathObjReader());
+	}
+
+	/**
+	 * Reads a float array from the given file of the current model.
+	 * 
+	 * @see #readMatrix(String)
+	 * @param filename
+	 * @return The array
+	 * @throws IOException
+	 */
+	public float[] readRawFloatVector(String filename) throws IOException {
+		return readMathObject(filename, float[].class, getMathObjReader());
+	}
+
+	/**
+	 * Reads a short array from the given file of the current model.
+	 * 
+	 * @see #readMatrix(String)
+	 * @param filename
+	 * @return The array
+	 * @throws IOException
+	 */
+	public short[] readRawShortVector(String filename) throws IOException {
+		return readMathObject(filename, short[].class, getMathObjReader());
+	}
+
+	/**
+	 * Returns the decoded object of the given file of the current model from the cache (see
+	 * {@link MathObjectCache}) or reads it with the given reader. The returned object may be shared and must not be
+	 * modified.
+	 * 
+	 * Objects are cached by model location, file name, file version (see
+	 * {@link #getModelFileVersion(String, String)}), type and reader settings. Files without version are not cached.
+	 * 
+	 * @param filename
+	 * @param type
+	 * One of RealMatrix, RealVector, double[], float[] or short[]
+	 * @param reader
+	 * The reader to decode the file with
+	 * @return The object
+	 * @throws IOException
+	 */
+	public <T> T readMathObject(String filename, Class<T> type, MathObjectReader reader) throws IOException {
+		String key = getMathObjectKey(getModelDir(), filename, type, reader);
+		Object o = key != null ? MathObjectCache.get(key) : null;
+		if (!type.isInstance(o)) {
+			o = readMathObject(getInStream(filename), type, reader);
+			if (key == null) {
+				// Reading the file may have made its version available, e.g. by caching it
+				key = getMathObjectKey(getModelDir(), filename, type, reader);
+			}
+			if (key != null) {
+				MathObjectCache.put(key, o);
+			}
+		}
+		return type.cast(o);
+	}
+
+	/**
+	 * @param dir
+	 * @param filename
+	 * @param type
+	 * @param reader
+	 * @return The key of the decoded file in the {@link MathObjectCache} or null if the file has no version
+	 */
+	String getMathObjectKey(String dir, String filename, Class<?> type, MathObjectReader reader) {
+		String version = getModelFileVersion(dir, filename);
+		if (version == null) {
+			return null;
+		}
+		return getModelURI(dir) + "/" + filename + "#" + version + "#" + type.getSimpleName() + "#"
+				+ reader.MachineFormat + (reader.SinglePrecision ? "-single" : "");
+	}
+
+	/**
+	 * Decodes an object of the given type from the stream.
+	 * 
+	 * @param in
+	 * @param type
+	 * @param reader
+	 * @return The object
+	 * @throws IOException
+	 */
+	static Object readMathObject(InputStream in, Class<?> type, MathObjectReader reader) throws IOException {
+		if (type == RealMatrix.class) {
+			return reader.readMatrix(in);
+		} else if (type == RealVector.class) {
+			return reader.readVector(in);
+		} else if (type == double[].class) {
+			return reader.readRawDoubleVector(in);
+		} else if (type == float[].class) {
+			return reader.readRawFloatVector(in);
+		} else if (type == short[].class) {
+			return reader.readRawShortVector(in);
+		}
+		in.close();
+		throw new IllegalArgumentException("Unsupported type " + type);
+	}
+
 	/**
 	 * Scans all directories given by getFolderList() for valid models and returns a list of model descriptors for each
 	 * valid model.
@@ -287,8 +806,7 @@ public abstract class AModelManager {
 	 * @return A list of ModelDescriptors
 	 * @throws ModelManagerException
 	 */
-	public List<ModelDescriptor> getModelDescriptors(IProgressReporter pr) throws ModelManagerException {
-		ArrayList<ModelDescriptor> res = new ArrayList<ModelDescriptor>();
+	public List<ModelDescriptor> getModelDescriptors(final IProgressReporter pr) throws ModelManagerException {
 		String[] list = null;
 		try {
 			list = getFolderList();
@@ -297,43 +815,187 @@ public abstract class AModelManager {
 		}
 		// Set loading message
 		pr.init(getLoadingMessage(), list.length);
-		int cnt = 0;
-		for (String modeldir : list) {
-			pr.progress(++cnt);
-			if (isValidModelDir(modeldir)) {
-				useModel(modeldir);
-				// Check for the correct model type
-				ModelType mtype = ModelType.parse(getModelXMLAttribute("type"));
-				if (mtype == ModelType.Unknown)
-					continue;
-
-				InputStream img = null;
-				String imgfile = getModelXMLTagValue("description.image");
-				if (modelFileExists(imgfile)) {
-					try {
-						img = getInStream(imgfile);
-					} catch (IOException e) {
-						// ignore
+		final File catfile = catalogFile;
+		final Map<String, ModelCatalog.Entry> catalog = catfile != null ? ModelCatalog.read(catfile) : null;
+		final ModelCatalog.Entry[] entries = new ModelCatalog.Entry[list.length];
+		final AtomicBoolean changed = new AtomicBoolean(false);
+		ArrayList<ModelDescriptor> res = new ArrayList<ModelDescriptor>();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(CATALOG_THREADS, list.length)),
+				new DaemonThreadFactory(getClass().getSimpleName() + "-catalog"));
+		try {
+			final AtomicInteger cnt = new AtomicInteger();
+			List<Future<ModelDescriptor>> descriptors = new ArrayList<Future<ModelDescriptor>>(list.length);
+			for (int i = 0; i < list.length; i++) {
+				final int idx = i;
+				final String modeldir = list[i];
+				descriptors.add(pool.submit(new Callable<ModelDescriptor>() {
+					@Override
+					public ModelDescriptor call() throws Exception {
+						try {
+							String stamp = catalog != null ? getCatalogStamp(modeldir) : null;
+							if (stamp == null) {
+								return describeModel(modeldir);
+							}
+							ModelCatalog.Entry e = catalog.get(modeldir);
+							if (e == null || !stamp.equals(e.stamp)) {
+								ModelDescriptor md = describeModel(modeldir);
+								if (md != null) {
+									e = new ModelCatalog.Entry(stamp, md);
+								} else {
+									e = new ModelCatalog.Entry(modeldir, stamp);
+								}
+								changed.set(true);
+							}
+							entries[idx] = e;
+							return e.toDescriptor(AModelManager.this);
+						} finally {
+							synchronized (pr) {
+								pr.progress(cnt.incrementAndGet());
+							}
+						}
 					}
-				} else
-					img = getClass().getClassLoader().getResourceAsStream("notfound.png");
-				// Get model date
-				Date d = null;
+				}));
+			}
+			// Collect in folder order
+			for (Future<ModelDescriptor> f : descriptors) {
+				ModelDescriptor md = f.get();
+				if (md != null) {
+					res.add(md);
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new ModelManagerException("Interrupted while scanning model folders.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			} else if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new ModelManagerException("Scanning model folders failed.", (Exception) e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		if (catalog != null) {
+			List<ModelCatalog.Entry> l = new ArrayList<ModelCatalog.Entry>(entries.length);
+			for (ModelCatalog.Entry e : entries) {
+				if (e != null) {
+					l.add(e);
+				}
+			}
+			// Also rewrite if model directories have been removed
+			if (changed.get() || l.size() != catalog.size()) {
 				try {
-					d = DateFormat.getDateInstance().parse(getModelXMLTagValue("description.created"));
-				} catch (ParseException e) {
-					d = Calendar.getInstance().getTime();
+					ModelCatalog.write(catfile, l);
+				} catch (IOException e) {
+					Log.e("AModelManager", "Error writing model catalog " + catfile + ": " + e.getMessage(), e);
 				}
-				ModelDescriptor md = new ModelDescriptor(modeldir, getModelXMLTagValue("description.name"), mtype, img,
-						d);
-				md.shortDescription = getModelXMLTagValue("description.short", "");
-				res.add(md);
 			}
 		}
 		pr.finish();
 		return res;
 	}
 
+	/**
+	 * Returns a source for the image of a model, which opens the image only when called. Opening fails with an
+	 * IOException if the image is not available.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @param imgfile
+	 * The image file name or null
+	 * @return The image source or null if the model has no image
+	 */
+	Callable<InputStream> getImageSource(final String dir, final String imgfile) {
+		if (imgfile == null) {
+			return null;
+		}
+		return new Callable<InputStream>() {
+			@Override
+			public InputStream call() throws Exception {
+				return getModelInStream(dir, imgfile);
+			}
+		};
+	}
+
+	/**
+	 * Sets a file for the persistent model catalog used by {@link #getModelDescriptors(IProgressReporter)}.
+	 * 
+	 * The catalog stores the descriptors of all models, so that the model list can be created
+	 * with a single read operation. The entry of a model directory is used as long as its stamp returned by
+	 * {@link #getCatalogStamp(String)} is unchanged. Managers that do not provide stamps always scan all directories.
+	 * 
+	 * @param file
+	 * The catalog file or null to disable the catalog (default)
+	 */
+	public void setCatalogFile(File file) {
+		catalogFile = file;
+	}
+
+	/**
+	 * @return The catalog file or null if no catalog is used
+	 */
+	public File getCatalogFile() {
+		return catalogFile;
+	}
+
+	/**
+	 * Returns a stamp for the given model directory, which changes whenever the directory's model changes. Used to
+	 * invalidate the model catalog (see {@link #setCatalogFile(File)}) per directory.
+	 * 
+	 * Must be cheap compared to reading the model.xml. Returns null by default, which disables the catalog for all
+	 * directories.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @return A stamp or null if none is available for the directory
+	 */
+	protected String getCatalogStamp(String dir) {
+		return null;
+	}
+
+	/**
+	 * Creates the descriptor for the model in the given directory.
+	 * 
+	 * Does not change the current model, so that this method can be called concurrently for different directories.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @return The descriptor or null if the directory does not contain a valid model of a known type
+	 * @throws IOException
+	 */
+	protected ModelDescriptor describeModel(String dir) throws IOException {
+		if (!modelFileExists(dir, "model.xml"))
+			return null;
+		ModelXMLIndex idx;
+		try {
+			idx = getModelXML(dir);
+		} catch (SAXException e) {
+			Log.e("AModelManager", "Invalid model.xml in " + dir + ": " + e.getMessage(), e);
+			return null;
+		}
+		// Check for the correct model type
+		XMLElement model = idx.getModelElement();
+		ModelType mtype = ModelType.parse(model != null ? model.getAttribute("type") : null);
+		if (mtype == ModelType.Unknown)
+			return null;
+
+		String imgfile = idx.getText("description.image", null);
+		// Get model date
+		Date d = null;
+		String created = idx.getText("description.created", null);
+		try {
+			d = created != null ? DateFormat.getDateInstance().parse(created) : Calendar.getInstance().getTime();
+		} catch (ParseException e) {
+			d = Calendar.getInstance().getTime();
+		}
+		ModelDescriptor md = new ModelDescriptor(dir, idx.getText("description.name", null), mtype, getImageSource(dir,
+				imgfile), d);
+		md.shortDescription = idx.getText("description.short", "");
+		md.imageFile = imgfile;
+		md.contentHash = idx.getChecksum();
+		return md;
+	}
+
 	/**
 	 * 
 	 * @return The directory of the current model.
@@ -343,23 +1005,8 @@ public abstract class AModelManager {
 	}
 
 	public FieldDescriptor[] getModelFieldTypes() {
-		FieldDescriptor[] res = null;
-		Element params = getModelXMLElement("visual.fields");
-		if (params != null) {
-			NodeList nl = params.getElementsByTagName("field");
-			res = new FieldDescriptor[nl.getLength()];
-			String hlp;
-			FieldDescriptor f;
-			for (int i = 0; i < nl.getLength(); i++) {
-				Node n = nl.item(i);
-				f = new FieldDescriptor(SolutionFieldType.valueOf(getNodeAttributeValue(n, "type")));
-				f.Name = n.getTextContent();
-				hlp = getNodeAttributeValue(n, "mapping");
-				f.Mapping = hlp != null ? FieldMapping.valueOf(hlp) : FieldMapping.UNKNOWN;
-				res[i] = f;
-			}
-		}
-		return res;
+		ModelHandle h = model;
+		return h != null ? h.getModelFieldTypes() : null;
 	}
 
 	/**
@@ -368,7 +1015,8 @@ public abstract class AModelManager {
 	 * @return The model type as string
 	 */
 	public ModelType getModelType() {
-		return mtype;
+		ModelHandle h = model;
+		return h != null ? h.getModelType() : ModelType.Unknown;
 	}
 
 	/**
@@ -378,6 +1026,15 @@ public abstract class AModelManager {
 	 */
 	public abstract URI getModelURI();
 
+	/**
+	 * Returns an URI for the given model directory, independent of the current model.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @return The model URI
+	 */
+	protected abstract URI getModelURI(String dir);
+
 	/**
 	 * Returns the attribute value of any attributes of the "model" tag in the model.xml file. Returns null if no model
 	 * directory has been set or the attribute does not exist.
@@ -387,12 +1044,8 @@ public abstract class AModelManager {
 	 * @return The attribute value or null if the attribute does not exist
 	 */
 	public String getModelXMLAttribute(String attrib_name) {
-		assert attrib_name != null;
-
-		if (modelnode != null) {
-			return getNodeAttributeValue(modelnode, attrib_name);
-		}
-		return null;
+		ModelHandle h = model;
+		return h != null ? h.getModelXMLAttribute(attrib_name) : null;
 	}
 
 	/**
@@ -406,43 +1059,8 @@ public abstract class AModelManager {
 	 * @return The attribute value or null if the attribute does not exist
 	 */
 	public String getModelXMLAttribute(String attrib_name, String tagname) {
-		assert attrib_name != null;
-		assert tagname != null;
-
-		Element e = getModelXMLElement(tagname);
-		return (e != null) ? getNodeAttributeValue(e, attrib_name) : null;
-	}
-
-	// private String[] getXMLElementChildNames(String tags) {
-	// String[] res = null;
-	// Element parent = getModelXMLElement(tags);
-	// if (parent != null) {
-	// res = new String[parent.getChildNodes().getLength()];
-	// for (int nidx = 0; nidx < res.length; nidx++) {
-	// res[nidx] = parent.getChildNodes().item(nidx).getNodeName();
-	// }
-	// }
-	// return res;
-	// }
-
-	private Element getModelXMLElement(String tags) {
-		if (modelxml != null) {
-			Element cur = modelxml.getDocumentElement();
-			String[] elems = tags.split("\\.");
-			for (String elem : elems) {
-				NodeList nl = cur.getElementsByTagName(elem);
-				if (nl != null && nl.getLength() > 0) {
-					cur = (Element) nl.item(0);
-				} else {
-					cur = null;
-					break;
-				}
-			}
-			if (cur != null) {
-				return cur;
-			}
-		}
-		return null;
+		ModelHandle h = model;
+		return h != null ? h.getModelXMLAttribute(attrib_name, tagname) : null;
 	}
 
 	/**
@@ -469,8 +1087,8 @@ public abstract class AModelManager {
 	 * @return The tag text content or the default value if no matching tag is found.
 	 */
 	public String getModelXMLTagValue(String tagname, String default_value) {
-		Element res = getModelXMLElement(tagname);
-		return (res != null) ? res.getTextContent() : default_value;
+		ModelHandle h = model;
+		return h != null ? h.getModelXMLTagValue(tagname, default_value) : default_value;
 	}
 
 	/**
@@ -484,53 +1102,14 @@ public abstract class AModelManager {
 		return thepackage != null ? thepackage + "." : "";
 	}
 
-	/**
-	 * 
-	 * @param n
-	 * @param attrib_name
-	 * @return Attribute value or null if not existent
-	 */
-	private String getNodeAttributeValue(Node n, String attrib_name) {
-		assert n != null;
-		assert attrib_name != null;
-
-		Node a = n.getAttributes().getNamedItem(attrib_name);
-		if (a != null) {
-			return a.getNodeValue();
-		} else
-			return null;
-	}
-
 	/**
 	 * Reads the parameters from the model XML file and returns a Parameters object.
 	 * 
 	 * @return A Parameters object or null if the model definition does not contain parameters.
 	 */
 	public Parameters getParameters() {
-		Element params = getModelXMLElement("parameters");
-		if (params != null) {
-			Parameters p = new Parameters();
-			NodeList nl = params.getElementsByTagName("param");
-			double[] cur = new double[nl.getLength()];
-			for (int i = 0; i < nl.getLength(); i++) {
-				Node n = nl.item(i);
-				String name = getNodeAttributeValue(n, "name");
-				// Set \mu_i if no name is given.
-				if (name == null) {
-					name = "\u00B5_" + i;
-				}
-				// Add
-				p.addParam(name, Double.parseDouble(getNodeAttributeValue(n, "min")),
-						Double.parseDouble(getNodeAttributeValue(n, "max")));
-				// Extract default values and set as current, take min value if
-				// no default is set
-				String def = getNodeAttributeValue(n, "default");
-				cur[i] = def != null ? Double.parseDouble(def) : p.getMinValue(i);
-			}
-			p.setCurrent(cur);
-			return p;
-		}
-		return null;
+		ModelHandle h = model;
+		return h != null ? h.getParameters() : null;
 	}
 
 	/**
@@ -548,36 +1127,296 @@ public abstract class AModelManager {
 	public boolean isValidModelDir(String dir) {
 		assert dir != null;
 
-		/*
-		 * Store current model directory if set, and temporarily set the model dir to dir. This is done as subclass
-		 * implementations will of course depend on getModelDir() when calling modelFileExists().
-		 */
-		String olddir = mdir;
-		mdir = dir;
-		if (!modelFileExists("model.xml"))
-			return false;
 		try {
+			if (!modelFileExists(dir, "model.xml"))
+				return false;
 			try {
-				db.parse(getInStream("model.xml"));
+				getModelXML(dir);
 			} catch (SAXException e) {
+				Log.e("AModelManager", "Invalid model.xml: " + e.getMessage(), e);
 				return false;
 			}
-			try {
-				if (dv != null) {
-					dv.validate(new DOMSource(modelxml));
+		} catch (IOException e) {
+			throw new RuntimeException("I/O error while checking if model directory is valid.", e);
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the index of the parsed and validated model.xml of the given model directory.
+	 * 
+	 * Indices are cached per model directory together with the version returned by
+	 * {@link #getModelFileVersion(String, String)}, so that validating and then using a model only parses its
+	 * model.xml once.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @return The model.xml index
+	 * @throws IOException
+	 * @throws SAXException
+	 * If the model.xml could not be parsed or is invalid
+	 */
+	private ModelXMLIndex getModelXML(String dir) throws IOException, SAXException {
+		String version = getModelFileVersion(dir, "model.xml");
+		synchronized (xmlcache) {
+			CachedIndex c = xmlcache.get(dir);
+			if (c != null && version != null && version.equals(c.version)) {
+				return c.index;
+			}
+		}
+		InputStream in = getModelInStream(dir, "model.xml");
+		if (dv != null) {
+			byte[] data = readAll(in, -1);
+			synchronized (dv) {
+				dv.validate(new StreamSource(new ByteArrayInputStream(data)));
+			}
+			in = new ByteArrayInputStream(data);
+		}
+		ModelXMLIndex idx = ModelXMLIndex.parse(parser.get(), in);
+		if (version != null) {
+			synchronized (xmlcache) {
+				xmlcache.put(dir, new CachedIndex(version, idx));
+			}
+		}
+		return idx;
+	}
+
+	/**
+	 * Returns a version identifier of the given file in the given model directory, e.g. the last modification date
+	 * or an ETag. Used to determine if cached data of the file is still valid.
+	 * 
+	 * Returns null by default, which disables caching.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @param filename
+	 * @return A version string or null if not available
+	 */
+	protected String getModelFileVersion(String dir, String filename) {
+		return null;
+	}
+
+	/**
+	 * Returns a version string of the given file of the current model.
+	 * 
+	 * @see #getModelFileVersion(String, String)
+	 * @param filename
+	 * @return A version string or null if not available
+	 */
+	public String getModelFileVersion(String filename) {
+		return getModelFileVersion(getModelDir(), filename);
+	}
+
+	/**
+	 * Returns an InputStream for the given file in the given model directory, independent of the current model. Called
+	 * concurrently for different directories, e.g. by {@link ModelHandle}s and catalog scans.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @param filename
+	 * @return An InputStream pointing to the resource
+	 * @throws IOException
+	 */
+	protected abstract InputStream getModelInStream(String dir, String filename) throws IOException;
+
+	/**
+	 * Returns an InputStream for the given file in the given model directory, if its current version differs from
+	 * the given one. Used to revalidate cached copies of model files.
+	 * 
+	 * The default implementation compares the given version with {@link #getModelFileVersion(String, String)}.
+	 * Subclasses may override this method to use conditional requests instead.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @param filename
+	 * @param version
+	 * The version of the cached copy, may be null to always read the file
+	 * @return A stream carrying the file's current version, or null if the file is unchanged
+	 * @throws IOException
+	 */
+	protected VersionedInputStream getChangedModelInStream(String dir, String filename, String version)
+			throws IOException {
+		String current = getModelFileVersion(dir, filename);
+		if (current != null && current.equals(version)) {
+			return null;
+		}
+		return new VersionedInputStream(getModelInStream(dir, filename), current);
+	}
+
+	/**
+	 * Returns the names of all files of the given model directory.
+	 * 
+	 * Returns null by default, i.e. if the manager cannot list model files.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @return The file names or null if not available
+	 * @throws IOException
+	 */
+	public List<String> getModelFileList(String dir) throws IOException {
+		return null;
+	}
+
+	/**
+	 * Downloads all files of a model (see {@link #getModelFileList(String)}) into a local directory.
+	 * 
+	 * The files are read concurrently using up to the given number of connections. The number of downloaded files
+	 * is reported as progress, and the downloaded bytes and throughput as message.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @param target
+	 * The local directory to write the files to, created if not existing
+	 * @param connections
+	 * The maximum number of files read at the same time
+	 * @param overwrite
+	 * Whether existing files in the target directory are downloaded again
+	 * @param pr
+	 * A progress reporter, may be null
+	 * @return The number of bytes downloaded
+	 * @throws IOException
+	 */
+	public long downloadModel(final String dir, final File target, int connections, final boolean overwrite,
+			IProgressReporter pr) throws IOException {
+		List<String> files = getModelFileList(dir);
+		if (files == null) {
+			throw new IOException("Cannot list the files of model '" + dir + "' at " + getClass().getSimpleName());
+		}
+		if (!target.isDirectory() && !target.mkdirs()) {
+			throw new IOException("Could not create directory " + target);
+		}
+		return downloadFiles(dir, files, connections, pr, new FileDownload() {
+			@Override
+			public void download(String filename, AtomicLong bytes) throws IOException {
+				File file = new File(target, filename);
+				if (overwrite || !file.exists()) {
+					File parent = file.getParentFile();
+					if (!parent.isDirectory() && !parent.mkdirs()) {
+						throw new IOException("Could not create directory " + parent);
+					}
+					FileModelManager.writeFile(file, new CountingInputStream(getModelInStream(dir, filename), bytes));
 				}
-			} catch (SAXException se) {
-				Log.e("AModelManager", "Invalid model.xml: " + se.getMessage(), se);
+			}
+		});
+	}
+
+	/**
+	 * A single file download of {@link AModelManager#downloadFiles(String, List, int, IProgressReporter, FileDownload)}.
+	 */
+	interface FileDownload {
+		/**
+		 * @param filename
+		 * @param bytes
+		 * The counter of downloaded bytes to add to
+		 * @throws IOException
+		 */
+		void download(String filename, AtomicLong bytes) throws IOException;
+	}
+
+	/**
+	 * Runs the downloads of the given files of a model concurrently using up to the given number of connections. The
+	 * number of downloaded files is reported as progress, and the downloaded bytes and throughput as message.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @param files
+	 * @param connections
+	 * The maximum number of files read at the same time
+	 * @param pr
+	 * A progress reporter, may be null
+	 * @param d
+	 * The download of a single file
+	 * @return The number of bytes downloaded
+	 * @throws IOException
+	 * If a download fails or a file name is not a relative path inside the model directory (see
+	 * {@link #isValidFileName(String)}). Nothing is downloaded in the latter case.
+	 */
+	long downloadFiles(String dir, List<String> files, int connections, final IProgressReporter pr,
+			final FileDownload d) throws IOException {
+		// The names usually come from a remote manifest, so they must not point outside the target directory
+		for (String f : files) {
+			if (!isValidFileName(f)) {
+				throw new IOException("Invalid file name '" + f + "' in the file list of model " + dir);
+			}
+		}
+		final AtomicLong bytes = new AtomicLong();
+		final AtomicInteger done = new AtomicInteger();
+		final long start = System.currentTimeMillis();
+		if (pr != null) {
+			pr.init("Downloading " + dir, files.size());
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(connections, files.size())),
+				new DaemonThreadFactory(getClass().getSimpleName() + "-download"));
+		try {
+			List<Future<Void>> downloads = new ArrayList<Future<Void>>(files.size());
+			for (final String f : files) {
+				downloads.add(pool.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						d.download(f, bytes);
+						if (pr != null) {
+							long b = bytes.get();
+							double secs = Math.max(1, System.currentTimeMillis() - start) / 1000.0;
+							synchronized (pr) {
+								pr.progress(done.incrementAndGet());
+								pr.setMessage(String.format("%d KB (%.1f KB/s)", b / 1024, b / 1024 / secs));
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> f : downloads) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while downloading model " + dir, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			} else if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IOException("Downloading model " + dir + " failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+		if (pr != null) {
+			pr.finish();
+		}
+		return bytes.get();
+	}
+
+	/**
+	 * Checks that a model file name is a relative path that stays inside the model directory, i.e. is not absolute,
+	 * has no drive letter and no ".." segments.
+	 * 
+	 * @param filename
+	 * @return true if the file name is safe to resolve against a local model directory
+	 */
+	static boolean isValidFileName(String filename) {
+		if (filename == null || filename.length() == 0 || filename.startsWith("/") || filename.startsWith("\\")
+				|| filename.indexOf(':') >= 0 || new File(filename).isAbsolute()) {
+			return false;
+		}
+		for (String seg : filename.split("[/\\\\]")) {
+			if ("..".equals(seg)) {
 				return false;
 			}
-		} catch (IOException e) {
-			throw new RuntimeException("I/O error while checking if model directory is valid.", e);
 		}
-		// Restore old model dir
-		mdir = olddir;
 		return true;
 	}
 
+	/**
+	 * Returns whether the specified file exists in the given model directory, independent of the current model.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @param filename
+	 * @return true if the file exists in the model, false otherwise
+	 */
+	protected abstract boolean modelFileExists(String dir, String filename);
+
 	/**
 	 * Returns whether the specified file exists in the current model folder.
 	 * 
@@ -616,29 +1455,38 @@ public abstract class AModelManager {
 		assert isValidModelDir(location);
 
 		this.mdir = location;
+		loader = null;
 		Log.d("ModelManager", "Loading model from " + getModelURI());
+		ModelHandle h = open(location);
+		model = h;
+		mor = h.getMathObjReader();
+	}
+
+	/**
+	 * Opens the model in the given directory without changing the current model.
+	 * 
+	 * The returned handle is immutable and independent of {@link #useModel(String)}, so that one manager can serve
+	 * several models concurrently (see {@link ModelHandle}).
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @return A handle for the model
+	 * @throws ModelManagerException
+	 * The directory does not contain a valid model.
+	 */
+	public ModelHandle open(String dir) throws ModelManagerException {
+		ModelXMLIndex idx;
 		try {
-			modelxml = db.parse(getInStream("model.xml"));
+			idx = getModelXML(dir);
 		} catch (Exception e) {
-			throw new ModelManagerException("Unexpected Exception in AModelManager.setModelDir: " + e.getMessage(), e);
+			throw new ModelManagerException("Error reading the model.xml of model '" + dir + "': " + e.getMessage(), e);
 		}
-
-		modelxml.normalize();
-		modelnode = modelxml.getElementsByTagName("model").item(0);
-
-		String type = getModelXMLAttribute("type");
-		mtype = ModelType.parse(type);
-		if (mtype == ModelType.Unknown)
+		XMLElement m = idx.getModelElement();
+		String type = m != null ? m.getAttribute("type") : null;
+		ModelType mt = ModelType.parse(type);
+		if (mt == ModelType.Unknown)
 			throw new ModelManagerException("Unknown model type: " + type);
-
-		// Parse model data machine format
-		mor = new MathObjectReader();
-		String machformat = getModelXMLAttribute("machformat");
-		if ("le".equals(machformat)) {
-			mor.MachineFormat = MachineFormats.LittleEndian;
-		} else {
-			mor.MachineFormat = MachineFormats.BigEndian;
-		}
+		return new ModelHandle(this, dir, getModelURI(dir), idx, mt);
 	}
 
 	/**
@@ -649,6 +1497,93 @@ public abstract class AModelManager {
 	 * @return True if the tag exists or false otherwise
 	 */
 	public boolean xmlTagExists(String tagname) {
-		return getModelXMLElement(tagname) != null;
+		ModelHandle h = model;
+		return h != null && h.xmlTagExists(tagname);
+	}
+
+	/**
+	 * Adds the number of bytes read to a counter.
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+		private final AtomicLong count;
+
+		CountingInputStream(InputStream in, AtomicLong count) {
+			super(in);
+			this.count = count;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) {
+				count.incrementAndGet();
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				count.addAndGet(n);
+			}
+			return n;
+		}
+	}
+
+	/**
+	 * A stream of a model file together with the file's version.
+	 * 
+	 * @see AModelManager#getChangedModelInStream(String, String, String)
+	 */
+	protected static class VersionedInputStream extends FilterInputStream {
+
+		/**
+		 * The version of the file as returned by {@link AModelManager#getModelFileVersion(String, String)}, null if
+		 * unknown
+		 */
+		public final String version;
+
+		/**
+		 * @param in
+		 * @param version
+		 */
+		public VersionedInputStream(InputStream in, String version) {
+			super(in);
+			this.version = version;
+		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Creates named daemon threads, so that pending work does not keep the VM alive.
+	 */
+	private static class DaemonThreadFactory implements ThreadFactory {
+		private final String name;
+		private final AtomicInteger cnt = new AtomicInteger();
+
+		DaemonThreadFactory(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, name + "-" + cnt.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+	/**
+	 * A model.xml index together with the version of the file it was parsed from.
+	 */
+	private static class CachedIndex {
+		final String version;
+		final ModelXMLIndex index;
+
+		CachedIndex(String version, ModelXMLIndex index) {
+			this.version = version;
+			this.index = index;
+		}
+	}
+
+}
@@ -0,0 +1,316 @@
+package jarmos.io;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * A DataInput implementation for binary files of either machine format that decodes values through a reusable byte
+ * buffer.
+ * 
+ * Besides the single value methods of DataInput, this class provides bulk methods like
+ * {@link #readDoubles(double[], int, int)} which read whole blocks of bytes at once and decode them via NIO buffer
+ * views in the given byte order.
+ * 
+ * Only the bytes actually requested are read from the underlying stream, so that reading can continue on the stream
+ * after the DataInput has been used. The stream is not closed by this class.
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public class BulkDataInput implements DataInput {
+
+	/**
+	 * The default size of the decoding buffer in bytes.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private byte[] buf;
+	private ByteBuffer bb;
+	private DoubleBuffer db;
+	private FloatBuffer fb;
+	private InputStream in;
+	private ShortBuffer sb;
+
+	/**
+	 * Creates a new bulk DataInput with the default buffer size.
+	 * 
+	 * @param in
+	 * The inputstream to read the values from
+	 * @param order
+	 * The byte order of the binary data
+	 */
+	public BulkDataInput(InputStream in, ByteOrder order) {
+		this(in, order, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a new bulk DataInput.
+	 * 
+	 * @param in
+	 * The inputstream to read the values from
+	 * @param order
+	 * The byte order of the binary data
+	 * @param buffersize
+	 * The decoding buffer size in bytes. Will be rounded up to a multiple of eight, at least eight.
+	 */
+	public BulkDataInput(InputStream in, ByteOrder order, int buffersize) {
+		this.in = in;
+		buf = new byte[Math.max(8, (buffersize + 7) & ~7)];
+		bb = ByteBuffer.wrap(buf).order(order);
+		db = bb.asDoubleBuffer();
+		fb = bb.asFloatBuffer();
+		sb = bb.asShortBuffer();
+	}
+
+	/**
+	 * Reads exactly len bytes from the stream into the decoding buffer.
+	 * 
+	 * @param len
+	 * @throws IOException
+	 */
+	private void fill(int len) throws IOException {
+		readFully(buf, 0, len);
+	}
+
+	/**
+	 * @return The byte order used to decode values.
+	 */
+	public ByteOrder getByteOrder() {
+		return bb.order();
+	}
+
+	/**
+	 * Reads len double values into the given array, starting at position off.
+	 * 
+	 * @param dst
+	 * @param off
+	 * @param len
+	 * @throws IOException
+	 */
+	public void readDoubles(double[] dst, int off, int len) throws IOException {
+		int chunk = buf.length / 8;
+		while (len > 0) {
+			int n = Math.min(chunk, len);
+			fill(n * 8);
+			db.clear();
+			db.get(dst, off, n);
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Reads len double values and stores them rounded to single precision into the given array, starting at position
+	 * off.
+	 * 
+	 * @param dst
+	 * @param off
+	 * @param len
+	 * @throws IOException
+	 */
+	public void readDoublesAsFloats(float[] dst, int off, int len) throws IOException {
+		int chunk = buf.length / 8;
+		while (len > 0) {
+			int n = Math.min(chunk, len);
+			fill(n * 8);
+			for (int i = 0; i < n; i++) {
+				dst[off + i] = (float) db.get(i);
+			}
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Reads len float values into the given array, starting at position off.
+	 * 
+	 * @param dst
+	 * @param off
+	 * @param len
+	 * @throws IOException
+	 */
+	public void readFloats(float[] dst, int off, int len) throws IOException {
+		int chunk = buf.length / 4;
+		while (len > 0) {
+			int n = Math.min(chunk, len);
+			fill(n * 4);
+			fb.clear();
+			fb.get(dst, off, n);
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Reads len short values into the given array, starting at position off.
+	 * 
+	 * @param dst
+	 * @param off
+	 * @param len
+	 * @throws IOException
+	 */
+	public void readShorts(short[] dst, int off, int len) throws IOException {
+		int chunk = buf.length / 2;
+		while (len > 0) {
+			int n = Math.min(chunk, len);
+			fill(n * 2);
+			sb.clear();
+			sb.get(dst, off, n);
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * @see java.io.DataInput#readFully(byte[])
+	 */
+	@Override
+	public void readFully(byte[] b) throws IOException {
+		readFully(b, 0, b.length);
+	}
+
+	/**
+	 * @see java.io.DataInput#readFully(byte[], int, int)
+	 */
+	@Override
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			int read = in.read(b, off, len);
+			if (read < 0) {
+				throw new EOFException();
+			}
+			off += read;
+			len -= read;
+		}
+	}
+
+	/**
+	 * @see java.io.DataInput#skipBytes(int)
+	 */
+	@Override
+	public int skipBytes(int n) throws IOException {
+		int total = 0;
+		while (total < n) {
+			long skipped = in.skip(n - total);
+			if (skipped <= 0) {
+				// Fall back to reading if the stream does not support skipping
+				if (in.read() < 0) {
+					break;
+				}
+				skipped = 1;
+			}
+			total += skipped;
+		}
+		return total;
+	}
+
+	/**
+	 * @see java.io.DataInput#readBoolean()
+	 */
+	@Override
+	public boolean readBoolean() throws IOException {
+		return readByte() != 0;
+	}
+
+	/**
+	 * @see java.io.DataInput#readByte()
+	 */
+	@Override
+	public byte readByte() throws IOException {
+		fill(1);
+		return buf[0];
+	}
+
+	/**
+	 * @see java.io.DataInput#readUnsignedByte()
+	 */
+	@Override
+	public int readUnsignedByte() throws IOException {
+		return readByte() & 0xff;
+	}
+
+	/**
+	 * @see java.io.DataInput#readShort()
+	 */
+	@Override
+	public short readShort() throws IOException {
+		fill(2);
+		return bb.getShort(0);
+	}
+
+	/**
+	 * @see java.io.DataInput#readUnsignedShort()
+	 */
+	@Override
+	public int readUnsignedShort() throws IOException {
+		return readShort() & 0xffff;
+	}
+
+	/**
+	 * @see java.io.DataInput#readChar()
+	 */
+	@Override
+	public char readChar() throws IOException {
+		fill(2);
+		return bb.getChar(0);
+	}
+
+	/**
+	 * @see java.io.DataInput#readInt()
+	 */
+	@Override
+	public int readInt() throws IOException {
+		fill(4);
+		return bb.getInt(0);
+	}
+
+	/**
+	 * @see java.io.DataInput#readLong()
+	 */
+	@Override
+	public long readLong() throws IOException {
+		fill(8);
+		return bb.getLong(0);
+	}
+
+	/**
+	 * @see java.io.DataInput#readFloat()
+	 */
+	@Override
+	public float readFloat() throws IOException {
+		fill(4);
+		return bb.getFloat(0);
+	}
+
+	/**
+	 * @see java.io.DataInput#readDouble()
+	 */
+	@Override
+	public double readDouble() throws IOException {
+		fill(8);
+		return bb.getDouble(0);
+	}
+
+	/**
+	 * @see java.io.DataInput#readLine()
+	 */
+	@Override
+	public String readLine() throws IOException {
+		throw new RuntimeException("Not implemented.");
+	}
+
+	/**
+	 * @see java.io.DataInput#readUTF()
+	 */
+	@Override
+	public String readUTF() throws IOException {
+		throw new RuntimeException("Not implemented.");
+	}
+}
@@ -0,0 +1,69 @@
+package jarmos.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An InputStream reading from a ByteBuffer, e.g. a memory mapped region of a file.
+ * 
+ * The MathObjectReader recognizes streams of this type and decodes directly from the buffer instead of reading through
+ * the stream interface.
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public class ByteBufferInputStream extends InputStream {
+
+	private ByteBuffer buf;
+
+	/**
+	 * Creates a new stream reading the remaining bytes of the given buffer.
+	 * 
+	 * The buffer is not modified; the stream operates on a duplicate.
+	 * 
+	 * @param buf
+	 */
+	public ByteBufferInputStream(ByteBuffer buf) {
+		this.buf = buf.duplicate();
+	}
+
+	/**
+	 * Returns a new view on the bytes not yet read from this stream.
+	 * 
+	 * @return
+	 */
+	public ByteBuffer getBuffer() {
+		return buf.slice();
+	}
+
+	@Override
+	public int available() throws IOException {
+		return buf.remaining();
+	}
+
+	@Override
+	public int read() throws IOException {
+		return buf.hasRemaining() ? buf.get() & 0xff : -1;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!buf.hasRemaining()) {
+			return -1;
+		}
+		len = Math.min(len, buf.remaining());
+		buf.get(b, off, len);
+		return len;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		int k = (int) Math.max(0, Math.min(n, buf.remaining()));
+		buf.position(buf.position() + k);
+		return k;
+	}
+}
@@ -0,0 +1,390 @@
+package jarmos.io;
+
+import jarmos.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps track of the size, last access time and access count of the model directories in a cache root directory, and
+ * evicts model directories if the cache exceeds a size quota.
+ *
+ * The journal is persisted as a small text file with one line per model directory: name, last access time, access
+ * count and size, separated by tabs. Directories in the cache root that are not in the journal are added with their
+ * last modification time as access time.
+ *
+ * Several processes may share a cache root. When saving, the journal file is locked and the changes of this process
+ * are merged into the current file contents, so that accesses and evictions of other processes are kept.
+ *
+ * @author Daniel Wirtz
+ *
+ */
+class CacheJournal {
+
+	/**
+	 * The journal file name inside the cache root directory
+	 */
+	public static final String JOURNAL_FILE = ".cachejournal";
+
+	/**
+	 * The file inside the cache root directory that is locked while saving the journal
+	 */
+	public static final String LOCK_FILE = ".cachejournal.lock";
+
+	private static class Entry {
+		String dir;
+		long lastAccess;
+		int count;
+		long size;
+
+		/**
+		 * The accesses and added bytes since the last save, and whether the size has been set since
+		 */
+		int countDelta;
+		long sizeDelta;
+		boolean sizeSet;
+	}
+
+	private boolean dirty = false;
+	private Map<String, Entry> entries = new HashMap<String, Entry>();
+	private Set<String> removed = new HashSet<String>();
+	private File file;
+	private File root;
+
+	/**
+	 * Loads the journal of the given cache root directory.
+	 *
+	 * @param root
+	 */
+	CacheJournal(File root) {
+		this.root = root;
+		file = new File(root, JOURNAL_FILE);
+		entries = load();
+		// Add directories not in the journal
+		File[] dirs = root.listFiles();
+		if (dirs != null) {
+			for (File d : dirs) {
+				if (d.isDirectory() && !entries.containsKey(d.getName())) {
+					Entry e = getEntry(d.getName());
+					e.lastAccess = d.lastModified();
+					e.size = sizeOf(d);
+					e.sizeSet = true;
+					dirty = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records an access to the given model directory.
+	 *
+	 * @param dir
+	 */
+	synchronized void touch(String dir) {
+		Entry e = getEntry(dir);
+		e.lastAccess = System.currentTimeMillis();
+		e.count++;
+		e.countDelta++;
+		dirty = true;
+	}
+
+	/**
+	 * Adds the given number of bytes to the size of the model directory.
+	 *
+	 * @param dir
+	 * @param bytes
+	 */
+	synchronized void addSize(String dir, long bytes) {
+		Entry e = getEntry(dir);
+		e.size += bytes;
+		e.sizeDelta += bytes;
+		dirty = true;
+	}
+
+	/**
+	 * Sets the size of the model directory to the total size of its files.
+	 *
+	 * @param dir
+	 */
+	synchronized void updateSize(String dir) {
+		Entry e = getEntry(dir);
+		e.size = sizeOf(new File(root, dir));
+		e.sizeSet = true;
+		dirty = true;
+	}
+
+	/**
+	 * Removes the model directory from the journal.
+	 *
+	 * @param dir
+	 */
+	synchronized void remove(String dir) {
+		if (entries.remove(dir) != null) {
+			removed.add(dir);
+			dirty = true;
+		}
+	}
+
+	/**
+	 * @return The total size of all cached model directories
+	 */
+	synchronized long getTotalSize() {
+		long res = 0;
+		for (Entry e : entries.values()) {
+			res += e.size;
+		}
+		return res;
+	}
+
+	/**
+	 * Deletes model directories until the total size is within the given quota.
+	 *
+	 * Directories with any lock file (see {@link CachingModelManager#LOCK_DIR}) locked, i.e. in use by another
+	 * process, are not evicted. The lock files of a directory are held while deleting it.
+	 *
+	 * @param maxSize
+	 * The size quota in bytes
+	 * @param policy
+	 * The eviction strategy
+	 * @param keep
+	 * Model directories that must not be evicted
+	 * @return The evicted model directories
+	 */
+	synchronized List<String> evict(long maxSize, final CachingModelManager.Eviction policy, Collection<String> keep) {
+		List<String> res = new ArrayList<String>();
+		long total = getTotalSize();
+		if (total > maxSize) {
+			List<Entry> l = new ArrayList<Entry>(entries.values());
+			Collections.sort(l, new Comparator<Entry>() {
+				@Override
+				public int compare(Entry a, Entry b) {
+					if (policy == CachingModelManager.Eviction.LFU && a.count != b.count) {
+						return a.count < b.count ? -1 : 1;
+					}
+					return a.lastAccess < b.lastAccess ? -1 : (a.lastAccess == b.lastAccess ? 0 : 1);
+				}
+			});
+			for (Entry e : l) {
+				if (total <= maxSize) {
+					break;
+				}
+				if (keep.contains(e.dir)) {
+					continue;
+				}
+				File dir = new File(root, e.dir);
+				List<FileChannel> locks = lockDir(dir);
+				if (locks == null) {
+					Log.d("CacheJournal", "Not evicting cached model " + e.dir + ", in use by another process");
+					continue;
+				}
+				try {
+					if (deleteDir(dir)) {
+						total -= e.size;
+						entries.remove(e.dir);
+						removed.add(e.dir);
+						res.add(e.dir);
+						dirty = true;
+					} else {
+						Log.e("CacheJournal", "Could not evict cached model " + e.dir);
+					}
+				} finally {
+					release(locks);
+				}
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Locks all lock files of the model directory exclusively.
+	 *
+	 * @param dir
+	 * @return The locked channels or null if any lock file is locked already
+	 */
+	private static List<FileChannel> lockDir(File dir) {
+		List<FileChannel> res = new ArrayList<FileChannel>();
+		File[] files = new File(dir, CachingModelManager.LOCK_DIR).listFiles();
+		if (files != null) {
+			for (File f : files) {
+				try {
+					FileChannel c = new RandomAccessFile(f, "rw").getChannel();
+					res.add(c);
+					if (c.tryLock() == null) {
+						release(res);
+						return null;
+					}
+				} catch (OverlappingFileLockException e) {
+					// Locked by another manager of this VM
+					release(res);
+					return null;
+				} catch (IOException e) {
+					Log.e("CacheJournal", "Error locking " + f + ": " + e.getMessage(), e);
+					release(res);
+					return null;
+				}
+			}
+		}
+		return res;
+	}
+
+	private static void release(List<FileChannel> locks) {
+		for (FileChannel c : locks) {
+			try {
+				c.close();
+			} catch (IOException e) {
+				Log.e("CacheJournal", "Error releasing lock: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	/**
+	 * Writes the journal file, if changed.
+	 *
+	 * The journal file is locked while merging the changes since the last save into its current contents. The merged
+	 * entries are used afterwards.
+	 */
+	synchronized void save() {
+		if (!dirty) {
+			return;
+		}
+		// File locks are held per VM, so concurrent journals of this VM are serialized here
+		synchronized (CacheJournal.class) {
+			try {
+				FileChannel lock = new RandomAccessFile(new File(root, LOCK_FILE), "rw").getChannel();
+				try {
+					lock.lock();
+					Map<String, Entry> merged = load();
+					for (Entry e : entries.values()) {
+						Entry m = merged.get(e.dir);
+						if (m == null) {
+							// Unless evicted by another process
+							if (new File(root, e.dir).isDirectory()) {
+								merged.put(e.dir, e);
+							}
+						} else {
+							m.lastAccess = Math.max(m.lastAccess, e.lastAccess);
+							m.count += e.countDelta;
+							m.size = e.sizeSet ? e.size : m.size + e.sizeDelta;
+						}
+					}
+					for (String dir : removed) {
+						merged.remove(dir);
+					}
+					File tmp = FileModelManager.createTempFile(file);
+					Writer w = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+					try {
+						for (Entry e : merged.values()) {
+							w.write(e.dir + "\t" + e.lastAccess + "\t" + e.count + "\t" + e.size + "\n");
+							e.countDelta = 0;
+							e.sizeDelta = 0;
+							e.sizeSet = false;
+						}
+					} finally {
+						w.close();
+					}
+					FileModelManager.replaceFile(tmp, file);
+					entries = merged;
+					removed.clear();
+					dirty = false;
+				} finally {
+					lock.close();
+				}
+			} catch (IOException e) {
+				Log.e("CacheJournal", "Error writing cache journal: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private Entry getEntry(String dir) {
+		Entry e = entries.get(dir);
+		if (e == null) {
+			e = new Entry();
+			e.dir = dir;
+			entries.put(dir, e);
+		}
+		return e;
+	}
+
+	/**
+	 * Reads the journal file, ignoring entries of removed directories.
+	 *
+	 * @return The entries
+	 */
+	private Map<String, Entry> load() {
+		Map<String, Entry> res = new HashMap<String, Entry>();
+		if (!file.isFile()) {
+			return res;
+		}
+		try {
+			BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			try {
+				String line;
+				while ((line = r.readLine()) != null) {
+					String[] parts = line.split("\t");
+					// Ignore broken lines and removed directories
+					if (parts.length != 4 || !new File(root, parts[0]).isDirectory()) {
+						dirty = true;
+						continue;
+					}
+					Entry e = new Entry();
+					e.dir = parts[0];
+					res.put(e.dir, e);
+					e.lastAccess = Long.parseLong(parts[1]);
+					e.count = Integer.parseInt(parts[2]);
+					e.size = Long.parseLong(parts[3]);
+				}
+			} finally {
+				r.close();
+			}
+		} catch (IOException e) {
+			Log.e("CacheJournal", "Error reading cache journal: " + e.getMessage(), e);
+		} catch (NumberFormatException e) {
+			Log.e("CacheJournal", "Invalid cache journal: " + e.getMessage(), e);
+		}
+		return res;
+	}
+
+	private static long sizeOf(File f) {
+		if (f.isDirectory()) {
+			long res = 0;
+			File[] files = f.listFiles();
+			if (files != null) {
+				for (File c : files) {
+					res += sizeOf(c);
+				}
+			}
+			return res;
+		}
+		return f.length();
+	}
+
+	private static boolean deleteDir(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				if (!deleteDir(f)) {
+					return false;
+				}
+			}
+		}
+		return dir.delete();
+	}
+}
@@ -1,17 +1,33 @@
 package jarmos.io;
 
 import jarmos.IMessageHandler;
+import jarmos.Log;
 import jarmos.ModelDescriptor;
 import jarmos.ModelType;
 import jarmos.Parameters;
 import jarmos.util.IProgressReporter;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.net.URI;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A wrapper class that takes any AModelManager as source and a FileModelManager as target. Any calls to the
@@ -22,6 +38,20 @@ import java.util.List;
  * (Android).
  * 
  * 
+ * The cache size can be limited via {@link #setCacheQuota(long, Eviction)}. Accesses and sizes of all cached models
+ * are tracked in a small journal file in the cache root, and whole model directories are evicted if the quota is
+ * exceeded. The current model is never evicted.
+ * 
+ * The version of each cached file (see {@link AModelManager#getModelFileVersion(String, String)}), e.g. an ETag or
+ * content hash, is stored in the VALIDATORS_FILE of the cached model directory. With overwriteFlag set, cached files
+ * are revalidated at the source on each access and only fetched again if changed. Cached models can also be
+ * revalidated explicitly via {@link #revalidate(String, IProgressReporter)}.
+ * 
+ * Cache files are written to temporary files and renamed when complete, so that interrupted downloads never leave
+ * partial files. Concurrent fetches of the same file are coordinated: within the VM, later users wait for the
+ * running download, and across processes sharing the cache root, a file lock in the LOCK_DIR of the cached model
+ * directory is held while fetching. Streams returned for files that are being fetched must therefore be closed.
+ * 
  * TODO: Delete half-downloaded models if loading fails!
  * 
  * @author Daniel Wirtz @date 2013-08-07
@@ -29,12 +59,68 @@ import java.util.List;
  */
 public class CachingModelManager extends AModelManager {
 
+	/**
+	 * Eviction strategies for the model cache
+	 */
+	public enum Eviction {
+		/**
+		 * Evicts the least recently used model first
+		 */
+		LRU,
+		/**
+		 * Evicts the least frequently used model first, and the least recently used among those
+		 */
+		LFU
+	}
+
+	/**
+	 * The file in each cached model directory containing the versions of the cached files.
+	 */
+	public static final String VALIDATORS_FILE = ".validators";
+
+	/**
+	 * The directory in each cached model directory containing the lock files for fetching model files.
+	 */
+	public static final String LOCK_DIR = ".locks";
+
+	/**
+	 * The file in the LOCK_DIR of the current model directory, which is locked shared while the model is used so that
+	 * other processes do not evict it.
+	 */
+	static final String IN_USE_FILE = ".inuse";
+
+	/**
+	 * Fetches in progress in this VM by absolute target file path.
+	 */
+	private static final Map<String, FetchLock> fetches = new HashMap<String, FetchLock>();
+
 	private FileModelManager dest;
 
+	private Eviction eviction = Eviction.LRU;
+
+	/**
+	 * The model directories of the handles returned by {@link #open(String)}, as long as they are referenced
+	 */
+	private final Map<ModelHandle, String> handles = new WeakHashMap<ModelHandle, String>();
+
+	/**
+	 * The shared lock on the IN_USE_FILE of the current model directory
+	 */
+	private FileChannel inuse;
+
+	private CacheJournal journal;
+
+	private long maxCacheSize = 0;
+
 	private boolean overwriteFlag;
 
 	private AModelManager source;
 
+	/**
+	 * Loaded validators per cached model directory
+	 */
+	private Map<String, Properties> validators = new HashMap<String, Properties>();
+
 	/**
 	 * Creates a new caching model manager with overwriteFlag set to false.
 	 * 
@@ -59,6 +145,107 @@ public class CachingModelManager extends AModelManager {
 		this.source = source;
 		this.dest = dest;
 		this.overwriteFlag = overwriteFlag;
+		journal = new CacheJournal(new File(dest.getRoot()));
+	}
+
+	/**
+	 * Limits the total size of all cached models. If exceeded, whole models are deleted from the cache according to
+	 * the given strategy, except for models in use: the current model, models of referenced handles (see
+	 * {@link #open(String)}), models with files being fetched and models locked by other processes.
+	 * 
+	 * @param maxBytes
+	 * The maximum cache size in bytes, zero for no limit (default)
+	 * @param policy
+	 * The eviction strategy
+	 */
+	public void setCacheQuota(long maxBytes, Eviction policy) {
+		maxCacheSize = maxBytes;
+		eviction = policy;
+		enforceQuota();
+	}
+
+	/**
+	 * @return The total size of all cached models in bytes
+	 */
+	public long getCacheSize() {
+		return journal.getTotalSize();
+	}
+
+	/**
+	 * Evicts models if the cache exceeds its quota and saves the journal.
+	 */
+	private void enforceQuota() {
+		enforceQuota(getModelDir());
+	}
+
+	/**
+	 * Evicts models not in use if the cache exceeds its quota and saves the journal.
+	 * 
+	 * @param pinned
+	 * The model directory currently written to
+	 */
+	private void enforceQuota(String pinned) {
+		if (maxCacheSize > 0) {
+			for (String dir : journal.evict(maxCacheSize, eviction, getPinned(pinned))) {
+				Log.d("CachingModelManager", "Evicted cached model " + dir);
+				synchronized (validators) {
+					validators.remove(dir);
+				}
+			}
+		}
+		journal.save();
+	}
+
+	/**
+	 * @param pinned
+	 * @return The given and the current model directory, the directories of referenced handles and the directories
+	 * with fetches in progress
+	 */
+	private Set<String> getPinned(String pinned) {
+		Set<String> res = new HashSet<String>();
+		res.add(pinned);
+		res.add(getModelDir());
+		synchronized (handles) {
+			res.addAll(handles.values());
+		}
+		String root = new File(dest.getRoot()).getAbsolutePath();
+		synchronized (fetches) {
+			for (FetchLock l : fetches.values()) {
+				if (l.root.equals(root)) {
+					res.add(l.dir);
+				}
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Locks the IN_USE_FILE of the given model directory shared and releases the lock of the previous one.
+	 * 
+	 * @param dir
+	 * The model directory, or null to release the lock only
+	 * @throws IOException
+	 */
+	private synchronized void setInUse(String dir) throws IOException {
+		if (inuse != null) {
+			inuse.close();
+			inuse = null;
+		}
+		if (dir != null) {
+			File f = new File(new File(dest.getRoot(), dir + File.separator + LOCK_DIR), IN_USE_FILE);
+			File parent = f.getParentFile();
+			if (!parent.isDirectory() && !parent.mkdirs()) {
+				throw new IOException("Could not create directory " + parent);
+			}
+			FileChannel c = new RandomAccessFile(f, "rw").getChannel();
+			try {
+				c.lock(0, Long.MAX_VALUE, true);
+			} catch (IOException e) {
+				c.close();
+				throw e;
+			}
+			inuse = c;
+		}
 	}
 
 	@Override
@@ -66,10 +253,336 @@ public class CachingModelManager extends AModelManager {
 		dest.addMessageHandler(h);
 	}
 
+	/**
+	 * Opens the file at the source, if not cached yet or, if revalidating, changed at the source.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @param filename
+	 * @param revalidate
+	 * Whether to check a cached file for changes at the source
+	 * @return A stream writing the file to the cache while being read (see {@link TeeInputStream}), or null if the
+	 * cached file is valid
+	 * @throws IOException
+	 */
+	private InputStream fetchFile(final String dir, final String filename, boolean revalidate) throws IOException {
+		File target = new File(new File(dest.getRoot(), dir), filename);
+		// Cached files are published atomically, so hits need no locking
+		if (!revalidate && target.exists()) {
+			fireCacheAccess(dir, filename, true);
+			return null;
+		}
+		final FetchLock lock = new FetchLock(dir, target);
+		if (!lock.acquire(dir, filename)) {
+			// Fetched (or revalidated) concurrently
+			fireCacheAccess(dir, filename, true);
+			return null;
+		}
+		try {
+			String version = null;
+			if (target.exists()) {
+				if (!revalidate || lock.waited) {
+					lock.release();
+					fireCacheAccess(dir, filename, true);
+					return null;
+				}
+				version = getValidators(dir).getProperty(filename);
+			}
+			final VersionedInputStream src = source.getChangedModelInStream(dir, filename, version);
+			if (src == null) {
+				lock.release();
+				fireCacheAccess(dir, filename, true);
+				return null;
+			}
+			fireCacheAccess(dir, filename, false);
+			return new TeeInputStream(src, target) {
+				@Override
+				protected void completed(long delta) throws IOException {
+					// Store the file's version and size once completely cached
+					setValidator(dir, filename, src.version);
+					journal.addSize(dir, delta);
+					enforceQuota(dir);
+				}
+
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						lock.release();
+					}
+				}
+			};
+		} catch (IOException e) {
+			lock.release();
+			throw e;
+		} catch (RuntimeException e) {
+			lock.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Coordinates fetching a cache file with concurrent fetches of the same file in this VM and in other processes.
+	 */
+	private class FetchLock {
+		private FileChannel channel;
+		private File lockfile;
+		private final CountDownLatch done = new CountDownLatch(1);
+		private final File target;
+
+		/**
+		 * The model directory and the absolute cache root
+		 */
+		final String dir, root;
+
+		/**
+		 * Whether another process held the lock before
+		 */
+		boolean waited = false;
+
+		FetchLock(String dir, File target) {
+			this.dir = dir;
+			this.target = target;
+			root = new File(dest.getRoot()).getAbsolutePath();
+		}
+
+		/**
+		 * Waits for running fetches of the file and locks it.
+		 * 
+		 * @param dir
+		 * @param filename
+		 * @return false if the file has been fetched by another thread of this VM while waiting, true if the lock is
+		 * held
+		 * @throws IOException
+		 */
+		boolean acquire(String dir, String filename) throws IOException {
+			String key = target.getAbsolutePath();
+			while (true) {
+				FetchLock running;
+				synchronized (fetches) {
+					running = fetches.get(key);
+					if (running == null) {
+						fetches.put(key, this);
+						break;
+					}
+				}
+				try {
+					running.done.await();
+				} catch (InterruptedException e) {
+					throw new IOException("Interrupted while waiting for " + filename, e);
+				}
+				// Try again if the other fetch failed
+				if (target.exists()) {
+					return false;
+				}
+			}
+			try {
+				lockfile = new File(new File(dest.getRoot(), dir + File.separator + LOCK_DIR), filename);
+				File parent = lockfile.getParentFile();
+				if (!parent.isDirectory() && !parent.mkdirs()) {
+					throw new IOException("Could not create directory " + parent);
+				}
+				channel = new RandomAccessFile(lockfile, "rw").getChannel();
+				if (channel.tryLock() == null) {
+					waited = true;
+					channel.lock();
+				}
+				return true;
+			} catch (IOException e) {
+				release();
+				throw e;
+			} catch (RuntimeException e) {
+				release();
+				throw e;
+			}
+		}
+
+		/**
+		 * Releases the file lock and wakes up waiting threads. Can be called repeatedly.
+		 * 
+		 * The lock file is deleted if the cached file exists. Processes still waiting for the deleted lock file or
+		 * locking a new one find the cached file and do not fetch it again.
+		 */
+		void release() {
+			// Release the file lock first, as the VM does not allow overlapping locks by the next fetch
+			if (channel != null) {
+				if (target.exists()) {
+					lockfile.delete();
+				}
+				try {
+					channel.close();
+				} catch (IOException e) {
+					Log.e("CachingModelManager", "Error releasing lock for " + target, e);
+				}
+				channel = null;
+			}
+			synchronized (fetches) {
+				if (fetches.get(target.getAbsolutePath()) == this) {
+					fetches.remove(target.getAbsolutePath());
+				}
+			}
+			done.countDown();
+		}
+	}
+
+	/**
+	 * Fetches the file from the source into the cache, if not cached yet or, if revalidating, changed at the source.
+	 * The file's version is stored in the validators file.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @param filename
+	 * @param revalidate
+	 * Whether to check a cached file for changes at the source
+	 * @return true if the file has been fetched
+	 * @throws IOException
+	 */
+	private boolean cacheFile(String dir, String filename, boolean revalidate) throws IOException {
+		InputStream in = fetchFile(dir, filename, revalidate);
+		if (in == null) {
+			return false;
+		}
+		// Closing reads the complete file
+		in.close();
+		return true;
+	}
+
 	private void cacheFile(String filename) throws IOException {
-		if (overwriteFlag || !dest.modelFileExists(filename)) {
-			dest.writeModelFile(filename, source.getInStream(filename));
+		cacheFile(getModelDir(), filename, overwriteFlag);
+	}
+
+	/**
+	 * @param dir
+	 * @return The (cached) validators of the model directory
+	 */
+	private Properties getValidators(String dir) {
+		synchronized (validators) {
+			Properties p = validators.get(dir);
+			if (p == null) {
+				p = new Properties();
+				File f = new File(new File(dest.getRoot(), dir), VALIDATORS_FILE);
+				if (f.isFile()) {
+					try {
+						InputStream in = new FileInputStream(f);
+						try {
+							p.load(in);
+						} finally {
+							in.close();
+						}
+					} catch (IOException e) {
+						// Cached files are revalidated unconditionally
+						Log.e("CachingModelManager", "Error reading " + f + ": " + e.getMessage(), e);
+					}
+				}
+				validators.put(dir, p);
+			}
+			return p;
+		}
+	}
+
+	/**
+	 * Stores the version of a cached file.
+	 * 
+	 * @param dir
+	 * @param filename
+	 * @param version
+	 * The version or null if unknown
+	 * @throws IOException
+	 */
+	private void setValidator(String dir, String filename, String version) throws IOException {
+		synchronized (validators) {
+			Properties p = getValidators(dir);
+			if (version == null ? p.remove(filename) == null : version.equals(p.setProperty(filename, version))) {
+				return;
+			}
+			File f = new File(new File(dest.getRoot(), dir), VALIDATORS_FILE);
+			File tmp = FileModelManager.createTempFile(f);
+			OutputStream out = new FileOutputStream(tmp);
+			try {
+				p.store(out, null);
+			} finally {
+				out.close();
+			}
+			FileModelManager.replaceFile(tmp, f);
+		}
+	}
+
+	/**
+	 * Checks all cached files of the given model for changes at the source and fetches changed files.
+	 * 
+	 * Files without stored version, e.g. cached by earlier versions, are fetched unconditionally once. Files that have
+	 * been removed at the source are kept.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @param pr
+	 * A progress reporter, may be null
+	 * @return The number of fetched files
+	 * @throws IOException
+	 */
+	public int revalidate(String dir, IProgressReporter pr) throws IOException {
+		File[] files = new File(dest.getRoot(), dir).listFiles();
+		if (files == null) {
+			return 0;
+		}
+		if (pr != null) {
+			pr.init("Revalidating " + dir, files.length);
+		}
+		int res = 0;
+		boolean modelxml = false;
+		for (int i = 0; i < files.length; i++) {
+			String name = files[i].getName();
+			if (files[i].isFile() && !VALIDATORS_FILE.equals(name) && !name.endsWith(".tmp")) {
+				try {
+					if (cacheFile(dir, name, true)) {
+						res++;
+						modelxml |= "model.xml".equals(name);
+					}
+				} catch (FileNotFoundException e) {
+					Log.w("CachingModelManager", "Cached file " + name + " does not exist at the source anymore");
+				}
+			}
+			if (pr != null) {
+				pr.progress(i + 1);
+			}
+		}
+		journal.updateSize(dir);
+		enforceQuota();
+		// Reload the changed model.xml
+		if (modelxml && dir.equals(getModelDir())) {
+			try {
+				dest.useModel(dir);
+			} catch (ModelManagerException e) {
+				throw new IOException("Error reloading model.xml of " + dir, e);
+			}
+		}
+		if (pr != null) {
+			pr.finish();
+		}
+		return res;
+	}
+
+	/**
+	 * Revalidates all cached models.
+	 * 
+	 * @see #revalidate(String, IProgressReporter)
+	 * @param pr
+	 * A progress reporter, may be null
+	 * @return The number of fetched files
+	 * @throws IOException
+	 */
+	public int revalidateAll(IProgressReporter pr) throws IOException {
+		int res = 0;
+		File[] dirs = new File(dest.getRoot()).listFiles();
+		if (dirs != null) {
+			for (File d : dirs) {
+				if (d.isDirectory()) {
+					res += revalidate(d.getName(), pr);
+				}
+			}
 		}
+		return res;
 	}
 
 	private void cacheModelFiles() throws IOException, ModelManagerException {
@@ -96,9 +609,22 @@ public class CachingModelManager extends AModelManager {
 		cacheFile("classes.jar");
 	}
 
+	/**
+	 * Uses the cached classes. Caches the classes first if needed, as models opened via {@link #open(String)} are not
+	 * cached completely.
+	 * 
+	 * @see jarmos.io.AModelManager#createClassLoader(java.lang.String)
+	 */
 	@Override
-	public ClassLoader getClassLoader() {
-		return dest.getClassLoader();
+	protected ClassLoader createClassLoader(String dir) {
+		if (!dest.modelFileExists(dir, CLASSES_JARFILE) && source.modelFileExists(dir, CLASSES_JARFILE)) {
+			try {
+				cacheFile(dir, CLASSES_JARFILE, false);
+			} catch (IOException e) {
+				throw new RuntimeException("Caching " + CLASSES_JARFILE + " of model '" + dir + "' failed.", e);
+			}
+		}
+		return dest.createClassLoader(dir);
 	}
 
 	/*
@@ -118,12 +644,130 @@ public class CachingModelManager extends AModelManager {
 	 */
 	@Override
 	protected InputStream getInStreamImpl(String filename) throws IOException {
-		// Write file to the destination if not already exists
-		if (overwriteFlag || !dest.modelFileExists(filename)) {
-			dest.writeModelFile(filename, source.getInStream(filename));
+		// Serve the file while writing it to the destination, if not already existing or changed
+		InputStream in = fetchFile(getModelDir(), filename, overwriteFlag);
+		// Return stream from destination otherwise
+		return in != null ? in : dest.getInStream(filename);
+	}
+
+	/**
+	 * Serves the file from the destination if cached, otherwise fetches it asynchronously from the source (if
+	 * changed) and caches it. Both are bound to the current model directory at call time.
+	 * 
+	 * @see jarmos.io.AModelManager#getInStreamAsync(java.lang.String)
+	 */
+	@Override
+	public Future<InputStream> getInStreamAsync(final String filename) {
+		final String dir = getModelDir();
+		final File target = dest.getModelFile(filename);
+		final boolean cached = !overwriteFlag && target.exists();
+		if (cached) {
+			fireCacheAccess(dir, filename, true);
 		}
-		// Return stream from destination
-		return dest.getInStream(filename);
+		return getExecutor().submit(new Callable<InputStream>() {
+			@Override
+			public InputStream call() throws Exception {
+				long start = System.nanoTime();
+				InputStream in = cached ? null : fetchFile(dir, filename, overwriteFlag);
+				sendFileMessage(filename);
+				return instrument(dir, filename, in != null ? in : new FileInputStream(target), start);
+			}
+		});
+	}
+
+	/**
+	 * @see jarmos.io.CachingModelManager#getInStreamAsync(String)
+	 * @see jarmos.io.AModelManager#readAllAsync(java.lang.String)
+	 */
+	@Override
+	public Future<byte[]> readAllAsync(final String filename) {
+		final String dir = getModelDir();
+		final File target = dest.getModelFile(filename);
+		final boolean cached = !overwriteFlag && target.exists();
+		if (cached) {
+			fireCacheAccess(dir, filename, true);
+		}
+		return getExecutor().submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws Exception {
+				long start = System.nanoTime();
+				InputStream in = cached ? null : fetchFile(dir, filename, overwriteFlag);
+				sendFileMessage(filename);
+				if (in != null) {
+					return readAll(instrument(dir, filename, in, start), -1);
+				}
+				return readAll(instrument(dir, filename, new FileInputStream(target), start), (int) target.length());
+			}
+		});
+	}
+
+	/**
+	 * Downloads all files of the current model from the source to the cache, using up to the given number of
+	 * concurrent connections. Requires a source that can list model files, e.g. a WebModelManager for models with a
+	 * manifest.
+	 * 
+	 * The files are fetched like on access, i.e. coordinated with concurrent fetches and with their versions stored.
+	 * With overwriteFlag set, cached files are revalidated.
+	 * 
+	 * @param connections
+	 * @param pr
+	 * A progress reporter, may be null
+	 * @return The number of bytes downloaded
+	 * @throws IOException
+	 */
+	public long prefetch(int connections, IProgressReporter pr) throws IOException {
+		final String dir = getModelDir();
+		List<String> files = source.getModelFileList(dir);
+		if (files == null) {
+			throw new IOException("Cannot list the files of model '" + dir + "' at "
+					+ source.getClass().getSimpleName());
+		}
+		long res = downloadFiles(dir, files, connections, pr, new FileDownload() {
+			@Override
+			public void download(String filename, AtomicLong bytes) throws IOException {
+				File target = new File(new File(dest.getRoot(), dir), filename);
+				File parent = target.getParentFile();
+				if (!parent.isDirectory() && !parent.mkdirs()) {
+					throw new IOException("Could not create directory " + parent);
+				}
+				InputStream in = fetchFile(dir, filename, overwriteFlag);
+				if (in != null) {
+					// Closing reads the complete file
+					in.close();
+					bytes.addAndGet(target.length());
+				}
+			}
+		});
+		journal.updateSize(dir);
+		enforceQuota();
+		return res;
+	}
+
+	@Override
+	public List<String> getModelFileList(String dir) throws IOException {
+		return source.getModelFileList(dir);
+	}
+
+	@Override
+	public synchronized void shutdown() {
+		super.shutdown();
+		try {
+			setInUse(null);
+		} catch (IOException e) {
+			Log.e("CachingModelManager", "Error releasing the lock of " + getModelDir(), e);
+		}
+		source.shutdown();
+		dest.shutdown();
+	}
+
+	/**
+	 * Uses the version of the cached file, if cached.
+	 * 
+	 * @see jarmos.io.AModelManager#getModelFileVersion(java.lang.String, java.lang.String)
+	 */
+	@Override
+	protected String getModelFileVersion(String dir, String filename) {
+		return dest.getModelFileVersion(dir, filename);
 	}
 
 	@Override
@@ -152,6 +796,11 @@ public class CachingModelManager extends AModelManager {
 		return dest.getModelURI();
 	}
 
+	@Override
+	protected URI getModelURI(String dir) {
+		return dest.getModelURI(dir);
+	}
+
 	@Override
 	public String getModelXMLAttribute(String attrib_name) {
 		return dest.getModelXMLAttribute(attrib_name);
@@ -193,6 +842,23 @@ public class CachingModelManager extends AModelManager {
 		return dest.modelFileExists(filename) || source.modelFileExists(filename);
 	}
 
+	@Override
+	protected boolean modelFileExists(String dir, String filename) {
+		return dest.modelFileExists(dir, filename) || source.modelFileExists(dir, filename);
+	}
+
+	/**
+	 * Serves the file while writing it to the cache, if not cached yet or changed.
+	 * 
+	 * @see #getInStreamImpl(String)
+	 * @see jarmos.io.AModelManager#getModelInStream(java.lang.String, java.lang.String)
+	 */
+	@Override
+	protected InputStream getModelInStream(String dir, String filename) throws IOException {
+		InputStream in = fetchFile(dir, filename, overwriteFlag);
+		return in != null ? in : dest.getModelInStream(dir, filename);
+	}
+
 	@Override
 	public void removeMessageHandler(IMessageHandler h) {
 		dest.removeMessageHandler(h);
@@ -206,25 +872,17 @@ public class CachingModelManager extends AModelManager {
 	@Override
 	public void useModel(String dir) throws ModelManagerException {
 		source.useModel(dir);
+		journal.touch(dir);
 		File destdir = new File(dest.getRoot() + File.separator + dir);
 		if (!destdir.isDirectory()) {
 			if (!destdir.mkdir())
 				throw new ModelManagerException("Could not create directory " + dir + " in " + dest.getRoot());
 		}
-		File modelxml = new File(destdir, "model.xml");
-		if (overwriteFlag || !modelxml.exists()) {
-			try {
-				FileOutputStream out = new FileOutputStream(modelxml);
-				byte[] buffer = new byte[1024];
-				int bytes_read = 0;
-				InputStream in = source.getInStream("model.xml");
-				while ((bytes_read = in.read(buffer)) > 0) {
-					out.write(buffer, 0, bytes_read);
-				}
-				in.close();
-			} catch (IOException e) {
-				throw new ModelManagerException("Error caching model.xml", e);
-			}
+		try {
+			setInUse(dir);
+			cacheFile(dir, "model.xml", overwriteFlag);
+		} catch (IOException e) {
+			throw new ModelManagerException("Error caching model.xml", e);
 		}
 		dest.useModel(dir);
 		try {
@@ -232,9 +890,47 @@ public class CachingModelManager extends AModelManager {
 		} catch (IOException e) {
 			throw new ModelManagerException("Error caching model files.", e);
 		}
+		journal.updateSize(dir);
+		enforceQuota();
+	}
+
+	/**
+	 * Caches the model.xml of the model before opening it. Other model files are cached upon access.
+	 * 
+	 * @see jarmos.io.AModelManager#open(java.lang.String)
+	 */
+	@Override
+	public ModelHandle open(String dir) throws ModelManagerException {
+		journal.touch(dir);
+		File destdir = new File(dest.getRoot() + File.separator + dir);
+		if (!destdir.isDirectory()) {
+			if (!destdir.mkdir())
+				throw new ModelManagerException("Could not create directory " + dir + " in " + dest.getRoot());
+		}
+		try {
+			cacheFile(dir, "model.xml", overwriteFlag);
+		} catch (IOException e) {
+			throw new ModelManagerException("Error caching model.xml", e);
+		}
+		ModelHandle h = super.open(dir);
+		synchronized (handles) {
+			handles.put(h, dir);
+		}
+		return h;
 	}
 
 	public boolean deleteCachedFiles() {
+		unloadModel();
+		try {
+			setInUse(null);
+		} catch (IOException e) {
+			Log.e("CachingModelManager", "Error releasing the lock of " + getModelDir(), e);
+		}
+		synchronized (validators) {
+			validators.remove(getModelDir());
+		}
+		journal.remove(getModelDir());
+		journal.save();
 		return dest.clearCurrentModel();
 	}
 
@@ -0,0 +1,190 @@
+package jarmos.io;
+
+import jarmos.util.IProgressReporter;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads independent model files concurrently.
+ * 
+ * Loading tasks are submitted via {@link #submit(Callable)} and run on a bounded pool of daemon threads shared by all
+ * loaders. A call to {@link #join()} waits for all submitted tasks and reports the number of finished tasks to the
+ * IProgressReporter, if one is given. The results can then be obtained via {@link #get(Future)}.
+ * 
+ * Tasks submitted from a pool thread, i.e. by loaders nested inside a loading task, are run inline upon submission.
+ * This way nested joins never wait for the bounded pool, which could otherwise be exhausted by the waiting tasks.
+ * 
+ * Typical usage, e.g. inside ModelBase.loadOfflineData:
+ * 
+ * @code
+ * ConcurrentLoader l = new ConcurrentLoader(pr, "Loading offline data");
+ * Future<RealMatrix> a = l.submit(...);
+ * Future<RealMatrix> b = l.submit(...);
+ * l.join();
+ * RealMatrix A = l.get(a);
+ * @endcode
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public class ConcurrentLoader {
+
+	/**
+	 * The maximum number of files loaded at the same time.
+	 */
+	public static final int MAX_THREADS = 4;
+
+	private static ExecutorService pool = null;
+
+	/**
+	 * Returns the pool shared by all loaders, creating it if necessary.
+	 * 
+	 * @return
+	 */
+	private static synchronized ExecutorService getPool() {
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(MAX_THREADS, new ThreadFactory() {
+				private AtomicInteger cnt = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new LoaderThread(r, "ConcurrentLoader-" + cnt.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return pool;
+	}
+
+	/**
+	 * The threads of the shared pool.
+	 */
+	private static class LoaderThread extends Thread {
+		LoaderThread(Runnable r, String name) {
+			super(r, name);
+		}
+	}
+
+	private CompletionService<Object> cs;
+	private BlockingQueue<Future<Object>> completed = new LinkedBlockingQueue<Future<Object>>();
+	private IProgressReporter pr;
+	private int submitted = 0;
+	private String title;
+
+	/**
+	 * Creates a new loader without progress reporting.
+	 */
+	public ConcurrentLoader() {
+		this(null, null);
+	}
+
+	/**
+	 * Creates a new loader.
+	 * 
+	 * @param pr
+	 * The progress reporter to report finished tasks to, may be null.
+	 * @param title
+	 * The progress title
+	 */
+	public ConcurrentLoader(IProgressReporter pr, String title) {
+		this.pr = pr;
+		this.title = title;
+		cs = new ExecutorCompletionService<Object>(getPool(), completed);
+	}
+
+	/**
+	 * Submits a loading task.
+	 * 
+	 * @param task
+	 * @return A future for the task's result
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> Future<T> submit(Callable<T> task) {
+		submitted++;
+		if (Thread.currentThread() instanceof LoaderThread) {
+			// Nested inside a loading task
+			FutureTask<Object> f = new FutureTask<Object>((Callable<Object>) task);
+			f.run();
+			completed.add(f);
+			return (Future<T>) f;
+		}
+		return (Future<T>) cs.submit((Callable<Object>) task);
+	}
+
+	/**
+	 * Waits for all submitted tasks to finish.
+	 * 
+	 * If any task fails, the remaining ones are still waited for and the first failure is thrown afterwards.
+	 * 
+	 * @throws IOException
+	 * The first IOException thrown by any task or an IOException wrapping any other failure
+	 */
+	public void join() throws IOException {
+		if (pr != null) {
+			pr.init(title, submitted);
+		}
+		Throwable failure = null;
+		boolean interrupted = false;
+		for (int done = 1; done <= submitted; done++) {
+			try {
+				cs.take().get();
+			} catch (InterruptedException e) {
+				interrupted = true;
+				done--;
+				continue;
+			} catch (ExecutionException e) {
+				if (failure == null) {
+					failure = e.getCause();
+				}
+			}
+			if (pr != null) {
+				pr.progress(done);
+			}
+		}
+		submitted = 0;
+		if (pr != null) {
+			pr.finish();
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure instanceof IOException) {
+			throw (IOException) failure;
+		} else if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure != null) {
+			throw new IOException("Concurrent loading failed: " + failure.getMessage(), failure);
+		}
+	}
+
+	/**
+	 * Returns the result of a task after {@link #join()} has been called.
+	 * 
+	 * @param f
+	 * @return
+	 * @throws IOException
+	 */
+	public <T> T get(Future<T> f) throws IOException {
+		try {
+			return f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for a loading task.", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Loading task failed: " + e.getCause().getMessage(), e.getCause());
+		}
+	}
+}
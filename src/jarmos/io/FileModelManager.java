@@ -10,6 +10,15 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
 
 /**
  * 
@@ -25,6 +34,23 @@ public class FileModelManager extends AModelManager {
 	// public static final String MODEL_DIR = "C:\\Users\\CreaByte\\Documents\\Uni\\Software\\JaRMoS\\JaRMoSModels";
 	public static final String MODEL_DIR = "/home/dwirtz/aghhome/Software/Eclipse/JaRMoS/JaRMoSModels";
 
+	/**
+	 * The size of the buffers for copying streams that are not backed by a file or buffer into files, e.g. downloads.
+	 * 
+	 * Default: 65536
+	 */
+	public static int TransferBufferSize = 65536;
+
+	/**
+	 * Determines whether the buffers for copying streams into files are direct buffers, which are written to the file
+	 * channel without another copy.
+	 * 
+	 * Default: true
+	 */
+	public static boolean UseDirectBuffers = true;
+
+	private static final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<ByteBuffer>();
+
 	private String root;
 
 	/**
@@ -47,15 +73,15 @@ public class FileModelManager extends AModelManager {
 	}
 
 	/**
-	 * @see jarmos.io.AModelManager#getClassLoader()
+	 * @see jarmos.io.AModelManager#createClassLoader(java.lang.String)
 	 */
 	@Override
-	public ClassLoader getClassLoader() {
+	protected ClassLoader createClassLoader(String dir) {
 		try {
-			URL url = new File(root + "/" + getModelDir() + "/" + CLASSES_JARFILE).toURI().toURL();
-			return new URLClassLoader(new URL[] { url }, super.getClassLoader());
+			URL url = new File(root + "/" + dir + "/" + CLASSES_JARFILE).toURI().toURL();
+			return new URLClassLoader(new URL[] { url }, ClassLoader.getSystemClassLoader());
 		} catch (MalformedURLException e) {
-			throw new RuntimeException("Creating a file with path '" + root + "/" + getModelDir() + "/"
+			throw new RuntimeException("Creating a file with path '" + root + "/" + dir + "/"
 					+ CLASSES_JARFILE + "' caused a MalformedURLException.", e);
 		}
 	}
@@ -70,6 +96,44 @@ public class FileModelManager extends AModelManager {
 		return new FileInputStream(getFullModelPath() + filename);
 	}
 
+	/**
+	 * Binds the file to the current model directory at call time.
+	 * 
+	 * @see jarmos.io.AModelManager#getInStreamAsync(java.lang.String)
+	 */
+	@Override
+	public Future<InputStream> getInStreamAsync(final String filename) {
+		final String dir = getModelDir();
+		final File file = getModelFile(filename);
+		return getExecutor().submit(new Callable<InputStream>() {
+			@Override
+			public InputStream call() throws Exception {
+				sendFileMessage(filename);
+				long start = System.nanoTime();
+				return instrument(dir, filename, new FileInputStream(file), start);
+			}
+		});
+	}
+
+	/**
+	 * Binds the file to the current model directory at call time and reads it into an array of the file's size.
+	 * 
+	 * @see jarmos.io.AModelManager#readAllAsync(java.lang.String)
+	 */
+	@Override
+	public Future<byte[]> readAllAsync(final String filename) {
+		final String dir = getModelDir();
+		final File file = getModelFile(filename);
+		return getExecutor().submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws Exception {
+				sendFileMessage(filename);
+				long start = System.nanoTime();
+				return readAll(instrument(dir, filename, new FileInputStream(file), start), (int) file.length());
+			}
+		});
+	}
+
 	/**
 	 * @see jarmos.io.AModelManager#getFolderList()
 	 */
@@ -84,13 +148,103 @@ public class FileModelManager extends AModelManager {
 	 */
 	@Override
 	public boolean modelFileExists(String filename) {
-		return new File(root + File.separator + getModelDir() + File.separator + filename).exists();
+		return modelFileExists(getModelDir(), filename);
+	}
+
+	/**
+	 * @see jarmos.io.AModelManager#modelFileExists(java.lang.String, java.lang.String)
+	 */
+	@Override
+	protected boolean modelFileExists(String dir, String filename) {
+		return new File(root + File.separator + dir + File.separator + filename).exists();
+	}
+
+	/**
+	 * @see jarmos.io.AModelManager#getModelFileList(java.lang.String)
+	 */
+	@Override
+	public List<String> getModelFileList(String dir) throws IOException {
+		File d = new File(root + File.separator + dir);
+		File[] files = d.listFiles();
+		if (files == null) {
+			throw new IOException("Not a model directory: " + d);
+		}
+		List<String> res = new ArrayList<String>(files.length);
+		for (File f : files) {
+			if (f.isFile()) {
+				res.add(f.getName());
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * @see jarmos.io.AModelManager#getModelInStream(java.lang.String, java.lang.String)
+	 */
+	@Override
+	protected InputStream getModelInStream(String dir, String filename) throws IOException {
+		return new FileInputStream(root + File.separator + dir + File.separator + filename);
+	}
+
+	/**
+	 * Uses the last modification date of the model directory (which changes if files are added or removed) and of
+	 * its model.xml.
+	 * 
+	 * @see jarmos.io.AModelManager#getCatalogStamp(java.lang.String)
+	 */
+	@Override
+	protected String getCatalogStamp(String dir) {
+		File d = new File(root + File.separator + dir);
+		if (!d.isDirectory()) {
+			return null;
+		}
+		File xml = new File(d, "model.xml");
+		return d.lastModified() + "-" + xml.lastModified() + "-" + xml.length();
+	}
+
+	/**
+	 * Uses the last modification date and the size of the file.
+	 * 
+	 * Both stay the same if a file is rewritten with the same size within the resolution of the file system's
+	 * modification dates (up to two seconds), so such changes are not detected for data files. The model.xml is small
+	 * and versions its parsed index, so its version also contains the CRC32 of its contents (as
+	 * {@link ModelXMLIndex#getChecksum()}), which is much cheaper than parsing and validating it again.
+	 * 
+	 * @see jarmos.io.AModelManager#getModelFileVersion(java.lang.String, java.lang.String)
+	 */
+	@Override
+	protected String getModelFileVersion(String dir, String filename) {
+		File f = new File(root + File.separator + dir + File.separator + filename);
+		if (!f.exists()) {
+			return null;
+		}
+		String version = f.lastModified() + "-" + f.length();
+		if ("model.xml".equals(filename)) {
+			try {
+				CRC32 crc = new CRC32();
+				crc.update(readAll(new FileInputStream(f), (int) f.length()));
+				version += "-" + Long.toHexString(crc.getValue());
+			} catch (IOException e) {
+				return null;
+			}
+		}
+		return version;
 	}
 
 	protected String getFullModelPath() {
 		return root + File.separator + getModelDir() + File.separator;
 	}
 
+	/**
+	 * Returns the file object for the given file in the current model directory.
+	 * 
+	 * @param filename
+	 * @return
+	 */
+	protected File getModelFile(String filename) {
+		return new File(getFullModelPath() + filename);
+	}
+
 	/**
 	 * Writes the given inputstream to the file specified by filename to the current model directory.
 	 * 
@@ -101,18 +255,138 @@ public class FileModelManager extends AModelManager {
 	 * @throws IOException
 	 */
 	public void writeModelFile(String filename, InputStream in) throws IOException {
-		File file = new File(getFullModelPath() + filename);
-		// Delete if file exists
-		if (file.exists())
-			file.delete();
-		// Create new
-		FileOutputStream out = new FileOutputStream(file);
-		byte[] buffer = new byte[1024];
-		int bytes_read = 0;
-		while ((bytes_read = in.read(buffer)) > 0) {
-			out.write(buffer, 0, bytes_read);
+		writeFile(getModelFile(filename), in);
+	}
+
+	/**
+	 * Returns a read-only channel for the given file of the current model, e.g. for positional reads via
+	 * {@link FileChannel#read(ByteBuffer, long)} without stream wrappers. The caller must close the channel.
+	 * 
+	 * @param filename
+	 * @return The file channel
+	 * @throws IOException
+	 */
+	public FileChannel getChannel(String filename) throws IOException {
+		return new FileInputStream(getModelFile(filename)).getChannel();
+	}
+
+	/**
+	 * Writes the given inputstream to the given file and closes the stream.
+	 * 
+	 * The contents are written to a temporary file first, which then replaces the file (see
+	 * {@link #replaceFile(File, File)}). This way the file never has partial contents, even if writing is interrupted
+	 * or several processes write the same file.
+	 * 
+	 * @param file
+	 * @param in
+	 * @throws IOException
+	 */
+	static void writeFile(File file, InputStream in) throws IOException {
+		File tmp = createTempFile(file);
+		try {
+			FileOutputStream out = new FileOutputStream(tmp);
+			try {
+				transfer(in, out.getChannel());
+			} finally {
+				out.close();
+				in.close();
+			}
+			replaceFile(tmp, file);
+		} finally {
+			// Only exists if writing failed
+			tmp.delete();
+		}
+	}
+
+	/**
+	 * Copies the remaining contents of the given stream to the current position of the channel.
+	 * 
+	 * File streams are transferred by the channels (see {@link FileChannel#transferTo}), which allows the operating
+	 * system to copy the data directly. Streams of buffers (see
+	 * {@link ByteBufferInputStream}) are written directly. Other streams are copied via a buffer of
+	 * {@link #TransferBufferSize} bytes, which is reused per thread.
+	 * 
+	 * The stream is not closed.
+	 * 
+	 * @param in
+	 * @param out
+	 * @return The number of bytes copied
+	 * @throws IOException
+	 */
+	static long transfer(InputStream in, FileChannel out) throws IOException {
+		long total = 0;
+		if (in instanceof FileInputStream) {
+			// Writes at the channel's position, which may be beyond its size
+			FileChannel src = ((FileInputStream) in).getChannel();
+			long start = src.position();
+			long remaining = src.size() - start;
+			while (remaining > 0) {
+				long n = src.transferTo(start + total, remaining, out);
+				if (n <= 0) {
+					break;
+				}
+				total += n;
+				remaining -= n;
+			}
+			src.position(start + total);
+		} else if (in instanceof ByteBufferInputStream) {
+			ByteBuffer buf = ((ByteBufferInputStream) in).getBuffer();
+			while (buf.hasRemaining()) {
+				total += out.write(buf);
+			}
+		} else {
+			ReadableByteChannel src = Channels.newChannel(in);
+			ByteBuffer buf = getBuffer();
+			while (src.read(buf) >= 0 || buf.position() > 0) {
+				buf.flip();
+				total += out.write(buf);
+				buf.compact();
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * @return The cleared copy buffer of the current thread
+	 */
+	private static ByteBuffer getBuffer() {
+		ByteBuffer buf = buffers.get();
+		if (buf == null || buf.capacity() != TransferBufferSize || buf.isDirect() != UseDirectBuffers) {
+			buf = UseDirectBuffers ? ByteBuffer.allocateDirect(TransferBufferSize) : ByteBuffer
+					.allocate(TransferBufferSize);
+			buffers.set(buf);
+		}
+		buf.clear();
+		return buf;
+	}
+
+	/**
+	 * Creates a hidden temporary file next to the given file.
+	 * 
+	 * @param file
+	 * @return The temporary file, ending with ".tmp"
+	 * @throws IOException
+	 */
+	static File createTempFile(File file) throws IOException {
+		return File.createTempFile("." + file.getName() + ".", ".tmp", file.getParentFile());
+	}
+
+	/**
+	 * Moves the temporary file to the target location, replacing any existing file.
+	 * 
+	 * The rename is atomic where the platform allows to rename onto an existing file. Otherwise the existing file is
+	 * deleted first.
+	 * 
+	 * @param tmp
+	 * @param target
+	 * @throws IOException
+	 * If the file could not be replaced. The temporary file is deleted in that case.
+	 */
+	static void replaceFile(File tmp, File target) throws IOException {
+		if (!tmp.renameTo(target) && ((target.exists() && !target.delete()) || !tmp.renameTo(target))) {
+			tmp.delete();
+			throw new IOException("Could not replace " + target);
 		}
-		in.close();
 	}
 
 	/**
@@ -152,6 +426,11 @@ public class FileModelManager extends AModelManager {
 		return new File(getFullModelPath()).toURI(); // URI.create("file://" + root + "/" + getModelDir());
 	}
 
+	@Override
+	protected URI getModelURI(String dir) {
+		return new File(root + File.separator + dir + File.separator).toURI();
+	}
+
 	@Override
 	protected String getLoadingMessage() {
 		return "Reading models";
@@ -0,0 +1,60 @@
+package jarmos.io;
+
+/**
+ * Listener interface for the I/O of model managers, see {@link AModelManager#addIOListener(IModelIOListener)}.
+ * 
+ * Implementations are called from the threads reading the model files and must be thread-safe. See
+ * {@link IOMetrics} for an implementation aggregating the events.
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public interface IModelIOListener {
+
+	/**
+	 * Called when a model file has been opened.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @param filename
+	 * @param nanos
+	 * The time needed to open the file
+	 */
+	public void fileOpened(String dir, String filename, long nanos);
+
+	/**
+	 * Called when the stream of a model file is closed.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @param filename
+	 * @param bytes
+	 * The number of bytes read (or memory mapped)
+	 * @param nanos
+	 * The time from opening the file until the last byte was read
+	 */
+	public void fileRead(String dir, String filename, long bytes, long nanos);
+
+	/**
+	 * Called when a {@link MathObjectReader} has decoded a model file.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @param filename
+	 * @param nanos
+	 * The time from starting to decode until closing the stream, which includes reading the file unless it is memory
+	 * mapped
+	 */
+	public void fileDecoded(String dir, String filename, long nanos);
+
+	/**
+	 * Called when a {@link CachingModelManager} serves a model file from its cache or the source.
+	 * 
+	 * @param dir
+	 * The model directory
+	 * @param filename
+	 * @param hit
+	 * True if the cached file was used, false if the file was fetched from the source
+	 */
+	public void cacheAccess(String dir, String filename, boolean hit);
+}
@@ -0,0 +1,296 @@
+package jarmos.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Aggregates the I/O events of model managers into per-file counters and histograms.
+ * 
+ * Attach an instance to one or more managers via {@link AModelManager#addIOListener(IModelIOListener)} and use
+ * {@link #snapshot()} or {@link #export(Writer)} to see which model files dominate the loading time.
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public class IOMetrics implements IModelIOListener {
+
+	/**
+	 * A histogram of durations with buckets of powers of two microseconds.
+	 * 
+	 * @author Daniel Wirtz
+	 * 
+	 */
+	public static class Histogram {
+
+		/**
+		 * The number of buckets. The last bucket holds all durations of about 2^(BUCKETS-1) microseconds or more.
+		 */
+		public static final int BUCKETS = 32;
+
+		private final long[] buckets = new long[BUCKETS];
+		private long count = 0;
+		private long total = 0;
+		private long max = 0;
+
+		Histogram() {
+		}
+
+		Histogram(Histogram h) {
+			System.arraycopy(h.buckets, 0, buckets, 0, BUCKETS);
+			count = h.count;
+			total = h.total;
+			max = h.max;
+		}
+
+		void add(long nanos) {
+			long us = nanos / 1000;
+			int b = us > 0 ? 64 - Long.numberOfLeadingZeros(us) - 1 : 0;
+			buckets[Math.min(b, BUCKETS - 1)]++;
+			count++;
+			total += nanos;
+			max = Math.max(max, nanos);
+		}
+
+		/**
+		 * @return The number of recorded durations
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @return The sum of all durations in nanoseconds
+		 */
+		public long getTotal() {
+			return total;
+		}
+
+		/**
+		 * @return The maximum duration in nanoseconds
+		 */
+		public long getMax() {
+			return max;
+		}
+
+		/**
+		 * @return The mean duration in nanoseconds
+		 */
+		public double getMean() {
+			return count > 0 ? (double) total / count : 0;
+		}
+
+		/**
+		 * Estimates a percentile of the durations, i.e. returns the upper bound of the bucket containing it.
+		 * 
+		 * @param p
+		 * The percentile between 0 and 1
+		 * @return The duration in nanoseconds
+		 */
+		public long getPercentile(double p) {
+			long n = (long) Math.ceil(p * count);
+			long sum = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				sum += buckets[i];
+				if (sum >= n && sum > 0) {
+					return Math.min(2000L << i, max);
+				}
+			}
+			return max;
+		}
+
+		/**
+		 * @param i
+		 * @return The number of durations in the bucket [2^i, 2^(i+1)) microseconds
+		 */
+		public long getBucket(int i) {
+			return buckets[i];
+		}
+	}
+
+	/**
+	 * The aggregated I/O statistics of a model file.
+	 * 
+	 * @author Daniel Wirtz
+	 * 
+	 */
+	public static class FileStats {
+		private long opens = 0;
+		private long bytes = 0;
+		private long hits = 0;
+		private long misses = 0;
+		private final Histogram open;
+		private final Histogram read;
+		private final Histogram decode;
+
+		FileStats() {
+			open = new Histogram();
+			read = new Histogram();
+			decode = new Histogram();
+		}
+
+		FileStats(FileStats s) {
+			opens = s.opens;
+			bytes = s.bytes;
+			hits = s.hits;
+			misses = s.misses;
+			open = new Histogram(s.open);
+			read = new Histogram(s.read);
+			decode = new Histogram(s.decode);
+		}
+
+		/**
+		 * @return The number of times the file has been opened
+		 */
+		public long getOpens() {
+			return opens;
+		}
+
+		/**
+		 * @return The total number of bytes read
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		/**
+		 * @return The number of cache hits
+		 */
+		public long getCacheHits() {
+			return hits;
+		}
+
+		/**
+		 * @return The number of cache misses
+		 */
+		public long getCacheMisses() {
+			return misses;
+		}
+
+		/**
+		 * @return The open latencies
+		 */
+		public Histogram getOpenTimes() {
+			return open;
+		}
+
+		/**
+		 * @return The times from opening to the last byte read
+		 */
+		public Histogram getReadTimes() {
+			return read;
+		}
+
+		/**
+		 * @return The decoding times
+		 */
+		public Histogram getDecodeTimes() {
+			return decode;
+		}
+
+		/**
+		 * @return The total time spent on the file in nanoseconds, i.e. reading plus decoding of memory mapped files
+		 */
+		public long getTotalTime() {
+			return Math.max(read.getTotal(), decode.getTotal());
+		}
+	}
+
+	private final Map<String, FileStats> files = new LinkedHashMap<String, FileStats>();
+
+	private FileStats getStats(String dir, String filename) {
+		String key = dir + "/" + filename;
+		FileStats s = files.get(key);
+		if (s == null) {
+			s = new FileStats();
+			files.put(key, s);
+		}
+		return s;
+	}
+
+	@Override
+	public synchronized void fileOpened(String dir, String filename, long nanos) {
+		FileStats s = getStats(dir, filename);
+		s.opens++;
+		s.open.add(nanos);
+	}
+
+	@Override
+	public synchronized void fileRead(String dir, String filename, long bytes, long nanos) {
+		FileStats s = getStats(dir, filename);
+		s.bytes += bytes;
+		s.read.add(nanos);
+	}
+
+	@Override
+	public synchronized void fileDecoded(String dir, String filename, long nanos) {
+		getStats(dir, filename).decode.add(nanos);
+	}
+
+	@Override
+	public synchronized void cacheAccess(String dir, String filename, boolean hit) {
+		FileStats s = getStats(dir, filename);
+		if (hit) {
+			s.hits++;
+		} else {
+			s.misses++;
+		}
+	}
+
+	/**
+	 * Returns a copy of the current statistics.
+	 * 
+	 * @return The statistics by model directory and file name ("dir/filename")
+	 */
+	public synchronized Map<String, FileStats> snapshot() {
+		Map<String, FileStats> res = new LinkedHashMap<String, FileStats>();
+		for (Map.Entry<String, FileStats> e : files.entrySet()) {
+			res.put(e.getKey(), new FileStats(e.getValue()));
+		}
+		return res;
+	}
+
+	/**
+	 * Clears all statistics.
+	 */
+	public synchronized void reset() {
+		files.clear();
+	}
+
+	/**
+	 * Writes the current statistics as tab separated table, one line per file and ordered by the total time spent on
+	 * the file. Times are given in milliseconds.
+	 * 
+	 * @param w
+	 * @throws IOException
+	 */
+	public void export(Writer w) throws IOException {
+		List<Map.Entry<String, FileStats>> l = new ArrayList<Map.Entry<String, FileStats>>(snapshot().entrySet());
+		Collections.sort(l, new Comparator<Map.Entry<String, FileStats>>() {
+			@Override
+			public int compare(Map.Entry<String, FileStats> a, Map.Entry<String, FileStats> b) {
+				long ta = a.getValue().getTotalTime(), tb = b.getValue().getTotalTime();
+				return ta > tb ? -1 : (ta == tb ? 0 : 1);
+			}
+		});
+		w.write("file\topens\tbytes\topen\topen_p95\tread\tread_p95\tdecode\tdecode_p95\thits\tmisses\n");
+		for (Map.Entry<String, FileStats> e : l) {
+			FileStats s = e.getValue();
+			w.write(e.getKey() + "\t" + s.opens + "\t" + s.bytes + "\t" + ms(s.open.getTotal()) + "\t"
+					+ ms(s.open.getPercentile(.95)) + "\t" + ms(s.read.getTotal()) + "\t"
+					+ ms(s.read.getPercentile(.95)) + "\t" + ms(s.decode.getTotal()) + "\t"
+					+ ms(s.decode.getPercentile(.95)) + "\t" + s.hits + "\t" + s.misses + "\n");
+		}
+		w.flush();
+	}
+
+	private static String ms(long nanos) {
+		return String.format(Locale.US, "%.3f", nanos / 1e6);
+	}
+}
@@ -0,0 +1,32 @@
+package jarmos.io;
+
+/**
+ * Callback interface for streaming a matrix row by row, see
+ * {@link MathObjectReader#readMatrixRows(java.io.InputStream, IRowConsumer)}.
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public interface IRowConsumer {
+
+	/**
+	 * Called once before any row is passed, with the dimensions of the matrix read.
+	 * 
+	 * @param rows
+	 * @param cols
+	 */
+	public void init(int rows, int cols);
+
+	/**
+	 * Called for each row of the matrix in ascending order.
+	 * 
+	 * The row array is reused for all rows, so implementations must copy any values they want to keep beyond this
+	 * call.
+	 * 
+	 * @param index
+	 * The zero-based row index
+	 * @param row
+	 * The row values
+	 */
+	public void row(int index, double[] row);
+}
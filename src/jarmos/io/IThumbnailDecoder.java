@@ -0,0 +1,33 @@
+package jarmos.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes model images for a {@link ThumbnailCache}, e.g. into an android Bitmap or a java.awt BufferedImage.
+ * 
+ * @param <T>
+ * The decoded thumbnail type
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public interface IThumbnailDecoder<T> {
+
+	/**
+	 * Decodes the image of the given stream. The stream is closed by the caller.
+	 * 
+	 * @param in
+	 * @return The decoded thumbnail
+	 * @throws IOException
+	 */
+	public T decode(InputStream in) throws IOException;
+
+	/**
+	 * Returns the size of the thumbnail (e.g. in bytes), which is used to limit the cache size.
+	 * 
+	 * @param thumb
+	 * @return
+	 */
+	public int getSize(T thumb);
+}
@@ -0,0 +1,116 @@
+package jarmos.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * An input stream reporting the number of bytes read, the time to the last byte and the decoding time of a model file
+ * to the I/O listeners of a model manager once closed.
+ * 
+ * The {@link MathObjectReader} unwraps streams of this type, so that memory mapping still works.
+ * 
+ * @see AModelManager#addIOListener(IModelIOListener)
+ * @author Daniel Wirtz
+ * 
+ */
+class InstrumentedInputStream extends FilterInputStream {
+
+	private final List<IModelIOListener> listeners;
+	private final String dir;
+	private final String filename;
+	private final long start;
+	private long bytes = 0;
+	private long last = 0;
+	private long decodeStart = -1;
+	private boolean closed = false;
+
+	/**
+	 * @param in
+	 * @param listeners
+	 * @param dir
+	 * @param filename
+	 * @param start
+	 * The time the file was requested, as returned by System.nanoTime()
+	 */
+	InstrumentedInputStream(InputStream in, List<IModelIOListener> listeners, String dir, String filename, long start) {
+		super(in);
+		this.listeners = listeners;
+		this.dir = dir;
+		this.filename = filename;
+		this.start = start;
+	}
+
+	/**
+	 * @return The wrapped stream
+	 */
+	InputStream getSource() {
+		return in;
+	}
+
+	/**
+	 * Marks the start of decoding the stream.
+	 */
+	void decoding() {
+		if (decodeStart < 0) {
+			decodeStart = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Counts the bytes of a memory mapped region of the wrapped stream as read.
+	 * 
+	 * @param n
+	 */
+	void mapped(long n) {
+		bytes += n;
+		last = System.nanoTime();
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = in.read();
+		if (b >= 0) {
+			mapped(1);
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = in.read(b, off, len);
+		if (n > 0) {
+			mapped(n);
+		}
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long res = in.skip(n);
+		if (res > 0) {
+			mapped(res);
+		}
+		return res;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			in.close();
+		} finally {
+			long now = System.nanoTime();
+			for (IModelIOListener l : listeners) {
+				l.fileRead(dir, filename, bytes, (bytes > 0 ? last : now) - start);
+				if (decodeStart >= 0) {
+					l.fileDecoded(dir, filename, now - decodeStart);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package jarmos.io;
+
+import jarmos.FloatRealMatrix;
+import jarmos.FloatRealVector;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.math.linear.RealMatrix;
+import org.apache.commons.math.linear.RealVector;
+
+/**
+ * A VM-wide in-memory cache of decoded math objects (matrices, vectors and raw arrays), so that switching between
+ * recently used models or reloading a model does not read and decode its data again.
+ *
+ * Objects are weighted by their approximate size in bytes. The most recently used objects are held strongly up to the
+ * maximum size (see {@link #setMaxSize(long)}). Objects evicted from there are still held via soft references, so
+ * they can be reused until the garbage collector needs the memory.
+ *
+ * The cached objects are shared between all users and must not be modified.
+ *
+ * @see AModelManager#readMatrix(String)
+ * @author Daniel Wirtz
+ *
+ */
+public final class MathObjectCache {
+
+	/**
+	 * The default maximum size of strongly held objects in bytes
+	 */
+	public static final long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+
+	private static class SoftEntry extends SoftReference<Object> {
+		private final String key;
+
+		SoftEntry(String key, Object value, ReferenceQueue<Object> queue) {
+			super(value, queue);
+			this.key = key;
+		}
+	}
+
+	private static long maxSize = DEFAULT_MAX_SIZE;
+
+	private static final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+	private static long size = 0;
+
+	private static final Map<String, SoftEntry> soft = new HashMap<String, SoftEntry>();
+
+	private static final LinkedHashMap<String, Object> strong = new LinkedHashMap<String, Object>(16, .75f, true);
+
+	private MathObjectCache() {
+	}
+
+	/**
+	 * @param key
+	 * @return The cached object or null if not cached
+	 */
+	public static synchronized Object get(String key) {
+		Object res = strong.get(key);
+		if (res == null) {
+			purge();
+			SoftEntry e = soft.remove(key);
+			if (e != null && (res = e.get()) != null) {
+				// Recently used again
+				put(key, res);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Adds an object to the cache.
+	 *
+	 * @param key
+	 * @param value
+	 * A RealMatrix, RealVector or primitive array
+	 */
+	public static synchronized void put(String key, Object value) {
+		Object old = strong.put(key, value);
+		if (old != null) {
+			size -= sizeOf(old);
+		}
+		soft.remove(key);
+		size += sizeOf(value);
+		evict();
+	}
+
+	/**
+	 * Removes all objects from the cache.
+	 */
+	public static synchronized void clear() {
+		strong.clear();
+		soft.clear();
+		size = 0;
+	}
+
+	/**
+	 * @return The approximate size of the strongly held objects in bytes
+	 */
+	public static synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * Sets the maximum size of the strongly held objects. Zero leaves all objects to the garbage collector.
+	 *
+	 * @param bytes
+	 */
+	public static synchronized void setMaxSize(long bytes) {
+		maxSize = bytes;
+		evict();
+	}
+
+	/**
+	 * Returns the approximate size of the given object in memory.
+	 *
+	 * @param o
+	 * @return The size in bytes
+	 */
+	static long sizeOf(Object o) {
+		if (o instanceof double[]) {
+			return 8L * ((double[]) o).length;
+		} else if (o instanceof float[]) {
+			return 4L * ((float[]) o).length;
+		} else if (o instanceof short[]) {
+			return 2L * ((short[]) o).length;
+		} else if (o instanceof RealMatrix) {
+			RealMatrix m = (RealMatrix) o;
+			return (o instanceof FloatRealMatrix ? 4L : 8L) * m.getRowDimension() * m.getColumnDimension();
+		} else if (o instanceof RealVector) {
+			return (o instanceof FloatRealVector ? 4L : 8L) * ((RealVector) o).getDimension();
+		}
+		return 0;
+	}
+
+	/**
+	 * Moves the least recently used objects to the soft references until the size limit is met.
+	 */
+	private static void evict() {
+		purge();
+		Iterator<Map.Entry<String, Object>> it = strong.entrySet().iterator();
+		while (size > maxSize && it.hasNext()) {
+			Map.Entry<String, Object> e = it.next();
+			size -= sizeOf(e.getValue());
+			soft.put(e.getKey(), new SoftEntry(e.getKey(), e.getValue(), queue));
+			it.remove();
+		}
+	}
+
+	/**
+	 * Removes the entries of collected objects.
+	 */
+	private static void purge() {
+		SoftEntry e;
+		while ((e = (SoftEntry) queue.poll()) != null) {
+			if (soft.get(e.key) == e) {
+				soft.remove(e.key);
+			}
+		}
+	}
+}
@@ -2,12 +2,19 @@ package jarmos.io;
 
 import jarmos.MathFactory;
 
-import java.io.DataInput;
-import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 
 import org.apache.commons.math.linear.MatrixIndexException;
 import org.apache.commons.math.linear.RealMatrix;
@@ -19,11 +26,16 @@ import org.apache.commons.math.linear.RealVector;
  * 
  * All methods operate on binary files, which can be written using either the BIG ENDIAN machine format, (Java natively
  * supports this format in the DataInputStream class) or the LITTLE ENDIAN machine format. The property MachineFormat
- * determines which format is to be assumed when reading the binary file.
+ * determines which format is to be assumed when reading the binary file. Streams are decoded block-wise using a
+ * {@link BulkDataInput} of the respective byte order.
  * 
  * When matrices or vectors are read by methods NOT taking the dimensions explicitly, the MathObjectReader will read the
  * first (two) 32-bit integer value(s) as the dimensions of the vector (matrix).
  * 
+ * If a stream passed to one of the self-describing read methods is backed by a file (as is the case for
+ * {@link FileModelManager}, {@link PackedModelManager} or when reading from a file name directly), the file is memory
+ * mapped and decoded in bulk via NIO buffer views instead of reading value by value. See {@link #UseMemoryMapping}.
+ * 
  * @author Daniel Wirtz
  * 
  */
@@ -65,16 +77,86 @@ public class MathObjectReader {
 	 */
 	public MachineFormats MachineFormat = MachineFormats.BigEndian;
 
+	/**
+	 * Determines whether streams backed by a file are read via a memory mapped FileChannel.
+	 * 
+	 * Default: true
+	 */
+	public boolean UseMemoryMapping = true;
+
+	/**
+	 * Determines whether matrices and vectors read via {@link #readMatrix(InputStream)} and
+	 * {@link #readVector(InputStream)} are stored in single precision (see {@link jarmos.FloatRealMatrix} and
+	 * {@link jarmos.FloatRealVector}). The binary files still contain double values, which are rounded upon decoding.
+	 * 
+	 * Default: false
+	 */
+	public boolean SinglePrecision = false;
+
+	/**
+	 * Returns the byte order corresponding to the chosen machine format.
+	 * 
+	 * @return
+	 */
+	private ByteOrder getByteOrder() {
+		return MachineFormat == MachineFormats.LittleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+	}
+
+	/**
+	 * Returns a read-only memory mapped view of the remaining contents of the given stream, set to the byte order of
+	 * the chosen machine format.
+	 * 
+	 * Instrumented streams of model managers (see {@link AModelManager#addIOListener(IModelIOListener)}) are unwrapped
+	 * and informed about the start of decoding and the mapped bytes.
+	 * 
+	 * Regions larger than Integer.MAX_VALUE bytes can not be mapped into a single buffer and are streamed instead.
+	 * 
+	 * @param in
+	 * @return The mapped buffer or null if the stream is not backed by a file, the region is too large or mapping is
+	 * disabled.
+	 * @throws IOException
+	 */
+	private ByteBuffer getMappedBuffer(InputStream in) throws IOException {
+		InstrumentedInputStream ii = null;
+		if (in instanceof InstrumentedInputStream) {
+			ii = (InstrumentedInputStream) in;
+			ii.decoding();
+			in = ii.getSource();
+		}
+		if (!UseMemoryMapping) {
+			return null;
+		}
+		ByteBuffer buf = null;
+		if (in instanceof FileInputStream) {
+			FileChannel fc = ((FileInputStream) in).getChannel();
+			long pos = fc.position();
+			if (fc.size() - pos > Integer.MAX_VALUE) {
+				return null;
+			}
+			buf = fc.map(MapMode.READ_ONLY, pos, fc.size() - pos);
+		} else if (in instanceof ByteBufferInputStream) {
+			// e.g. uncompressed entries of a packed model
+			buf = ((ByteBufferInputStream) in).getBuffer();
+		} else {
+			return null;
+		}
+		if (ii != null) {
+			ii.mapped(buf.remaining());
+		}
+		buf.order(getByteOrder());
+		return buf;
+	}
+
 	/**
 	 * Returns the DataInput depending on the chosen machine format.
 	 * 
 	 * @param in
 	 * @return
 	 */
-	private DataInput getDataInput(InputStream in) {
+	private BulkDataInput getDataInput(InputStream in) {
 		switch (MachineFormat) {
 		case BigEndian:
-			return new DataInputStream(in);
+			return new BulkDataInput(in, ByteOrder.BIG_ENDIAN);
 		case LittleEndian:
 			return new LittleEndianDataInput(in);
 		default:
@@ -92,7 +174,224 @@ public class MathObjectReader {
 	 * @throws IOException
 	 */
 	public RealMatrix readMatrix(InputStream in) throws IOException {
-		return MathFactory.createRealMatrix(readRawDoubleMatrix(in));
+		if (SinglePrecision) {
+			return readFloatMatrix(in);
+		}
+		return MathFactory.createRealMatrix(readRawDoubleMatrix(in), false);
+	}
+
+	/**
+	 * Reads a matrix of double values into a single precision matrix, including dimension detection.
+	 * 
+	 * Closes the stream after reading.
+	 * 
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	private RealMatrix readFloatMatrix(InputStream in) throws IOException {
+		try {
+			ByteBuffer buf = getMappedBuffer(in);
+			if (buf != null) {
+				int rows = readInt(buf);
+				int cols = readInt(buf);
+				return MathFactory.createRealMatrix(readRawDoubleAsFloatVector(buf.asDoubleBuffer(),
+						getLength(rows, cols)), rows, cols);
+			} else {
+				BulkDataInput di = getDataInput(in);
+				int rows = di.readInt();
+				int cols = di.readInt();
+				float[] data = new float[getLength(rows, cols)];
+				di.readDoublesAsFloats(data, 0, data.length);
+				return MathFactory.createRealMatrix(data, rows, cols);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a vector of double values into a single precision vector, including dimension detection.
+	 * 
+	 * Closes the stream after reading.
+	 * 
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	private RealVector readFloatVector(InputStream in) throws IOException {
+		try {
+			ByteBuffer buf = getMappedBuffer(in);
+			if (buf != null) {
+				int size = readInt(buf);
+				return MathFactory.createRealVector(readRawDoubleAsFloatVector(buf.asDoubleBuffer(), size));
+			} else {
+				BulkDataInput di = getDataInput(in);
+				float[] data = new float[di.readInt()];
+				di.readDoublesAsFloats(data, 0, data.length);
+				return MathFactory.createRealVector(data);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private float[] readRawDoubleAsFloatVector(DoubleBuffer buf, int size) throws IOException {
+		if (buf.remaining() < size) {
+			throw new EOFException("Unexpected end of mapped data while reading " + size + " double values.");
+		}
+		float[] res = new float[size];
+		for (int i = 0; i < size; i++) {
+			res[i] = (float) buf.get();
+		}
+		return res;
+	}
+
+	/**
+	 * Streams a matrix row by row from an InputStream, pointing to a binary file, including dimension detection.
+	 * 
+	 * Only a single row array is allocated, which is reused for every row passed to the consumer. Use this for matrices
+	 * that should not (or can not) be kept in memory as a whole.
+	 * 
+	 * Closes the input stream after reading.
+	 * 
+	 * @param in
+	 * @param consumer
+	 * The consumer receiving the matrix rows
+	 * @throws IOException
+	 */
+	public void readMatrixRows(InputStream in, IRowConsumer consumer) throws IOException {
+		try {
+			ByteBuffer buf = getMappedBuffer(in);
+			if (buf != null) {
+				int rows = readInt(buf);
+				int cols = readInt(buf);
+				consumer.init(rows, cols);
+				DoubleBuffer db = buf.asDoubleBuffer();
+				double[] row = new double[cols];
+				for (int i = 0; i < rows; i++) {
+					if (db.remaining() < cols) {
+						throw new EOFException("Unexpected end of mapped data while reading row " + i + ".");
+					}
+					db.get(row);
+					consumer.row(i, row);
+				}
+			} else {
+				BulkDataInput di = getDataInput(in);
+				int rows = di.readInt();
+				int cols = di.readInt();
+				consumer.init(rows, cols);
+				double[] row = new double[cols];
+				for (int i = 0; i < rows; i++) {
+					di.readDoubles(row, 0, cols);
+					consumer.row(i, row);
+				}
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Maps a matrix from an InputStream pointing to a binary file, including dimension detection.
+	 * 
+	 * If the stream is backed by a file, the returned matrix is a read-only view directly on the mapped file region
+	 * (see {@link jarmos.MappedRealMatrix}), so no matrix data is read upon this call. Otherwise, the matrix is read
+	 * as with {@link #readMatrix(InputStream)}.
+	 * 
+	 * Closes the input stream; the mapping stays valid regardless.
+	 * 
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public RealMatrix mapMatrix(InputStream in) throws IOException {
+		ByteBuffer buf = null;
+		try {
+			buf = getMappedBuffer(in);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+		if (buf == null) {
+			return readMatrix(in);
+		}
+		try {
+			int rows = readInt(buf);
+			int cols = readInt(buf);
+			// A mapped region has at most 2 GB, so larger matrices can never be complete
+			int len = getLength(rows, cols);
+			DoubleBuffer data = buf.asDoubleBuffer();
+			if (data.remaining() < len) {
+				throw new EOFException("Mapped data too small for a " + rows + "x" + cols + " matrix.");
+			}
+			data.limit(len);
+			return MathFactory.createRealMatrix(data, rows, cols);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Maps a matrix from a given binary file, see {@link #mapMatrix(InputStream)}.
+	 * 
+	 * @param file
+	 * Path to a binary file
+	 * @return
+	 * @throws IOException
+	 * @throws FileNotFoundException
+	 */
+	public RealMatrix mapMatrix(String file) throws IOException, FileNotFoundException {
+		return mapMatrix(new FileInputStream(file));
+	}
+
+	/**
+	 * Maps a vector from an InputStream pointing to a binary file, including dimension detection.
+	 * 
+	 * If the stream is backed by a file, the returned vector is a read-only view directly on the mapped file region
+	 * (see {@link jarmos.MappedRealVector}). Otherwise, the vector is read as with {@link #readVector(InputStream)}.
+	 * 
+	 * Closes the input stream; the mapping stays valid regardless.
+	 * 
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public RealVector mapVector(InputStream in) throws IOException {
+		ByteBuffer buf = null;
+		try {
+			buf = getMappedBuffer(in);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+		if (buf == null) {
+			return readVector(in);
+		}
+		try {
+			int size = readInt(buf);
+			DoubleBuffer data = buf.asDoubleBuffer();
+			if (data.remaining() < size) {
+				throw new EOFException("Mapped data too small for a vector of size " + size + ".");
+			}
+			data.limit(size);
+			return MathFactory.createRealVector(data);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Maps a vector from a given binary file, see {@link #mapVector(InputStream)}.
+	 * 
+	 * @param file
+	 * Path to a binary file
+	 * @return
+	 * @throws IOException
+	 * @throws FileNotFoundException
+	 */
+	public RealVector mapVector(String file) throws IOException, FileNotFoundException {
+		return mapVector(new FileInputStream(file));
 	}
 
 	/**
@@ -109,7 +408,8 @@ public class MathObjectReader {
 		return readMatrix(new FileInputStream(file));
 	}
 
-	private double[][] readRawDoubleMatrix(DataInput rd, int rows, int cols) throws MatrixIndexException, IOException {
+	private double[][] readRawDoubleMatrix(BulkDataInput rd, int rows, int cols) throws MatrixIndexException,
+			IOException {
 		double[][] res = new double[rows][];
 		for (int i = 0; i < rows; i++) {
 			res[i] = readRawDoubleVector(rd, cols);
@@ -131,16 +431,37 @@ public class MathObjectReader {
 		int cols = -1;
 		double[][] res = null;
 		try {
-			DataInput di = getDataInput(in);
-			rows = di.readInt();
-			cols = di.readInt();
-			res = readRawDoubleMatrix(di, rows, cols);
+			ByteBuffer buf = getMappedBuffer(in);
+			if (buf != null) {
+				rows = readInt(buf);
+				cols = readInt(buf);
+				res = readRawDoubleMatrix(buf.asDoubleBuffer(), rows, cols);
+			} else {
+				BulkDataInput di = getDataInput(in);
+				rows = di.readInt();
+				cols = di.readInt();
+				res = readRawDoubleMatrix(di, rows, cols);
+			}
 		} finally {
 			in.close();
 		}
 		return res;
 	}
 
+	private double[][] readRawDoubleMatrix(DoubleBuffer buf, int rows, int cols) throws IOException {
+		if (rows < 0 || cols < 0) {
+			throw new IOException("Invalid matrix dimensions " + rows + "x" + cols + ".");
+		}
+		if ((long) rows * cols > buf.remaining()) {
+			throw new EOFException("Mapped data too small for a " + rows + "x" + cols + " matrix.");
+		}
+		double[][] res = new double[rows][];
+		for (int i = 0; i < rows; i++) {
+			res[i] = readRawDoubleVector(buf, cols);
+		}
+		return res;
+	}
+
 	/**
 	 * Reads a double matrix of size rows*cols from the input stream.
 	 * 
@@ -157,10 +478,18 @@ public class MathObjectReader {
 		return readRawDoubleMatrix(getDataInput(in), rows, cols);
 	}
 
-	private double[] readRawDoubleVector(DataInput rd, int size) throws MatrixIndexException, IOException {
+	private double[] readRawDoubleVector(BulkDataInput rd, int size) throws MatrixIndexException, IOException {
 		double[] res = new double[size];
-		for (int i = 0; i < size; i++) {
-			res[i] = rd.readDouble();
+		rd.readDoubles(res, 0, size);
+		return res;
+	}
+
+	private double[] readRawDoubleVector(DoubleBuffer buf, int size) throws IOException {
+		double[] res = new double[size];
+		try {
+			buf.get(res);
+		} catch (BufferUnderflowException e) {
+			throw new EOFException("Unexpected end of mapped data while reading " + size + " double values.");
 		}
 		return res;
 	}
@@ -177,27 +506,57 @@ public class MathObjectReader {
 	public double[] readRawDoubleVector(InputStream in) throws IOException {
 		double[] res = null;
 		try {
-			DataInput di = getDataInput(in);
-			res = readRawDoubleVector(di, di.readInt());
+			ByteBuffer buf = getMappedBuffer(in);
+			if (buf != null) {
+				int size = readInt(buf);
+				res = readRawDoubleVector(buf.asDoubleBuffer(), size);
+			} else {
+				BulkDataInput di = getDataInput(in);
+				res = readRawDoubleVector(di, di.readInt());
+			}
 		} finally {
 			in.close();
 		}
 		return res;
 	}
 
-	private float[] readRawFloatVector(DataInput di, int size) throws IOException {
+	private float[] readRawFloatVector(BulkDataInput di, int size) throws IOException {
 		float[] res = new float[size];
-		for (int i = 0; i < size; i++) {
-			res[i] = di.readFloat();
+		di.readFloats(res, 0, size);
+		return res;
+	}
+
+	private float[] readRawFloatVector(FloatBuffer buf, int size) throws IOException {
+		float[] res = new float[size];
+		try {
+			buf.get(res);
+		} catch (BufferUnderflowException e) {
+			throw new EOFException("Unexpected end of mapped data while reading " + size + " float values.");
 		}
 		return res;
 	}
 
+	/**
+	 * Reads a float array/vector from the given input stream, autodetecting its size from the first bytes read as
+	 * (4byte-)integer.
+	 * 
+	 * Closes the stream after reading.
+	 * 
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
 	public float[] readRawFloatVector(InputStream in) throws IOException {
 		float[] res = null;
 		try {
-			DataInput di = getDataInput(in);
-			res = readRawFloatVector(in, di.readInt());
+			ByteBuffer buf = getMappedBuffer(in);
+			if (buf != null) {
+				int size = readInt(buf);
+				res = readRawFloatVector(buf.asFloatBuffer(), size);
+			} else {
+				BulkDataInput di = getDataInput(in);
+				res = readRawFloatVector(di, di.readInt());
+			}
 		} finally {
 			in.close();
 		}
@@ -230,7 +589,10 @@ public class MathObjectReader {
 	 * @throws IOException
 	 */
 	public RealVector readVector(InputStream in) throws IOException {
-		return MathFactory.createRealVector(readRawDoubleVector(in));
+		if (SinglePrecision) {
+			return readFloatVector(in);
+		}
+		return MathFactory.createRealVector(readRawDoubleVector(in), false);
 	}
 
 	/**
@@ -246,22 +608,67 @@ public class MathObjectReader {
 	public short[] readRawShortVector(InputStream in) throws IOException {
 		short[] res = null;
 		try {
-			DataInput di = getDataInput(in);
-			res = readRawShortVector(di, di.readInt());
+			ByteBuffer buf = getMappedBuffer(in);
+			if (buf != null) {
+				int size = readInt(buf);
+				res = readRawShortVector(buf.asShortBuffer(), size);
+			} else {
+				BulkDataInput di = getDataInput(in);
+				res = readRawShortVector(di, di.readInt());
+			}
 		} finally {
 			in.close();
 		}
 		return res;
 	}
 
-	private short[] readRawShortVector(DataInput di, int size) throws IOException {
+	private short[] readRawShortVector(BulkDataInput di, int size) throws IOException {
 		short[] res = new short[size];
-		for (int i = 0; i < size; i++) {
-			res[i] = di.readShort();
+		di.readShorts(res, 0, size);
+		return res;
+	}
+
+	private short[] readRawShortVector(ShortBuffer buf, int size) throws IOException {
+		short[] res = new short[size];
+		try {
+			buf.get(res);
+		} catch (BufferUnderflowException e) {
+			throw new EOFException("Unexpected end of mapped data while reading " + size + " short values.");
 		}
 		return res;
 	}
 
+	/**
+	 * Returns the number of elements of a matrix with the given dimensions, computed without int overflow.
+	 * 
+	 * @param rows
+	 * @param cols
+	 * @return rows * cols
+	 * @throws IOException
+	 * If the dimensions are negative or the matrix does not fit into a single array
+	 */
+	private static int getLength(int rows, int cols) throws IOException {
+		long len = (long) rows * cols;
+		if (rows < 0 || cols < 0 || len > Integer.MAX_VALUE) {
+			throw new IOException("Invalid matrix dimensions " + rows + "x" + cols + ".");
+		}
+		return (int) len;
+	}
+
+	/**
+	 * Reads a 32-bit integer (dimension information) from the mapped buffer.
+	 * 
+	 * @param buf
+	 * @return
+	 * @throws EOFException
+	 */
+	private int readInt(ByteBuffer buf) throws EOFException {
+		if (buf.remaining() < 4) {
+			throw new EOFException("Unexpected end of mapped data while reading the dimension information.");
+		}
+		return buf.getInt();
+	}
+
 	/**
 	 * Reads a real vector including dimension from a given binary file.
 	 * 
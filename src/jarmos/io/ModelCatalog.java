@@ -0,0 +1,196 @@
+package jarmos.io;
+
+import jarmos.Log;
+import jarmos.ModelDescriptor;
+import jarmos.ModelType;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A persistent index of the model descriptors of a model repository, so that the model list can be created without
+ * opening any model.xml or image file.
+ *
+ * Each entry stores the descriptor data and a stamp of the model directory as returned by
+ * {@link AModelManager#getCatalogStamp(String)}. An entry is only used as long as the stamp of its directory is
+ * unchanged, so the catalog is invalidated per directory. Model images are referenced by file name and loaded lazily
+ * (see {@link ModelDescriptor#openImage()}).
+ *
+ * The file layout (all values big endian) is:
+ * @li Header: The magic number {@link #MAGIC}, the format version and the number of entries (32-bit integers)
+ * @li Entries: Directory, stamp, title, type, short description and image file (modified UTF-8, strings that may be
+ * null are preceded by a boolean), creation date and content hash (64-bit integers). Directories without a valid model
+ * have no type.
+ *
+ * The file is read with a single read operation.
+ *
+ * @author Daniel Wirtz
+ *
+ */
+final class ModelCatalog {
+
+	/**
+	 * A catalog entry.
+	 */
+	static final class Entry {
+		final String dir;
+		final String stamp;
+		final String title;
+		final ModelType type;
+		final String shortDescription;
+		final String imageFile;
+		final long created;
+		final long contentHash;
+
+		/**
+		 * Creates an entry for a directory that does not contain a valid model.
+		 *
+		 * @param dir
+		 * @param stamp
+		 */
+		Entry(String dir, String stamp) {
+			this(dir, stamp, null, null, null, null, 0, 0);
+		}
+
+		/**
+		 * Creates an entry for the given descriptor.
+		 *
+		 * @param stamp
+		 * @param md
+		 */
+		Entry(String stamp, ModelDescriptor md) {
+			this(md.modeldir, stamp, md.title, md.type, md.shortDescription, md.imageFile, md.created.getTime(),
+					md.contentHash);
+		}
+
+		private Entry(String dir, String stamp, String title, ModelType type, String shortDescription,
+				String imageFile, long created, long contentHash) {
+			this.dir = dir;
+			this.stamp = stamp;
+			this.title = title;
+			this.type = type;
+			this.shortDescription = shortDescription;
+			this.imageFile = imageFile;
+			this.created = created;
+			this.contentHash = contentHash;
+		}
+
+		/**
+		 * @param m
+		 * The manager serving the model images
+		 * @return A new descriptor for this entry or null if the directory does not contain a valid model
+		 */
+		ModelDescriptor toDescriptor(AModelManager m) {
+			if (type == null) {
+				return null;
+			}
+			ModelDescriptor md = new ModelDescriptor(dir, title, type, m.getImageSource(dir, imageFile), new Date(
+					created));
+			md.shortDescription = shortDescription;
+			md.imageFile = imageFile;
+			md.contentHash = contentHash;
+			return md;
+		}
+	}
+
+	/**
+	 * The catalog file magic number ("JRMC")
+	 */
+	public static final int MAGIC = 0x4A524D43;
+
+	/**
+	 * The catalog format version
+	 */
+	public static final int VERSION = 2;
+
+	private ModelCatalog() {
+	}
+
+	/**
+	 * Reads the catalog file.
+	 *
+	 * @param file
+	 * @return The entries by model directory. Empty if the file does not exist or cannot be read.
+	 */
+	static Map<String, Entry> read(File file) {
+		Map<String, Entry> res = new HashMap<String, Entry>();
+		if (!file.isFile()) {
+			return res;
+		}
+		try {
+			// One read for the whole catalog
+			byte[] data = AModelManager.readAll(new FileInputStream(file), (int) file.length());
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return res;
+			}
+			int n = in.readInt();
+			for (int i = 0; i < n; i++) {
+				String dir = in.readUTF();
+				String stamp = in.readUTF();
+				String title = in.readBoolean() ? in.readUTF() : null;
+				String type = in.readBoolean() ? in.readUTF() : null;
+				String shortDescription = in.readBoolean() ? in.readUTF() : null;
+				String imageFile = in.readBoolean() ? in.readUTF() : null;
+				long created = in.readLong();
+				long hash = in.readLong();
+				res.put(dir, new Entry(dir, stamp, title, type != null ? ModelType.valueOf(type) : null,
+						shortDescription, imageFile, created, hash));
+			}
+		} catch (IOException e) {
+			Log.e("ModelCatalog", "Error reading model catalog " + file + ": " + e.getMessage(), e);
+			res.clear();
+		} catch (IllegalArgumentException e) {
+			Log.e("ModelCatalog", "Unknown model type in catalog " + file, e);
+			res.clear();
+		}
+		return res;
+	}
+
+	/**
+	 * Writes the given entries to the catalog file. The file is replaced only after it has been completely written.
+	 *
+	 * @param file
+	 * @param entries
+	 * @throws IOException
+	 */
+	static void write(File file, Collection<Entry> entries) throws IOException {
+		File tmp = FileModelManager.createTempFile(file);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 65536));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(entries.size());
+			for (Entry e : entries) {
+				out.writeUTF(e.dir);
+				out.writeUTF(e.stamp);
+				writeNullableUTF(out, e.title);
+				writeNullableUTF(out, e.type != null ? e.type.name() : null);
+				writeNullableUTF(out, e.shortDescription);
+				writeNullableUTF(out, e.imageFile);
+				out.writeLong(e.created);
+				out.writeLong(e.contentHash);
+			}
+		} finally {
+			out.close();
+		}
+		FileModelManager.replaceFile(tmp, file);
+	}
+
+	private static void writeNullableUTF(DataOutputStream out, String s) throws IOException {
+		out.writeBoolean(s != null);
+		if (s != null) {
+			out.writeUTF(s);
+		}
+	}
+}
@@ -0,0 +1,364 @@
+package jarmos.io;
+
+import jarmos.FieldDescriptor;
+import jarmos.ModelType;
+import jarmos.Parameters;
+import jarmos.SolutionFieldType;
+import jarmos.geometry.FieldMapping;
+import jarmos.io.AModelManager.LoaderEntry;
+import jarmos.io.AModelManager.ModelManagerException;
+import jarmos.io.MathObjectReader.MachineFormats;
+import jarmos.io.ModelXMLIndex.XMLElement;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.List;
+
+import org.apache.commons.math.linear.RealMatrix;
+import org.apache.commons.math.linear.RealVector;
+
+/**
+ * An immutable handle to a single model of a model manager, as returned by {@link AModelManager#open(String)}.
+ *
+ * Each handle carries the parsed model.xml and the data format of its model and accesses the model files by model
+ * directory, independent of the manager's current model (see {@link AModelManager#useModel(String)}). Thus one manager
+ * can serve many models concurrently, e.g. in a server process, and handles can be shared between threads.
+ *
+ * @author Daniel Wirtz
+ *
+ */
+public final class ModelHandle {
+
+	private final AModelManager manager;
+	private final String dir;
+	private final URI uri;
+	private final ModelXMLIndex modelxml;
+	private final ModelType type;
+	private final MachineFormats format;
+	private final boolean single;
+	private final MathObjectReader mor;
+	private volatile LoaderEntry loader = null;
+
+	ModelHandle(AModelManager manager, String dir, URI uri, ModelXMLIndex modelxml, ModelType type) {
+		this.manager = manager;
+		this.dir = dir;
+		this.uri = uri;
+		this.modelxml = modelxml;
+		this.type = type;
+		format = "le".equals(getModelXMLAttribute("machformat")) ? MachineFormats.LittleEndian
+				: MachineFormats.BigEndian;
+		// Optional single precision storage of the model's matrices and vectors
+		single = "single".equals(getModelXMLAttribute("precision"));
+		mor = getMathObjReader();
+	}
+
+	/**
+	 * @return The manager this handle belongs to
+	 */
+	public AModelManager getManager() {
+		return manager;
+	}
+
+	/**
+	 * @return The model directory
+	 */
+	public String getModelDir() {
+		return dir;
+	}
+
+	/**
+	 * @return An URI for the model location
+	 */
+	public URI getModelURI() {
+		return uri;
+	}
+
+	/**
+	 * Returns the model type as given in the model.xml attribute "type" of the "model" tag.
+	 *
+	 * @return The model type
+	 */
+	public ModelType getModelType() {
+		return type;
+	}
+
+	/**
+	 * Returns a new MathObjectReader configured for the model's data format. Changing the returned reader does not
+	 * affect the handle.
+	 *
+	 * @return A MathObjectReader for the model
+	 */
+	public MathObjectReader getMathObjReader() {
+		MathObjectReader res = new MathObjectReader();
+		res.MachineFormat = format;
+		res.SinglePrecision = single;
+		return res;
+	}
+
+	/**
+	 * Returns an InputStream for the given file of the model.
+	 *
+	 * @param filename
+	 * @return An InputStream pointing to the resource
+	 * @throws IOException
+	 */
+	public InputStream getInStream(String filename) throws IOException {
+		manager.sendFileMessage(filename);
+		long start = System.nanoTime();
+		return manager.instrument(dir, filename, manager.getModelInStream(dir, filename), start);
+	}
+
+	/**
+	 * @param filename
+	 * @return true if the file exists in the model, false otherwise
+	 */
+	public boolean modelFileExists(String filename) {
+		return manager.modelFileExists(dir, filename);
+	}
+
+	/**
+	 * @see AModelManager#readMatrix(String)
+	 * @param filename
+	 * @return The matrix
+	 * @throws IOException
+	 */
+	public RealMatrix readMatrix(String filename) throws IOException {
+		return readMathObject(filename, RealMatrix.class, mor);
+	}
+
+	/**
+	 * @see AModelManager#readVector(String)
+	 * @param filename
+	 * @return The vector
+	 * @throws IOException
+	 */
+	public RealVector readVector(String filename) throws IOException {
+		return readMathObject(filename, RealVector.class, mor);
+	}
+
+	/**
+	 * @see AModelManager#readRawDoubleVector(String)
+	 * @param filename
+	 * @return The array
+	 * @throws IOException
+	 */
+	public double[] readRawDoubleVector(String filename) throws IOException {
+		return readMathObject(filename, double[].class, mor);
+	}
+
+	/**
+	 * @see AModelManager#readRawFloatVector(String)
+	 * @param filename
+	 * @return The array
+	 * @throws IOException
+	 */
+	public float[] readRawFloatVector(String filename) throws IOException {
+		return readMathObject(filename, float[].class, mor);
+	}
+
+	/**
+	 * @see AModelManager#readRawShortVector(String)
+	 * @param filename
+	 * @return The array
+	 * @throws IOException
+	 */
+	public short[] readRawShortVector(String filename) throws IOException {
+		return readMathObject(filename, short[].class, mor);
+	}
+
+	/**
+	 * Returns the decoded object of the given file of the model from the cache (see {@link MathObjectCache}) or reads
+	 * it with the given reader. The returned object may be shared and must not be modified.
+	 *
+	 * @see AModelManager#readMathObject(String, Class, MathObjectReader)
+	 * @param filename
+	 * @param type
+	 * One of RealMatrix, RealVector, double[], float[] or short[]
+	 * @param reader
+	 * The reader to decode the file with
+	 * @return The object
+	 * @throws IOException
+	 */
+	public <T> T readMathObject(String filename, Class<T> type, MathObjectReader reader) throws IOException {
+		String key = manager.getMathObjectKey(dir, filename, type, reader);
+		Object o = key != null ? MathObjectCache.get(key) : null;
+		if (!type.isInstance(o)) {
+			o = AModelManager.readMathObject(getInStream(filename), type, reader);
+			if (key == null) {
+				// Reading the file may have made its version available, e.g. by caching it
+				key = manager.getMathObjectKey(dir, filename, type, reader);
+			}
+			if (key != null) {
+				MathObjectCache.put(key, o);
+			}
+		}
+		return type.cast(o);
+	}
+
+	/**
+	 * Returns the class loader for the model's classes, which is shared with the manager (see
+	 * {@link AModelManager#getClassLoader()}). The loader is determined once per handle, unless it is closed by
+	 * {@link AModelManager#unloadModel()}.
+	 *
+	 * @return The class loader
+	 */
+	public ClassLoader getClassLoader() {
+		LoaderEntry e = getLoaderEntry();
+		return e != null ? e.loader : ClassLoader.getSystemClassLoader();
+	}
+
+	/**
+	 * Loads a class available in the precompiled classes of the model.
+	 *
+	 * @see AModelManager#loadModelClass(String)
+	 * @param name
+	 * @return A new instance of the class
+	 * @throws ModelManagerException
+	 */
+	public Object loadModelClass(String name) throws ModelManagerException {
+		LoaderEntry e = getLoaderEntry();
+		return manager.loadModelClass(e, e != null ? e.loader : ClassLoader.getSystemClassLoader(),
+				getModelPackageStr(), name);
+	}
+
+	private LoaderEntry getLoaderEntry() {
+		LoaderEntry e = loader;
+		if (e == null || e.closed) {
+			e = manager.getLoaderEntry(dir);
+			loader = e;
+		}
+		return e;
+	}
+
+	/**
+	 * Returns the attribute value of any attributes of the "model" tag in the model.xml file.
+	 *
+	 * @param attrib_name
+	 * The attribute's name
+	 * @return The attribute value or null if the attribute does not exist
+	 */
+	public String getModelXMLAttribute(String attrib_name) {
+		assert attrib_name != null;
+
+		XMLElement model = modelxml.getModelElement();
+		return (model != null) ? model.getAttribute(attrib_name) : null;
+	}
+
+	/**
+	 * Returns the attribute value of any attributes of the tag given by tagname in the model.xml file.
+	 *
+	 * @param attrib_name
+	 * the attribute's name
+	 * @param tagname
+	 * The xml tag whos attributes are to be searched.
+	 * @return The attribute value or null if the attribute does not exist
+	 */
+	public String getModelXMLAttribute(String attrib_name, String tagname) {
+		assert attrib_name != null;
+		assert tagname != null;
+
+		XMLElement e = modelxml.get(tagname);
+		return (e != null) ? e.getAttribute(attrib_name) : null;
+	}
+
+	/**
+	 * @see AModelManager#getModelXMLTagValue(String, String)
+	 * @param tagname
+	 * @return The tag value or null.
+	 */
+	public String getModelXMLTagValue(String tagname) {
+		return getModelXMLTagValue(tagname, null);
+	}
+
+	/**
+	 * Returns the text content of a tag inside the model.xml file.
+	 *
+	 * @see AModelManager#getModelXMLTagValue(String, String)
+	 * @param tagname
+	 * The tag whos value should be returned.
+	 * @param default_value
+	 * The default value if no matching element is found
+	 * @return The tag text content or the default value if no matching tag is found.
+	 */
+	public String getModelXMLTagValue(String tagname, String default_value) {
+		XMLElement res = modelxml.get(tagname);
+		return (res != null) ? res.getText() : default_value;
+	}
+
+	/**
+	 * Checks if a specified tag exists inside the model.xml file.
+	 *
+	 * @param tagname
+	 * The tag to check
+	 * @return True if the tag exists or false otherwise
+	 */
+	public boolean xmlTagExists(String tagname) {
+		return modelxml.get(tagname) != null;
+	}
+
+	/**
+	 * Returns the package of any java source files associated with this model. Defaults to the default package (="") if
+	 * none is given.
+	 *
+	 * @return
+	 */
+	public String getModelPackageStr() {
+		String thepackage = getModelXMLTagValue("package");
+		return thepackage != null ? thepackage + "." : "";
+	}
+
+	/**
+	 * Reads the parameters from the model XML file and returns a new Parameters object.
+	 *
+	 * @return A Parameters object or null if the model definition does not contain parameters.
+	 */
+	public Parameters getParameters() {
+		XMLElement params = modelxml.get("parameters");
+		if (params != null) {
+			Parameters p = new Parameters();
+			List<XMLElement> nl = params.getElements("param");
+			double[] cur = new double[nl.size()];
+			for (int i = 0; i < nl.size(); i++) {
+				XMLElement n = nl.get(i);
+				String name = n.getAttribute("name");
+				// Set \mu_i if no name is given.
+				if (name == null) {
+					name = "\u00B5_" + i;
+				}
+				// Add
+				p.addParam(name, Double.parseDouble(n.getAttribute("min")), Double.parseDouble(n.getAttribute("max")));
+				// Extract default values and set as current, take min value if
+				// no default is set
+				String def = n.getAttribute("default");
+				cur[i] = def != null ? Double.parseDouble(def) : p.getMinValue(i);
+			}
+			p.setCurrent(cur);
+			return p;
+		}
+		return null;
+	}
+
+	/**
+	 * @return The field descriptors of the model's visualization or null if not given
+	 */
+	public FieldDescriptor[] getModelFieldTypes() {
+		FieldDescriptor[] res = null;
+		XMLElement params = modelxml.get("visual.fields");
+		if (params != null) {
+			List<XMLElement> nl = params.getElements("field");
+			res = new FieldDescriptor[nl.size()];
+			String hlp;
+			FieldDescriptor f;
+			for (int i = 0; i < nl.size(); i++) {
+				XMLElement n = nl.get(i);
+				f = new FieldDescriptor(SolutionFieldType.valueOf(n.getAttribute("type")));
+				f.Name = n.getText();
+				hlp = n.getAttribute("mapping");
+				f.Mapping = hlp != null ? FieldMapping.valueOf(hlp) : FieldMapping.UNKNOWN;
+				res[i] = f;
+			}
+		}
+		return res;
+	}
+}
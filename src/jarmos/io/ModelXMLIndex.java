@@ -0,0 +1,241 @@
+package jarmos.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import javax.xml.parsers.SAXParser;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * An immutable index of a model.xml file, built by a single streaming pass over the file.
+ *
+ * Each element keeps its attributes, its text content and, per tag name, the list of all its descendants with that
+ * name in document order. This way dotted tag paths as used by {@link AModelManager#getModelXMLTagValue(String)} are
+ * resolved with one hash lookup per path segment, and each resolved path is remembered so that repeated lookups are
+ * O(1). The lookup semantics are the same as those of DOM's getElementsByTagName: each path segment selects the first
+ * descendant with that name.
+ *
+ * SAX is used for the streaming pass as it is available on both the Java and the Android platform.
+ *
+ * @author Daniel Wirtz
+ *
+ */
+final class ModelXMLIndex {
+
+	/**
+	 * An element of the indexed model.xml.
+	 */
+	static final class XMLElement {
+		private final String name;
+		private final Map<String, String> attributes;
+		private final Map<String, List<XMLElement>> descendants = new HashMap<String, List<XMLElement>>();
+		private String text;
+
+		private XMLElement(String name, Map<String, String> attributes) {
+			this.name = name;
+			this.attributes = attributes;
+		}
+
+		/**
+		 * @return The tag name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @param name
+		 * @return The attribute value or null if the attribute does not exist
+		 */
+		public String getAttribute(String name) {
+			return attributes.get(name);
+		}
+
+		/**
+		 * @return The text content of this element and all its descendants
+		 */
+		public String getText() {
+			return text;
+		}
+
+		/**
+		 * @param name
+		 * @return The first descendant with the given tag name or null if none exists
+		 */
+		public XMLElement getElement(String name) {
+			List<XMLElement> l = descendants.get(name);
+			return l != null ? l.get(0) : null;
+		}
+
+		/**
+		 * @param name
+		 * @return All descendants with the given tag name in document order
+		 */
+		public List<XMLElement> getElements(String name) {
+			List<XMLElement> l = descendants.get(name);
+			return l != null ? Collections.unmodifiableList(l) : Collections.<XMLElement> emptyList();
+		}
+	}
+
+	/**
+	 * Marks paths that could not be resolved (the memo map does not accept null values)
+	 */
+	private static final XMLElement NONE = new XMLElement("", Collections.<String, String> emptyMap());
+
+	private final XMLElement root;
+	private final XMLElement model;
+	private final long checksum;
+	private final Map<String, XMLElement> paths = new ConcurrentHashMap<String, XMLElement>();
+
+	private ModelXMLIndex(XMLElement root, long checksum) {
+		this.root = root;
+		this.checksum = checksum;
+		model = "model".equals(root.getName()) ? root : root.getElement("model");
+	}
+
+	/**
+	 * Builds an index from the given model.xml stream. The stream is closed afterwards.
+	 *
+	 * @param parser
+	 * The parser to use
+	 * @param in
+	 * @return The index
+	 * @throws IOException
+	 * @throws SAXException
+	 */
+	static ModelXMLIndex parse(SAXParser parser, InputStream in) throws IOException, SAXException {
+		IndexHandler h = new IndexHandler();
+		CheckedInputStream cin = new CheckedInputStream(in, new CRC32());
+		try {
+			// Keep the stream open as some parsers close it
+			parser.parse(new FilterInputStream(cin) {
+				@Override
+				public void close() {
+				}
+			}, h);
+			// Include any trailing content in the checksum
+			while (cin.read() != -1) {
+			}
+		} finally {
+			in.close();
+		}
+		if (h.root == null) {
+			throw new SAXException("No document element found");
+		}
+		return new ModelXMLIndex(h.root, cin.getChecksum().getValue());
+	}
+
+	/**
+	 * Returns the element addressed by the dotted tag path, starting from the document element.
+	 *
+	 * @param path
+	 * A path like "description.name"
+	 * @return The element or null if no matching element exists
+	 */
+	XMLElement get(String path) {
+		XMLElement e = paths.get(path);
+		if (e == null) {
+			e = root;
+			int start = 0, end;
+			do {
+				end = path.indexOf('.', start);
+				e = e.getElement(end < 0 ? path.substring(start) : path.substring(start, end));
+				start = end + 1;
+			} while (e != null && end >= 0);
+			if (e == null) {
+				e = NONE;
+			}
+			paths.put(path, e);
+		}
+		return e != NONE ? e : null;
+	}
+
+	/**
+	 * Returns the text content of the element addressed by the dotted tag path.
+	 *
+	 * @param path
+	 * @param default_value
+	 * @return The text content or the default value if no matching element exists
+	 */
+	String getText(String path, String default_value) {
+		XMLElement e = get(path);
+		return e != null ? e.getText() : default_value;
+	}
+
+	/**
+	 * @return The CRC32 checksum of the model.xml contents
+	 */
+	long getChecksum() {
+		return checksum;
+	}
+
+	/**
+	 * @return The "model" element or null if there is none
+	 */
+	XMLElement getModelElement() {
+		return model;
+	}
+
+	private static class IndexHandler extends DefaultHandler {
+		private XMLElement root = null;
+		private List<XMLElement> open = new ArrayList<XMLElement>();
+		private List<StringBuilder> texts = new ArrayList<StringBuilder>();
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes atts) {
+			Map<String, String> attributes;
+			if (atts.getLength() == 0) {
+				attributes = Collections.emptyMap();
+			} else {
+				attributes = new HashMap<String, String>(atts.getLength() * 2);
+				for (int i = 0; i < atts.getLength(); i++) {
+					attributes.put(atts.getQName(i), atts.getValue(i));
+				}
+			}
+			XMLElement e = new XMLElement(qName, attributes);
+			// Register as descendant of all open elements
+			for (XMLElement a : open) {
+				List<XMLElement> l = a.descendants.get(qName);
+				if (l == null) {
+					l = new ArrayList<XMLElement>(2);
+					a.descendants.put(qName, l);
+				}
+				l.add(e);
+			}
+			if (root == null) {
+				root = e;
+			}
+			open.add(e);
+			texts.add(new StringBuilder());
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) {
+			int last = open.size() - 1;
+			String text = texts.remove(last).toString();
+			open.remove(last).text = text;
+			if (last > 0) {
+				texts.get(last - 1).append(text);
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			if (!texts.isEmpty()) {
+				texts.get(texts.size() - 1).append(ch, start, length);
+			}
+		}
+	}
+}
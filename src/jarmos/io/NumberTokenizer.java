@@ -0,0 +1,296 @@
+package jarmos.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A streaming tokenizer for whitespace-separated numbers in text files.
+ * 
+ * Numbers are parsed directly from a reusable character buffer into primitive values, so that no String instances are
+ * created for the tokens. Used to read the old @ref rbappmit geometry.dat files.
+ * 
+ * The reader is not closed by this class.
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public class NumberTokenizer {
+
+	/**
+	 * Exactly representable powers of ten
+	 */
+	private static final double[] POW10 = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13,
+			1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/**
+	 * Exactly representable powers of ten in single precision
+	 */
+	private static final float[] POW10F = { 1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+
+	private char[] buf;
+	private int len = 0;
+	private int pos = 0;
+	private Reader rd;
+
+	/**
+	 * The characters, sign, mantissa and exponent of the last decimal token
+	 */
+	private char[] tok = new char[32];
+	private int toklen = 0;
+	private boolean neg;
+	private long mant;
+	private int exp;
+
+	/**
+	 * Creates a new tokenizer with a buffer of 65536 characters.
+	 * 
+	 * @param rd
+	 */
+	public NumberTokenizer(Reader rd) {
+		this(rd, 65536);
+	}
+
+	/**
+	 * @param rd
+	 * @param buffersize
+	 * The character buffer size
+	 */
+	public NumberTokenizer(Reader rd, int buffersize) {
+		this.rd = rd;
+		buf = new char[buffersize];
+	}
+
+	/**
+	 * Returns the next character without consuming it, or -1 at the end of the input.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private int peek() throws IOException {
+		if (pos == len) {
+			len = rd.read(buf, 0, buf.length);
+			pos = 0;
+			if (len <= 0) {
+				len = 0;
+				return -1;
+			}
+		}
+		return buf[pos];
+	}
+
+	/**
+	 * Skips any whitespace and checks if another token is available.
+	 * 
+	 * @return True if there is another token, false at the end of the input
+	 * @throws IOException
+	 */
+	public boolean hasNext() throws IOException {
+		int c;
+		while ((c = peek()) != -1 && Character.isWhitespace(c)) {
+			pos++;
+		}
+		return c != -1;
+	}
+
+	/**
+	 * Parses the next token as integer.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public int nextInt() throws IOException {
+		if (!hasNext()) {
+			throw new EOFException("Unexpected end of input, integer value expected.");
+		}
+		boolean neg = false;
+		int c = peek();
+		if (c == '-' || c == '+') {
+			neg = c == '-';
+			pos++;
+		}
+		long res = 0;
+		int digits = 0;
+		while ((c = peek()) >= '0' && c <= '9') {
+			res = res * 10 + (c - '0');
+			if (res > (long) Integer.MAX_VALUE + 1) {
+				throw new NumberFormatException("Integer value out of range.");
+			}
+			digits++;
+			pos++;
+		}
+		checkTokenEnd(c, digits);
+		res = neg ? -res : res;
+		if (res > Integer.MAX_VALUE) {
+			throw new NumberFormatException("Integer value out of range.");
+		}
+		return (int) res;
+	}
+
+	/**
+	 * Parses the next token as short.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public short nextShort() throws IOException {
+		int v = nextInt();
+		if (v < Short.MIN_VALUE || v > Short.MAX_VALUE) {
+			throw new NumberFormatException("Value " + v + " out of range for a short.");
+		}
+		return (short) v;
+	}
+
+	/**
+	 * Parses the next token as float.
+	 * 
+	 * Tokens that can not be converted exactly by a single float operation are parsed by
+	 * {@link Float#parseFloat(String)}.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public float nextFloat() throws IOException {
+		scanDecimal();
+		float res;
+		if (mant == 0) {
+			res = 0;
+		} else if (exp >= 0 && exp < POW10F.length && mant < (1L << 24)) {
+			res = mant * POW10F[exp];
+		} else if (exp < 0 && -exp < POW10F.length && mant < (1L << 24)) {
+			res = mant / POW10F[-exp];
+		} else {
+			return Float.parseFloat(new String(tok, 0, toklen));
+		}
+		return neg ? -res : res;
+	}
+
+	/**
+	 * Parses the next token as double. Accepts decimal numbers with optional sign, fraction and exponent.
+	 * 
+	 * Tokens that can not be converted exactly by a single double operation, i.e. with more than 15 significant digits
+	 * or large exponents, are parsed by {@link Double#parseDouble(String)}.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public double nextDouble() throws IOException {
+		scanDecimal();
+		double res;
+		if (mant == 0) {
+			res = 0;
+		} else if (exp >= 0 && exp < POW10.length && mant < (1L << 53)) {
+			res = mant * POW10[exp];
+		} else if (exp < 0 && -exp < POW10.length && mant < (1L << 53)) {
+			res = mant / POW10[-exp];
+		} else {
+			return Double.parseDouble(new String(tok, 0, toklen));
+		}
+		return neg ? -res : res;
+	}
+
+	/**
+	 * Scans the next decimal token into the sign, mantissa and exponent fields and keeps its characters for the
+	 * fallback parsing.
+	 * 
+	 * Up to 18 significant digits are taken into account for the mantissa.
+	 * 
+	 * @throws IOException
+	 */
+	private void scanDecimal() throws IOException {
+		if (!hasNext()) {
+			throw new EOFException("Unexpected end of input, floating point value expected.");
+		}
+		toklen = 0;
+		neg = false;
+		int c = peek();
+		if (c == '-' || c == '+') {
+			neg = c == '-';
+			consume(c);
+		}
+		mant = 0;
+		exp = 0;
+		int sig = 0, digits = 0;
+		// Integer part
+		while ((c = peek()) >= '0' && c <= '9') {
+			if (sig < 18) {
+				mant = mant * 10 + (c - '0');
+				if (mant > 0) {
+					sig++;
+				}
+			} else {
+				exp++;
+			}
+			digits++;
+			consume(c);
+		}
+		// Fraction
+		if (c == '.') {
+			consume(c);
+			while ((c = peek()) >= '0' && c <= '9') {
+				if (sig < 18) {
+					mant = mant * 10 + (c - '0');
+					if (mant > 0) {
+						sig++;
+					}
+					exp--;
+				}
+				digits++;
+				consume(c);
+			}
+		}
+		if (digits == 0) {
+			throw new NumberFormatException("Floating point value expected.");
+		}
+		// Exponent
+		if (c == 'e' || c == 'E') {
+			consume(c);
+			exp += nextExponent();
+			c = peek();
+		}
+		checkTokenEnd(c, digits);
+	}
+
+	/**
+	 * Consumes the current character and appends it to the token buffer.
+	 * 
+	 * @param c
+	 */
+	private void consume(int c) {
+		if (toklen == tok.length) {
+			char[] n = new char[tok.length * 2];
+			System.arraycopy(tok, 0, n, 0, toklen);
+			tok = n;
+		}
+		tok[toklen++] = (char) c;
+		pos++;
+	}
+
+	private int nextExponent() throws IOException {
+		boolean neg = false;
+		int c = peek();
+		if (c == '-' || c == '+') {
+			neg = c == '-';
+			consume(c);
+		}
+		int res = 0, digits = 0;
+		while ((c = peek()) >= '0' && c <= '9') {
+			if (res < 10000) {
+				res = res * 10 + (c - '0');
+			}
+			digits++;
+			consume(c);
+		}
+		if (digits == 0) {
+			throw new NumberFormatException("Exponent digits expected.");
+		}
+		return neg ? -res : res;
+	}
+
+	private void checkTokenEnd(int c, int digits) {
+		if (digits == 0 || (c != -1 && !Character.isWhitespace(c))) {
+			throw new NumberFormatException("Invalid character '" + (c == -1 ? "EOF" : (char) c)
+					+ "' in numeric token.");
+		}
+	}
+}
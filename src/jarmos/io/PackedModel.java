@@ -0,0 +1,344 @@
+package jarmos.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A packed model container, holding all files of a model directory in one single file.
+ * 
+ * The container layout (all values big endian) is:
+ * @li Header: The magic number {@link #MAGIC} and the format version (two 32-bit integers)
+ * @li Table of contents: The number of entries (32-bit integer), followed by name (modified UTF-8), offset, length,
+ * stored length (64-bit integers each) and compression method (one byte) for each entry. Offsets are absolute
+ * positions inside the container file.
+ * @li Data: The (optionally deflate-compressed) contents of all entries.
+ * 
+ * Uncompressed entries can be memory mapped via {@link #map(String)}.
+ * 
+ * Use {@link #pack(File, File, boolean)} to create a container from a model directory.
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public class PackedModel {
+
+	/**
+	 * An entry of the table of contents.
+	 */
+	private static class Entry {
+		boolean compressed;
+		long length;
+		long offset;
+		long stored;
+	}
+
+	/**
+	 * Helper stream writing to the current position of a RandomAccessFile.
+	 */
+	private static class RandomAccessFileOutputStream extends OutputStream {
+		private RandomAccessFile raf;
+
+		RandomAccessFileOutputStream(RandomAccessFile raf) {
+			this.raf = raf;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			raf.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			raf.write(b, off, len);
+		}
+	}
+
+	/**
+	 * The container magic number ("JRMP")
+	 */
+	public static final int MAGIC = 0x4A524D50;
+
+	/**
+	 * The container format version
+	 */
+	public static final int VERSION = 1;
+
+	private static final byte METHOD_DEFLATE = 1;
+	private static final byte METHOD_STORED = 0;
+
+	/**
+	 * Packs all files of a model directory into a container file.
+	 * 
+	 * Subdirectories are not included.
+	 * 
+	 * @param modeldir
+	 * The model directory
+	 * @param target
+	 * The container file to write
+	 * @param compress
+	 * Whether to deflate the entries. Compressed entries can not be memory mapped, so binary data files are always
+	 * stored uncompressed.
+	 * @throws IOException
+	 */
+	public static void pack(File modeldir, File target, boolean compress) throws IOException {
+		File[] files = modeldir.listFiles();
+		if (files == null) {
+			throw new IOException("Not a directory: " + modeldir);
+		}
+		List<File> entries = new ArrayList<File>();
+		for (File f : files) {
+			if (f.isFile()) {
+				entries.add(f);
+			}
+		}
+		// Compute the table of contents size
+		long pos = 12;
+		for (File f : entries) {
+			pos += 2 + getUTFLength(f.getName()) + 25;
+		}
+		RandomAccessFile raf = new RandomAccessFile(target, "rw");
+		try {
+			raf.setLength(0);
+			Entry[] toc = new Entry[entries.size()];
+			byte[] buf = new byte[65536];
+			// Write data first
+			raf.seek(pos);
+			for (int i = 0; i < toc.length; i++) {
+				File f = entries.get(i);
+				Entry e = new Entry();
+				e.offset = pos;
+				e.length = f.length();
+				e.compressed = compress && !f.getName().endsWith(".bin");
+				InputStream in = new FileInputStream(f);
+				try {
+					if (e.compressed) {
+						Deflater d = new Deflater(Deflater.BEST_COMPRESSION);
+						DeflaterOutputStream out = new DeflaterOutputStream(new RandomAccessFileOutputStream(raf), d);
+						int n;
+						while ((n = in.read(buf)) > 0) {
+							out.write(buf, 0, n);
+						}
+						out.finish();
+						d.end();
+					} else {
+						FileModelManager.transfer(in, raf.getChannel());
+					}
+				} finally {
+					in.close();
+				}
+				e.stored = raf.getFilePointer() - pos;
+				pos = raf.getFilePointer();
+				toc[i] = e;
+			}
+			// Write header and table of contents
+			raf.seek(0);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new RandomAccessFileOutputStream(raf)));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(toc.length);
+			for (int i = 0; i < toc.length; i++) {
+				out.writeUTF(entries.get(i).getName());
+				out.writeLong(toc[i].offset);
+				out.writeLong(toc[i].length);
+				out.writeLong(toc[i].stored);
+				out.writeByte(toc[i].compressed ? METHOD_DEFLATE : METHOD_STORED);
+			}
+			out.flush();
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Returns the number of bytes {@link DataOutputStream#writeUTF(String)} writes for the string, excluding the length
+	 * prefix. Modified UTF-8 encodes the null character with two and supplementary characters with six bytes.
+	 * 
+	 * @param str
+	 * @return The encoded length
+	 * @throws IOException
+	 * If the string is too long to be written
+	 */
+	private static int getUTFLength(String str) throws IOException {
+		int len = 0;
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (c >= 0x0001 && c <= 0x007F) {
+				len++;
+			} else if (c > 0x07FF) {
+				len += 3;
+			} else {
+				len += 2;
+			}
+		}
+		if (len > 65535) {
+			throw new UTFDataFormatException("File name too long: " + str);
+		}
+		return len;
+	}
+
+	private FileChannel channel;
+	private File file;
+	private Map<String, Entry> toc;
+
+	/**
+	 * Opens a container file and reads its table of contents.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public PackedModel(File file) throws IOException {
+		this.file = file;
+		channel = new FileInputStream(file).getChannel();
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (in.readInt() != MAGIC) {
+					throw new IOException("Not a packed model file: " + file);
+				}
+				int version = in.readInt();
+				if (version != VERSION) {
+					throw new IOException("Unsupported packed model version " + version + " in " + file);
+				}
+				int n = in.readInt();
+				toc = new LinkedHashMap<String, Entry>(n * 2);
+				for (int i = 0; i < n; i++) {
+					String name = in.readUTF();
+					Entry e = new Entry();
+					e.offset = in.readLong();
+					e.length = in.readLong();
+					e.stored = in.readLong();
+					e.compressed = in.readByte() == METHOD_DEFLATE;
+					toc.put(name, e);
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes the container file. Buffers obtained via {@link #map(String)} remain valid.
+	 * 
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * @param name
+	 * @return True if the container has an entry with the given name
+	 */
+	public boolean contains(String name) {
+		return toc.containsKey(name);
+	}
+
+	/**
+	 * @return The names of all entries in the container
+	 */
+	public List<String> getEntryNames() {
+		return Collections.unmodifiableList(new ArrayList<String>(toc.keySet()));
+	}
+
+	/**
+	 * @return The container file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	private Entry getEntry(String name) throws IOException {
+		Entry e = toc.get(name);
+		if (e == null) {
+			throw new FileNotFoundException("No entry '" + name + "' in " + file);
+		}
+		return e;
+	}
+
+	/**
+	 * Returns a stream of the (uncompressed) contents of the given entry.
+	 * 
+	 * Uncompressed entries are served from a memory mapped region via a {@link ByteBufferInputStream}.
+	 * 
+	 * @param name
+	 * @return
+	 * @throws IOException
+	 */
+	public InputStream getInputStream(String name) throws IOException {
+		Entry e = getEntry(name);
+		ByteBuffer data = channel.map(MapMode.READ_ONLY, e.offset, e.stored);
+		if (e.compressed) {
+			return new InflaterInputStream(new ByteBufferInputStream(data), new Inflater(), 8192);
+		}
+		return new ByteBufferInputStream(data);
+	}
+
+	/**
+	 * @param name
+	 * @return The uncompressed size of the given entry
+	 * @throws IOException
+	 */
+	public long getSize(String name) throws IOException {
+		return getEntry(name).length;
+	}
+
+	/**
+	 * Maps the contents of an uncompressed entry into memory.
+	 * 
+	 * @param name
+	 * @return A read-only buffer with the entry contents
+	 * @throws IOException
+	 * If the entry does not exist or is compressed
+	 */
+	public ByteBuffer map(String name) throws IOException {
+		Entry e = getEntry(name);
+		if (e.compressed) {
+			throw new IOException("Entry '" + name + "' in " + file + " is compressed and can not be mapped.");
+		}
+		return channel.map(MapMode.READ_ONLY, e.offset, e.stored);
+	}
+
+	/**
+	 * Extracts an entry to the given file.
+	 * 
+	 * @param name
+	 * @param target
+	 * @throws IOException
+	 */
+	public void extract(String name, File target) throws IOException {
+		InputStream in = getInputStream(name);
+		FileOutputStream out = new FileOutputStream(target);
+		try {
+			FileModelManager.transfer(in, out.getChannel());
+		} finally {
+			out.close();
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,250 @@
+package jarmos.io;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manages models stored as packed single-file containers (see {@link PackedModel}) in a root directory.
+ * 
+ * Each file named <model dir> + {@link #PACK_EXTENSION} in the root directory is served as model directory. Compared
+ * to a FileModelManager only one file has to be opened per model, and uncompressed entries are memory mapped.
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public class PackedModelManager extends AModelManager {
+
+	/**
+	 * The file extension of packed model files.
+	 */
+	public static final String PACK_EXTENSION = ".jmp";
+
+	private Map<String, OpenPack> packs = new HashMap<String, OpenPack>();
+	private File root;
+
+	/**
+	 * @param root
+	 * The directory containing the packed model files
+	 */
+	public PackedModelManager(String root) {
+		super();
+		File r = new File(root);
+		if (!r.isDirectory()) {
+			throw new IllegalArgumentException("Directory does not exist: '" + root + "'");
+		}
+		this.root = r;
+	}
+
+	/**
+	 * Returns the (cached) container of the given model directory.
+	 * 
+	 * A cached container is reopened if the container file has been replaced since it was opened, i.e. if its
+	 * version (see {@link #getModelFileVersion(String, String)}) has changed, so that the data always matches the
+	 * reported version. The old container is closed, but buffers and streams obtained from it remain valid.
+	 * 
+	 * @param dir
+	 * @return The container or null if no container exists for dir
+	 * @throws IOException
+	 */
+	private synchronized PackedModel getPack(String dir) throws IOException {
+		File f = new File(root, dir + PACK_EXTENSION);
+		String version = getVersion(f);
+		OpenPack p = packs.get(dir);
+		if (p != null && !p.version.equals(version)) {
+			packs.remove(dir);
+			p.pack.close();
+			p = null;
+		}
+		if (p == null) {
+			if (version == null) {
+				return null;
+			}
+			PackedModel pm = new PackedModel(f);
+			// Make sure the file has not been replaced while opening
+			String opened = getVersion(f);
+			while (!version.equals(opened)) {
+				pm.close();
+				if (opened == null) {
+					return null;
+				}
+				version = opened;
+				pm = new PackedModel(f);
+				opened = getVersion(f);
+			}
+			p = new OpenPack(version, pm);
+			packs.put(dir, p);
+		}
+		return p.pack;
+	}
+
+	/**
+	 * @param f
+	 * The container file
+	 * @return The last modification date and size of the file or null if it does not exist
+	 */
+	private static String getVersion(File f) {
+		return f.isFile() ? f.lastModified() + "-" + f.length() : null;
+	}
+
+	/**
+	 * Returns the container of the current model.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	public PackedModel getCurrentPack() throws IOException {
+		PackedModel p = getPack(getModelDir());
+		if (p == null) {
+			throw new IOException("No packed model file for model '" + getModelDir() + "' in " + root);
+		}
+		return p;
+	}
+
+	/**
+	 * Closes all open container files.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		for (OpenPack p : packs.values()) {
+			p.pack.close();
+		}
+		packs.clear();
+	}
+
+	/**
+	 * Extracts the model's classes jar to a temporary file, as class loaders require a file or URL.
+	 * 
+	 * @see jarmos.io.AModelManager#createClassLoader(java.lang.String)
+	 */
+	@Override
+	protected ClassLoader createClassLoader(String dir) {
+		try {
+			PackedModel p = getPack(dir);
+			if (p == null || !p.contains(CLASSES_JARFILE)) {
+				return null;
+			}
+			// The prefix must have at least three characters
+			File jar = File.createTempFile("jarmos-" + dir + "-", ".jar");
+			jar.deleteOnExit();
+			p.extract(CLASSES_JARFILE, jar);
+			return new URLClassLoader(new URL[] { jar.toURI().toURL() }, ClassLoader.getSystemClassLoader());
+		} catch (MalformedURLException e) {
+			throw new RuntimeException("Creating a class loader URL for model '" + dir + "' failed.", e);
+		} catch (IOException e) {
+			throw new RuntimeException("Extracting " + CLASSES_JARFILE + " of model '" + dir + "' failed.", e);
+		}
+	}
+
+	@Override
+	protected String[] getFolderList() throws IOException {
+		File[] files = root.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File f) {
+				return f.isFile() && f.getName().endsWith(PACK_EXTENSION);
+			}
+		});
+		List<String> res = new ArrayList<String>();
+		if (files != null) {
+			for (File f : files) {
+				String n = f.getName();
+				res.add(n.substring(0, n.length() - PACK_EXTENSION.length()));
+			}
+		}
+		return res.toArray(new String[0]);
+	}
+
+	@Override
+	protected InputStream getInStreamImpl(String filename) throws IOException {
+		return getCurrentPack().getInputStream(filename);
+	}
+
+	@Override
+	protected String getLoadingMessage() {
+		return "Reading packed models";
+	}
+
+	@Override
+	public URI getModelURI() {
+		return new File(root, getModelDir() + PACK_EXTENSION).toURI();
+	}
+
+	@Override
+	protected URI getModelURI(String dir) {
+		return new File(root, dir + PACK_EXTENSION).toURI();
+	}
+
+	/**
+	 * Uses the last modification date and the size of the model's container file.
+	 * 
+	 * @see jarmos.io.AModelManager#getModelFileVersion(java.lang.String, java.lang.String)
+	 */
+	@Override
+	protected String getModelFileVersion(String dir, String filename) {
+		return getVersion(new File(root, dir + PACK_EXTENSION));
+	}
+
+	/**
+	 * Uses the last modification date and the size of the model's container file.
+	 * 
+	 * @see jarmos.io.AModelManager#getCatalogStamp(java.lang.String)
+	 */
+	@Override
+	protected String getCatalogStamp(String dir) {
+		return getModelFileVersion(dir, null);
+	}
+
+	@Override
+	public boolean modelFileExists(String filename) {
+		return modelFileExists(getModelDir(), filename);
+	}
+
+	@Override
+	protected boolean modelFileExists(String dir, String filename) {
+		try {
+			PackedModel p = getPack(dir);
+			return p != null && p.contains(filename);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public List<String> getModelFileList(String dir) throws IOException {
+		PackedModel p = getPack(dir);
+		return p != null ? p.getEntryNames() : null;
+	}
+
+	@Override
+	protected InputStream getModelInStream(String dir, String filename) throws IOException {
+		PackedModel p = getPack(dir);
+		if (p == null) {
+			throw new IOException("No packed model file for model '" + dir + "' in " + root);
+		}
+		return p.getInputStream(filename);
+	}
+
+	/**
+	 * An open container together with the version of the file it was opened from.
+	 */
+	private static class OpenPack {
+		final String version;
+		final PackedModel pack;
+
+		OpenPack(String version, PackedModel pack) {
+			this.version = version;
+			this.pack = pack;
+		}
+	}
+
+}
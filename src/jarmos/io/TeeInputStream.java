@@ -0,0 +1,161 @@
+package jarmos.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * An input stream that writes all bytes read from the wrapped stream to a temporary file next to the target file.
+ *
+ * When the stream is closed, any remaining contents of the wrapped stream are read and written as well, and the
+ * temporary file is renamed to the target file. This way a file can be served to the caller while it is being cached,
+ * and the target file never has partial contents. If reading fails, the temporary file is deleted.
+ *
+ * @author Daniel Wirtz
+ *
+ */
+class TeeInputStream extends FilterInputStream {
+
+	/**
+	 * The buffer size for writing the file
+	 */
+	public static final int BUFFER_SIZE = 65536;
+
+	private boolean closed = false;
+	private boolean failed = false;
+	private FileOutputStream fout;
+	private OutputStream out;
+	private File target;
+	private File tmp;
+	private long written = 0;
+
+	/**
+	 * @param in
+	 * The source stream
+	 * @param target
+	 * The file to write the contents to
+	 * @throws IOException
+	 */
+	TeeInputStream(InputStream in, File target) throws IOException {
+		super(in);
+		this.target = target;
+		tmp = FileModelManager.createTempFile(target);
+		fout = new FileOutputStream(tmp);
+		out = new BufferedOutputStream(fout, BUFFER_SIZE);
+	}
+
+	@Override
+	public int read() throws IOException {
+		try {
+			int b = in.read();
+			if (b >= 0) {
+				out.write(b);
+				written++;
+			}
+			return b;
+		} catch (IOException e) {
+			failed = true;
+			throw e;
+		}
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		try {
+			int n = in.read(b, off, len);
+			if (n > 0) {
+				out.write(b, off, n);
+				written += n;
+			}
+			return n;
+		} catch (IOException e) {
+			failed = true;
+			throw e;
+		}
+	}
+
+	/**
+	 * Skipped bytes are read and written as well.
+	 *
+	 * @see java.io.FilterInputStream#skip(long)
+	 */
+	@Override
+	public long skip(long n) throws IOException {
+		byte[] buf = new byte[(int) Math.min(n, BUFFER_SIZE)];
+		long res = 0;
+		int r;
+		while (res < n && (r = read(buf, 0, (int) Math.min(n - res, buf.length))) > 0) {
+			res += r;
+		}
+		return res;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+
+	/**
+	 * Reads the remaining contents, closes the wrapped stream and moves the temporary file to the target location.
+	 *
+	 * @see java.io.FilterInputStream#close()
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		boolean done = false;
+		try {
+			if (!failed) {
+				// Copy the rest directly to the file channel
+				out.flush();
+				written += FileModelManager.transfer(in, fout.getChannel());
+			}
+			in.close();
+			out.close();
+			if (!failed) {
+				long old = target.length();
+				FileModelManager.replaceFile(tmp, target);
+				done = true;
+				completed(written - old);
+			}
+		} finally {
+			if (!done) {
+				try {
+					in.close();
+					out.close();
+				} catch (IOException e) {
+					// Closing anyways
+				}
+				tmp.delete();
+			}
+		}
+	}
+
+	/**
+	 * Called after the target file has been written completely.
+	 *
+	 * Does nothing by default.
+	 *
+	 * @param delta
+	 * The change of the target file size in bytes
+	 * @throws IOException
+	 */
+	protected void completed(long delta) throws IOException {
+	}
+}
@@ -0,0 +1,175 @@
+package jarmos.io;
+
+import jarmos.ModelDescriptor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A size-bounded LRU cache of decoded model images.
+ * 
+ * Images are only opened and decoded when requested via {@link #get(ModelDescriptor)}, which happens on a small pool
+ * of background threads. This way only the images of models actually displayed are loaded, and at most
+ * {@link #MAX_THREADS} image streams are open at any time. Concurrent requests for the same image share one load.
+ * 
+ * Thumbnails are identified by model directory and content hash, so that a changed model is reloaded.
+ * 
+ * @param <T>
+ * The decoded thumbnail type
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public class ThumbnailCache<T> {
+
+	/**
+	 * The maximum number of images loaded at the same time.
+	 */
+	public static final int MAX_THREADS = 2;
+
+	private final IThumbnailDecoder<T> decoder;
+	private final Map<String, Future<T>> loading = new HashMap<String, Future<T>>();
+	private final LinkedHashMap<String, T> thumbs = new LinkedHashMap<String, T>(16, .75f, true);
+	private final long maxSize;
+	private ExecutorService pool = null;
+	private long size = 0;
+
+	/**
+	 * @param decoder
+	 * The decoder for the model images
+	 * @param maxSize
+	 * The maximum total size of all cached thumbnails as measured by {@link IThumbnailDecoder#getSize(Object)}
+	 */
+	public ThumbnailCache(IThumbnailDecoder<T> decoder, long maxSize) {
+		this.decoder = decoder;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the thumbnail of the given model. If not cached, the image is loaded in the background.
+	 * 
+	 * @param md
+	 * @return A future for the thumbnail, whose value is null if the model has no image. Fails with the IOException if
+	 * the model's image cannot be opened or decoded.
+	 */
+	public synchronized Future<T> get(final ModelDescriptor md) {
+		final String key = getKey(md);
+		T thumb = thumbs.get(key);
+		if (thumb != null) {
+			FutureTask<T> f = new FutureTask<T>(new Runnable() {
+				@Override
+				public void run() {
+				}
+			}, thumb);
+			f.run();
+			return f;
+		}
+		Future<T> f = loading.get(key);
+		if (f == null) {
+			f = getPool().submit(new Callable<T>() {
+				@Override
+				public T call() throws Exception {
+					try {
+						T t = load(md);
+						if (t != null) {
+							put(key, t);
+						}
+						return t;
+					} finally {
+						synchronized (ThumbnailCache.this) {
+							loading.remove(key);
+						}
+					}
+				}
+			});
+			loading.put(key, f);
+		}
+		return f;
+	}
+
+	/**
+	 * Returns the thumbnail of the given model if it is cached.
+	 * 
+	 * @param md
+	 * @return The thumbnail or null
+	 */
+	public synchronized T getIfPresent(ModelDescriptor md) {
+		return thumbs.get(getKey(md));
+	}
+
+	/**
+	 * Removes all cached thumbnails.
+	 */
+	public synchronized void clear() {
+		thumbs.clear();
+		size = 0;
+	}
+
+	/**
+	 * @return The total size of all cached thumbnails
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	private T load(ModelDescriptor md) throws IOException {
+		InputStream in = md.openImage();
+		if (in == null) {
+			return null;
+		}
+		try {
+			return decoder.decode(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	private synchronized void put(String key, T thumb) {
+		T old = thumbs.put(key, thumb);
+		if (old != null) {
+			size -= decoder.getSize(old);
+		}
+		size += decoder.getSize(thumb);
+		// Evict least recently used thumbnails, but always keep the new one
+		Iterator<T> it = thumbs.values().iterator();
+		while (size > maxSize && thumbs.size() > 1) {
+			T t = it.next();
+			if (t == thumb) {
+				continue;
+			}
+			size -= decoder.getSize(t);
+			it.remove();
+		}
+	}
+
+	private String getKey(ModelDescriptor md) {
+		return md.modeldir + ":" + md.contentHash;
+	}
+
+	private synchronized ExecutorService getPool() {
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(MAX_THREADS, new ThreadFactory() {
+				private AtomicInteger cnt = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "ThumbnailCache-" + cnt.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return pool;
+	}
+}
@@ -1,14 +1,23 @@
 package jarmos.io;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.net.URLConnection;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 
 /**
  * A model manager reading models from a remote web location.
@@ -18,6 +27,19 @@ import java.util.Scanner;
  * The getFolderList() method tries to access the file DIRLIST_FILE in that location in order to retrieve the possible
  * model folders located at the remote root url.
  * 
+ * Each line of DIRLIST_FILE may contain a revision of the model after the folder name, separated by whitespace. The
+ * revisions are used to invalidate the model catalog (see {@link #setCatalogFile(java.io.File)}) per model. For
+ * folders without revision, the catalog entry is invalidated whenever DIRLIST_FILE changes.
+ * 
+ * Existence checks via {@link #modelFileExists(String)} are answered by the optional per-model MANIFEST_FILE listing
+ * all model files or, if there is none, by a HEAD request. Both positive and negative results are cached per model
+ * directory until the model's revision changes or {@link #clearCache()} is called. All requests use the keep-alive
+ * connection pool of HttpURLConnection, so responses are always read completely before closing.
+ * 
+ * Each line of MANIFEST_FILE may contain a content hash of the file after the file name, separated by whitespace.
+ * The hash is then used as file version, so that cached copies can be revalidated without any request. Otherwise,
+ * files are revalidated with conditional GET requests based on the ETag or Last-Modified header.
+ * 
  * @author Daniel Wirtz @date 2013-08-07
  * 
  */
@@ -28,8 +50,31 @@ public class WebModelManager extends AModelManager {
 	 */
 	public static final String DIRLIST_FILE = "models.txt";
 
+	/**
+	 * The optional file inside a model folder, listing all files of the model per line.
+	 */
+	public static final String MANIFEST_FILE = "files.txt";
+
+	/**
+	 * Connect and read timeout in milliseconds.
+	 */
+	public static final int TIMEOUT = 15000;
+
 	private URL rooturl;
 
+	private volatile Map<String, String> revisions = new HashMap<String, String>();
+
+	/**
+	 * Known existence of model files per model directory.
+	 */
+	private Map<String, Map<String, Boolean>> existing = new HashMap<String, Map<String, Boolean>>();
+
+	/**
+	 * Manifest contents (file names and hashes, if given) per model directory, or null values if the model has no
+	 * manifest.
+	 */
+	private Map<String, Map<String, String>> manifests = new HashMap<String, Map<String, String>>();
+
 	/**
 	 * @param rooturl
 	 */
@@ -50,15 +95,15 @@ public class WebModelManager extends AModelManager {
 	// }
 
 	/**
-	 * @see jarmos.io.AModelManager#getClassLoader()
+	 * @see jarmos.io.AModelManager#createClassLoader(java.lang.String)
 	 */
 	@Override
-	public ClassLoader getClassLoader() {
+	protected ClassLoader createClassLoader(String dir) {
 		try {
-			URL url = new URL(rooturl + "/" + getModelDir() + "/" + CLASSES_JARFILE);
-			return new URLClassLoader(new URL[] { url }, super.getClassLoader());
+			URL url = new URL(rooturl + "/" + dir + "/" + CLASSES_JARFILE);
+			return new URLClassLoader(new URL[] { url }, ClassLoader.getSystemClassLoader());
 		} catch (MalformedURLException e) {
-			return super.getClassLoader();
+			return null;
 		}
 	}
 
@@ -69,19 +114,77 @@ public class WebModelManager extends AModelManager {
 	 */
 	@Override
 	protected InputStream getInStreamImpl(String filename) throws IOException {
-		URL u = new URL(rooturl + "/" + getModelDir() + "/" + filename);
-		return u.openStream();
+		return getModelInStream(getModelDir(), filename);
+	}
+
+	/**
+	 * Binds the URL to the current model directory at call time.
+	 * 
+	 * @see jarmos.io.AModelManager#getInStreamAsync(java.lang.String)
+	 */
+	@Override
+	public Future<InputStream> getInStreamAsync(final String filename) {
+		final String dir = getModelDir();
+		return getExecutor().submit(new Callable<InputStream>() {
+			@Override
+			public InputStream call() throws Exception {
+				sendFileMessage(filename);
+				long start = System.nanoTime();
+				return instrument(dir, filename, getModelInStream(dir, filename), start);
+			}
+		});
+	}
+
+	/**
+	 * Binds the URL to the current model directory at call time and uses the content length as size hint, if
+	 * available.
+	 * 
+	 * @see jarmos.io.AModelManager#readAllAsync(java.lang.String)
+	 */
+	@Override
+	public Future<byte[]> readAllAsync(final String filename) {
+		final String dir = getModelDir();
+		return getExecutor().submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws Exception {
+				sendFileMessage(filename);
+				long start = System.nanoTime();
+				URLConnection conn = request(dir, filename, false);
+				return readAll(instrument(dir, filename, conn.getInputStream(), start), conn.getContentLength());
+			}
+		});
 	}
 
 	@Override
 	protected String[] getFolderList() throws IOException {
-		URL u = new URL(rooturl + "/" + DIRLIST_FILE);
-		Scanner s = new Scanner(u.openStream());
+		InputStream list = request(null, DIRLIST_FILE, false).getInputStream();
+		CheckedInputStream in = new CheckedInputStream(list, new CRC32());
+		Scanner s = new Scanner(in);
 		List<String> folders = new ArrayList<String>();
+		List<String> revs = new ArrayList<String>();
 		while (s.hasNextLine()) {
-			folders.add(s.nextLine());
+			String line = s.nextLine();
+			String[] parts = line.trim().split("\\s+", 2);
+			folders.add(parts.length > 1 ? parts[0] : line);
+			revs.add(parts.length > 1 ? parts[1] : null);
 		}
 		s.close();
+		// Use the list file's checksum for folders without revision
+		String listrev = "models.txt-" + Long.toHexString(in.getChecksum().getValue());
+		Map<String, String> r = new HashMap<String, String>();
+		for (int i = 0; i < folders.size(); i++) {
+			r.put(folders.get(i), revs.get(i) != null ? revs.get(i) : listrev);
+		}
+		// Forget cached existence of models that have changed
+		synchronized (existing) {
+			for (Map.Entry<String, String> e : revisions.entrySet()) {
+				if (!e.getValue().equals(r.get(e.getKey()))) {
+					existing.remove(e.getKey());
+					manifests.remove(e.getKey());
+				}
+			}
+		}
+		revisions = r;
 		if (folders.size() > 0) {
 			return folders.toArray(new String[0]);
 		} else {
@@ -89,24 +192,311 @@ public class WebModelManager extends AModelManager {
 		}
 	}
 
+	/**
+	 * Returns the folder's revision from the last read DIRLIST_FILE.
+	 * 
+	 * @see jarmos.io.AModelManager#getCatalogStamp(java.lang.String)
+	 */
+	@Override
+	protected String getCatalogStamp(String dir) {
+		return revisions.get(dir);
+	}
+
 	/**
 	 * @see jarmos.io.AModelManager#modelFileExists(java.lang.String)
 	 */
 	@Override
 	public boolean modelFileExists(String filename) {
+		return modelFileExists(getModelDir(), filename);
+	}
+
+	/**
+	 * Answers from the existence cache or the model's manifest, if available, or otherwise sends a HEAD request.
+	 * 
+	 * @see jarmos.io.AModelManager#modelFileExists(java.lang.String, java.lang.String)
+	 */
+	@Override
+	protected boolean modelFileExists(String dir, String filename) {
+		Boolean known = getKnownExistence(dir, filename);
+		if (known != null) {
+			return known;
+		}
 		try {
-			getInStreamImpl(filename).close();
+			release(request(dir, filename, true));
+			setExistence(dir, filename, true);
 			return true;
+		} catch (FileNotFoundException e) {
+			setExistence(dir, filename, false);
+			return false;
 		} catch (IOException e) {
+			// Do not cache other errors
 			return false;
 		}
 	}
 
+	/**
+	 * @see jarmos.io.AModelManager#getModelInStream(java.lang.String, java.lang.String)
+	 */
+	@Override
+	protected InputStream getModelInStream(String dir, String filename) throws IOException {
+		return request(dir, filename, false).getInputStream();
+	}
+
+	/**
+	 * Uses the file's hash from the manifest or, if not available, the ETag or Last-Modified header of a HEAD
+	 * request.
+	 * 
+	 * @see jarmos.io.AModelManager#getModelFileVersion(java.lang.String, java.lang.String)
+	 */
+	@Override
+	protected String getModelFileVersion(String dir, String filename) {
+		String hash = getManifestHash(dir, filename);
+		if (hash != null) {
+			return hash;
+		}
+		try {
+			URLConnection conn = request(dir, filename, true);
+			release(conn);
+			return getVersion(conn);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Compares with the file's hash from the manifest, if available, or sends a conditional GET request otherwise.
+	 * 
+	 * @see jarmos.io.AModelManager#getChangedModelInStream(java.lang.String, java.lang.String, java.lang.String)
+	 */
+	@Override
+	protected VersionedInputStream getChangedModelInStream(String dir, String filename, String version)
+			throws IOException {
+		String hash = getManifestHash(dir, filename);
+		if (hash != null) {
+			return hash.equals(version) ? null : new VersionedInputStream(getModelInStream(dir, filename), hash);
+		}
+		URLConnection conn = request(dir, filename, false, version);
+		if (conn instanceof HttpURLConnection
+				&& ((HttpURLConnection) conn).getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+			release(conn);
+			return null;
+		}
+		return new VersionedInputStream(conn.getInputStream(), getVersion(conn));
+	}
+
+	/**
+	 * Returns the files listed in the model's manifest, if available.
+	 * 
+	 * @see jarmos.io.AModelManager#getModelFileList(java.lang.String)
+	 */
+	@Override
+	public List<String> getModelFileList(String dir) throws IOException {
+		Map<String, String> manifest = getManifest(dir);
+		return manifest != null ? new ArrayList<String>(manifest.keySet()) : null;
+	}
+
+	/**
+	 * Clears all cached existence information and manifests.
+	 */
+	public void clearCache() {
+		synchronized (existing) {
+			existing.clear();
+			manifests.clear();
+		}
+	}
+
+	/**
+	 * Sends a request for the given file and checks the response status. The existence cache is updated for the
+	 * file.
+	 * 
+	 * @param dir
+	 * The model directory or null for files in the root location
+	 * @param filename
+	 * @param head
+	 * Whether to send a HEAD instead of a GET request
+	 * @return The connection, whose response stream must be read completely or released via
+	 * {@link #release(URLConnection)} in order to reuse the connection.
+	 * @throws FileNotFoundException
+	 * If the file does not exist
+	 * @throws IOException
+	 */
+	private URLConnection request(String dir, String filename, boolean head) throws IOException {
+		return request(dir, filename, head, null);
+	}
+
+	/**
+	 * Sends a request for the given file, conditional on the file version if given. The server responds with HTTP
+	 * 304 if the version matches.
+	 * 
+	 * @param dir
+	 * @param filename
+	 * @param head
+	 * @param version
+	 * An ETag or Last-Modified date as returned by {@link #getVersion(URLConnection)}, may be null
+	 * @return The connection
+	 * @throws IOException
+	 * @see #request(String, String, boolean)
+	 */
+	private URLConnection request(String dir, String filename, boolean head, String version) throws IOException {
+		URL u = new URL(rooturl + "/" + (dir != null ? dir + "/" : "") + filename);
+		URLConnection conn = u.openConnection();
+		conn.setConnectTimeout(TIMEOUT);
+		conn.setReadTimeout(TIMEOUT);
+		if (conn instanceof HttpURLConnection) {
+			HttpURLConnection hc = (HttpURLConnection) conn;
+			if (head) {
+				hc.setRequestMethod("HEAD");
+			}
+			if (version != null) {
+				// ETags are quoted, optionally with weak prefix
+				if (version.startsWith("\"") || version.startsWith("W/")) {
+					hc.setRequestProperty("If-None-Match", version);
+				} else {
+					hc.setRequestProperty("If-Modified-Since", version);
+				}
+			}
+			int code = hc.getResponseCode();
+			if (code >= 400) {
+				release(hc);
+				if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE) {
+					if (dir != null) {
+						setExistence(dir, filename, false);
+					}
+					throw new FileNotFoundException(u.toString());
+				}
+				throw new IOException("Server returned HTTP " + code + " for " + u);
+			}
+		}
+		if (dir != null) {
+			setExistence(dir, filename, true);
+		}
+		return conn;
+	}
+
+	/**
+	 * @param conn
+	 * @return The ETag or, if not sent by the server, the Last-Modified header of the response, or null
+	 */
+	private static String getVersion(URLConnection conn) {
+		String version = conn.getHeaderField("ETag");
+		return version != null ? version : conn.getHeaderField("Last-Modified");
+	}
+
+	/**
+	 * Reads and closes the remaining response, so that the connection can be reused.
+	 * 
+	 * @param conn
+	 */
+	private static void release(URLConnection conn) {
+		try {
+			InputStream in = null;
+			if (conn instanceof HttpURLConnection && ((HttpURLConnection) conn).getResponseCode() >= 400) {
+				in = ((HttpURLConnection) conn).getErrorStream();
+			} else {
+				in = conn.getInputStream();
+			}
+			if (in != null) {
+				byte[] buf = new byte[4096];
+				while (in.read(buf) > 0) {
+				}
+				in.close();
+			}
+		} catch (IOException e) {
+			// Connection will not be reused
+		}
+	}
+
+	/**
+	 * @param dir
+	 * @param filename
+	 * @return Whether the file exists according to the cache or manifest, or null if unknown.
+	 */
+	private Boolean getKnownExistence(String dir, String filename) {
+		synchronized (existing) {
+			Map<String, Boolean> m = existing.get(dir);
+			if (m != null && m.containsKey(filename)) {
+				return m.get(filename);
+			}
+		}
+		if (MANIFEST_FILE.equals(filename)) {
+			return null;
+		}
+		Map<String, String> manifest = getManifest(dir);
+		return manifest != null ? manifest.containsKey(filename) : null;
+	}
+
+	/**
+	 * @param dir
+	 * @param filename
+	 * @return The file's hash from the model's manifest or null if not available
+	 */
+	private String getManifestHash(String dir, String filename) {
+		if (MANIFEST_FILE.equals(filename)) {
+			return null;
+		}
+		Map<String, String> manifest = getManifest(dir);
+		return manifest != null ? manifest.get(filename) : null;
+	}
+
+	private void setExistence(String dir, String filename, boolean exists) {
+		synchronized (existing) {
+			Map<String, Boolean> m = existing.get(dir);
+			if (m == null) {
+				m = new HashMap<String, Boolean>();
+				existing.put(dir, m);
+			}
+			m.put(filename, exists);
+		}
+	}
+
+	/**
+	 * Returns the (cached) manifest of the given model directory.
+	 * 
+	 * @param dir
+	 * @return The files listed in the manifest with their hashes (null values if not given), or null if the model
+	 * has no manifest
+	 */
+	private Map<String, String> getManifest(String dir) {
+		synchronized (existing) {
+			if (manifests.containsKey(dir)) {
+				return manifests.get(dir);
+			}
+		}
+		Map<String, String> files = null;
+		try {
+			Scanner s = new Scanner(request(dir, MANIFEST_FILE, false).getInputStream());
+			files = new HashMap<String, String>();
+			files.put(MANIFEST_FILE, null);
+			while (s.hasNextLine()) {
+				String line = s.nextLine().trim();
+				if (line.length() > 0) {
+					String[] parts = line.split("\\s+", 2);
+					files.put(parts[0], parts.length > 1 ? parts[1] : null);
+				}
+			}
+			s.close();
+		} catch (FileNotFoundException e) {
+			// No manifest
+		} catch (IOException e) {
+			// Try again next time
+			return null;
+		}
+		synchronized (existing) {
+			manifests.put(dir, files);
+		}
+		return files;
+	}
+
 	@Override
 	public URI getModelURI() {
 		return URI.create(rooturl.toString());
 	}
 
+	@Override
+	protected URI getModelURI(String dir) {
+		return URI.create(rooturl + "/" + dir);
+	}
+
 	@Override
 	protected String getLoadingMessage() {
 		return "Reading remote models";
@@ -0,0 +1,149 @@
+package jarmos.test;
+
+import static org.junit.Assert.assertTrue;
+import jarmos.IMessageHandler;
+import jarmos.io.AModelManager;
+import jarmos.io.FileModelManager;
+import jarmos.io.IOMetrics;
+import jarmos.io.PackedModel;
+import jarmos.io.PackedModelManager;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Tests the asynchronous file access of the model managers.
+ *
+ * @author Daniel Wirtz
+ *
+ */
+public class AsyncReadTest {
+
+	private static final String MODEL_XML = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+			+ "<model type=\"JRB\" machformat=\"be\"><description><name>async</name></description></model>";
+
+	private static void write(File f, String content) throws IOException {
+		FileOutputStream out = new FileOutputStream(f);
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+	}
+
+	private static void deleteDir(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				deleteDir(f);
+			}
+		}
+		dir.delete();
+	}
+
+	/**
+	 * Creates the model directories m1 and m2 with a data.txt file containing the model name.
+	 *
+	 * @param root
+	 * @throws IOException
+	 */
+	private static void createModels(File root) throws IOException {
+		for (String dir : new String[] { "m1", "m2" }) {
+			File d = new File(root, dir);
+			d.mkdirs();
+			write(new File(d, "model.xml"), MODEL_XML);
+			write(new File(d, "data.txt"), dir);
+		}
+	}
+
+	private static String readAll(InputStream in) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int c;
+		while ((c = in.read()) >= 0) {
+			sb.append((char) c);
+		}
+		in.close();
+		return sb.toString();
+	}
+
+	/**
+	 * Requests data.txt of m1 asynchronously while the executor is blocked, switches to m2 and checks that the
+	 * requests still read m1 and are instrumented.
+	 *
+	 * @param m
+	 * The manager using m1
+	 */
+	private static void checkBoundAtCallTime(AModelManager m) throws Exception {
+		IOMetrics metrics = new IOMetrics();
+		m.addIOListener(metrics);
+		final Thread caller = Thread.currentThread();
+		final CountDownLatch blocked = new CountDownLatch(1);
+		m.addMessageHandler(new IMessageHandler() {
+			@Override
+			public void sendMessage(String msg) {
+				if (Thread.currentThread() != caller) {
+					try {
+						blocked.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			}
+		});
+		Future<InputStream> in = m.getInStreamAsync("data.txt");
+		Future<byte[]> data = m.readAllAsync("data.txt");
+		m.useModel("m2");
+		blocked.countDown();
+		assertTrue("m1".equals(readAll(in.get())));
+		assertTrue("m1".equals(new String(data.get(), "UTF-8")));
+		assertTrue("m2".equals(new String(m.readAllAsync("data.txt").get(), "UTF-8")));
+
+		IOMetrics.FileStats s = metrics.snapshot().get("m1/data.txt");
+		assertTrue(s != null && s.getOpens() == 2 && s.getBytes() == 4);
+		assertTrue(metrics.snapshot().get("m2/data.txt").getOpens() == 1);
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.AModelManager#getInStreamAsync(String)} and
+	 * {@link jarmos.io.AModelManager#readAllAsync(String)} of the default implementation.
+	 */
+	@Test
+	public void testPackedModelManager() throws Exception {
+		File root = new File("./test/async");
+		try {
+			createModels(root);
+			File packed = new File(root, "packed");
+			packed.mkdir();
+			PackedModel.pack(new File(root, "m1"), new File(packed, "m1" + PackedModelManager.PACK_EXTENSION), true);
+			PackedModel.pack(new File(root, "m2"), new File(packed, "m2" + PackedModelManager.PACK_EXTENSION), true);
+			PackedModelManager m = new PackedModelManager(packed.getPath());
+			m.useModel("m1");
+			checkBoundAtCallTime(m);
+			m.shutdown();
+		} finally {
+			deleteDir(root);
+		}
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.FileModelManager#getInStreamAsync(String)} and
+	 * {@link jarmos.io.FileModelManager#readAllAsync(String)}.
+	 */
+	@Test
+	public void testFileModelManager() throws Exception {
+		File root = new File("./test/async");
+		try {
+			createModels(root);
+			FileModelManager m = new FileModelManager(root.getPath());
+			m.useModel("m1");
+			checkBoundAtCallTime(m);
+			m.shutdown();
+		} finally {
+			deleteDir(root);
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+package jarmos.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import jarmos.io.ConcurrentLoader;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+/**
+ * Tests the concurrent loading of model files.
+ *
+ * @author Daniel Wirtz
+ *
+ */
+public class ConcurrentLoaderTest {
+
+	/**
+	 * Test method for {@link jarmos.io.ConcurrentLoader#join()} with loaders nested inside loading tasks, which occupy
+	 * the whole pool while joining.
+	 */
+	@Test
+	public void testNestedJoin() throws Exception {
+		ExecutorService ex = Executors.newSingleThreadExecutor();
+		try {
+			Future<Integer> res = ex.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					ConcurrentLoader outer = new ConcurrentLoader(null, "outer");
+					Future<?>[] f = new Future<?>[4 * ConcurrentLoader.MAX_THREADS];
+					for (int i = 0; i < f.length; i++) {
+						final int n = i;
+						f[i] = outer.submit(new Callable<Integer>() {
+							@Override
+							public Integer call() throws Exception {
+								ConcurrentLoader inner = new ConcurrentLoader(null, "inner");
+								Future<Integer> a = inner.submit(new Callable<Integer>() {
+									@Override
+									public Integer call() throws Exception {
+										Thread.sleep(10);
+										return n;
+									}
+								});
+								Future<Integer> b = inner.submit(new Callable<Integer>() {
+									@Override
+									public Integer call() throws Exception {
+										return 1;
+									}
+								});
+								inner.join();
+								return inner.get(a) + inner.get(b);
+							}
+						});
+					}
+					outer.join();
+					int sum = 0;
+					for (Future<?> fi : f) {
+						sum += (Integer) outer.get(fi);
+					}
+					return sum;
+				}
+			});
+			int n = 4 * ConcurrentLoader.MAX_THREADS;
+			try {
+				assertTrue(res.get(20, TimeUnit.SECONDS) == n * (n - 1) / 2 + n);
+			} catch (TimeoutException e) {
+				fail("Nested loaders did not finish, the pool is deadlocked");
+			}
+		} finally {
+			ex.shutdownNow();
+		}
+	}
+}
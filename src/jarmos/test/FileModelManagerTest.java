@@ -0,0 +1,115 @@
+package jarmos.test;
+
+import static org.junit.Assert.assertTrue;
+import jarmos.io.FileModelManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.junit.Test;
+
+/**
+ * Tests the file transfer paths of the FileModelManager.
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public class FileModelManagerTest {
+
+	private static final String MODEL_XML = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+			+ "<model type=\"JRB\" machformat=\"be\"><description><name>files</name></description></model>";
+
+	/**
+	 * Test method for {@link jarmos.io.FileModelManager#writeModelFile(String, java.io.InputStream)} and
+	 * {@link jarmos.io.FileModelManager#getChannel(String)}.
+	 */
+	@Test
+	public void testTransfer() throws Exception {
+		File root = new File("./test/transfer");
+		File dir = new File(root, "m1");
+		dir.mkdirs();
+		int oldsize = FileModelManager.TransferBufferSize;
+		try {
+			FileOutputStream out = new FileOutputStream(new File(dir, "model.xml"));
+			out.write(MODEL_XML.getBytes("UTF-8"));
+			out.close();
+			byte[] data = new byte[100000];
+			for (int i = 0; i < data.length; i++) {
+				data[i] = (byte) i;
+			}
+
+			FileModelManager m = new FileModelManager(root.getPath());
+			m.useModel("m1");
+			// Buffered copy with a small buffer
+			FileModelManager.TransferBufferSize = 1000;
+			m.writeModelFile("a.bin", new ByteArrayInputStream(data));
+			assertTrue(new File(dir, "a.bin").length() == data.length);
+			// File to file, from the current stream position
+			FileInputStream in = new FileInputStream(new File(dir, "a.bin"));
+			assertTrue(in.skip(10) == 10);
+			m.writeModelFile("b.bin", in);
+			assertTrue(new File(dir, "b.bin").length() == data.length - 10);
+
+			// Positional reads
+			FileChannel ch = m.getChannel("b.bin");
+			try {
+				ByteBuffer buf = ByteBuffer.allocate(4);
+				assertTrue(ch.read(buf, 1000) == 4);
+				for (int i = 0; i < 4; i++) {
+					assertTrue(buf.get(i) == data[1010 + i]);
+				}
+			} finally {
+				ch.close();
+			}
+		} finally {
+			FileModelManager.TransferBufferSize = oldsize;
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+			root.delete();
+		}
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.FileModelManager#getModelFileVersion(String)}: a model.xml rewritten with the
+	 * same size and modification date gets a new version and is parsed again.
+	 */
+	@Test
+	public void testModelXMLVersion() throws Exception {
+		File root = new File("./test/xmlversion");
+		File dir = new File(root, "m1");
+		dir.mkdirs();
+		try {
+			File xml = new File(dir, "model.xml");
+			FileOutputStream out = new FileOutputStream(xml);
+			out.write(MODEL_XML.getBytes("UTF-8"));
+			out.close();
+			long time = xml.lastModified();
+
+			FileModelManager m = new FileModelManager(root.getPath());
+			m.useModel("m1");
+			String version = m.getModelFileVersion("model.xml");
+			assertTrue(version != null && version.equals(m.getModelFileVersion("model.xml")));
+			assertTrue("files".equals(m.getModelXMLTagValue("description.name")));
+
+			out = new FileOutputStream(xml);
+			out.write(MODEL_XML.replace("files", "other").getBytes("UTF-8"));
+			out.close();
+			xml.setLastModified(time);
+			assertTrue(!version.equals(m.getModelFileVersion("model.xml")));
+			m.useModel("m1");
+			assertTrue("other".equals(m.getModelXMLTagValue("description.name")));
+		} finally {
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+			root.delete();
+		}
+	}
+}
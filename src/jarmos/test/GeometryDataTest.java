@@ -0,0 +1,103 @@
+package jarmos.test;
+
+import static org.junit.Assert.assertTrue;
+import jarmos.geometry.GeometryData;
+import jarmos.io.FileModelManager;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Tests the conversion of rbappmit geometry to binary geometry files.
+ *
+ * @author Daniel Wirtz
+ *
+ */
+public class GeometryDataTest {
+
+	private static final String MODEL_XML = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+			+ "<model type=\"rbappmit\" machformat=\"be\"><description><name>geometry</name></description></model>";
+
+	private static void write(File f, String content) throws IOException {
+		FileOutputStream out = new FileOutputStream(f);
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+	}
+
+	private static void deleteDir(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				deleteDir(f);
+			}
+		}
+		dir.delete();
+	}
+
+	/**
+	 * Test method for {@link jarmos.geometry.GeometryData#loadModelGeometry(jarmos.io.AModelManager)} with
+	 * {@link GeometryData#ConvertTextGeometry} set.
+	 */
+	@Test
+	public void testConvertTextGeometry() throws Exception {
+		File root = new File("./test/geometry");
+		File dir = new File(root, "g1");
+		dir.mkdirs();
+		boolean convert = GeometryData.ConvertTextGeometry;
+		GeometryData.ConvertTextGeometry = true;
+		try {
+			write(new File(dir, "model.xml"), MODEL_XML);
+			File geo = new File(dir, "geometry.dat");
+			write(geo, "3\n0 0 0 1 0 0 0 1 0\n2 1\n0 1 2\n0 1 1\n1\n");
+			FileModelManager m = new FileModelManager(root.getPath());
+			m.useModel("g1");
+
+			// Parse and convert
+			GeometryData g = new GeometryData();
+			assertTrue(g.loadModelGeometry(m));
+			assertTrue(new File(dir, GeometryData.RBAPPMIT_INFO_FILE).exists());
+			assertTrue(g.originalVertices[3] == 1);
+
+			// Load the binary files
+			g = new GeometryData();
+			assertTrue(g.loadModelGeometry(m));
+			assertTrue(g.numFaces == 1 && g.faces[2] == 2 && g.originalVertices[3] == 1);
+			assertTrue(g.vertexLTFuncNr[2] == 1);
+			// The decoded files are cached, but each instance gets its own arrays
+			GeometryData g2 = new GeometryData();
+			assertTrue(g2.loadModelGeometry(m));
+			assertTrue(g2.originalVertices != g.originalVertices && g2.faces != g.faces);
+			g2.originalVertices[3] = 7;
+			assertTrue(g.originalVertices[3] == 1);
+
+			// A changed geometry.dat supersedes the binary files
+			write(geo, "3\n0 0 0 2.5 0 0 0 1 0\n2 1\n0 1 2\n0 1 1\n1\n");
+			geo.setLastModified(geo.lastModified() + 2000);
+			g = new GeometryData();
+			assertTrue(g.loadModelGeometry(m));
+			assertTrue(g.originalVertices[3] == 2.5f);
+			g = new GeometryData();
+			assertTrue(g.loadModelGeometry(m));
+			assertTrue(g.originalVertices[3] == 2.5f);
+
+			// Function numbers out of the short range are not converted
+			deleteDir(dir);
+			dir.mkdirs();
+			write(new File(dir, "model.xml"), MODEL_XML);
+			write(geo, "3\n0 0 0 1 0 0 0 1 0\n2 1\n0 1 2\n0 1 40000\n1\n");
+			m = new FileModelManager(root.getPath());
+			m.useModel("g1");
+			g = new GeometryData();
+			assertTrue(g.loadModelGeometry(m));
+			assertTrue(g.vertexLTFuncNr[2] == 40000);
+			assertTrue(!new File(dir, GeometryData.RBAPPMIT_INFO_FILE).exists());
+		} finally {
+			GeometryData.ConvertTextGeometry = convert;
+			deleteDir(root);
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+package jarmos.test;
+
+import static org.junit.Assert.assertTrue;
+import jarmos.io.FileModelManager;
+import jarmos.io.IOMetrics;
+import jarmos.io.MathObjectReader;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.StringWriter;
+
+import org.apache.commons.math.linear.RealVector;
+import org.junit.Test;
+
+/**
+ * Tests the I/O instrumentation of the model managers.
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public class IOMetricsTest {
+
+	private static final String MODEL_XML = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+			+ "<model type=\"JRB\" machformat=\"be\"><description><name>metrics</name></description></model>";
+
+	/**
+	 * Test method for {@link jarmos.io.AModelManager#addIOListener(jarmos.io.IModelIOListener)}.
+	 */
+	@Test
+	public void testMetrics() throws Exception {
+		File root = new File("./test/metrics");
+		File dir = new File(root, "m1");
+		dir.mkdirs();
+		try {
+			FileOutputStream out = new FileOutputStream(new File(dir, "model.xml"));
+			out.write(MODEL_XML.getBytes("UTF-8"));
+			out.close();
+			DataOutputStream dout = new DataOutputStream(new FileOutputStream(new File(dir, "v.bin")));
+			dout.writeInt(100);
+			for (int i = 0; i < 100; i++) {
+				dout.writeDouble(i);
+			}
+			dout.close();
+
+			FileModelManager m = new FileModelManager(root.getPath());
+			m.useModel("m1");
+			IOMetrics metrics = new IOMetrics();
+			m.addIOListener(metrics);
+
+			// Memory mapped
+			MathObjectReader mr = m.getMathObjReader();
+			RealVector v = mr.readVector(m.getInStream("v.bin"));
+			assertTrue(v.getDimension() == 100 && v.getEntry(99) == 99);
+			// Streamed
+			mr.UseMemoryMapping = false;
+			v = mr.readVector(m.getInStream("v.bin"));
+			assertTrue(v.getDimension() == 100 && v.getEntry(99) == 99);
+
+			IOMetrics.FileStats s = metrics.snapshot().get("m1/v.bin");
+			assertTrue(s.getOpens() == 2 && s.getBytes() == 2 * 804);
+			assertTrue(s.getOpenTimes().getCount() == 2 && s.getReadTimes().getCount() == 2);
+			assertTrue(s.getDecodeTimes().getCount() == 2);
+			assertTrue(s.getDecodeTimes().getPercentile(.5) <= s.getDecodeTimes().getMax());
+
+			StringWriter w = new StringWriter();
+			metrics.export(w);
+			assertTrue(w.toString().contains("m1/v.bin\t2\t1608\t"));
+
+			// Not instrumented without listeners
+			m.removeIOListener(metrics);
+			metrics.reset();
+			mr.readVector(m.getInStream("v.bin"));
+			assertTrue(metrics.snapshot().isEmpty());
+		} finally {
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+			root.delete();
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package jarmos.test;
+
+import static org.junit.Assert.assertTrue;
+import jarmos.io.CachingModelManager;
+import jarmos.io.FileModelManager;
+import jarmos.io.MathObjectCache;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.apache.commons.math.linear.RealMatrix;
+import org.apache.commons.math.linear.RealVector;
+import org.junit.Test;
+
+/**
+ * Tests the decoded math objects cache used by the model managers.
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public class MathObjectCacheTest {
+
+	private static final String MODEL_XML = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+			+ "<model type=\"JRB\" machformat=\"be\"><description><name>cached</name></description></model>";
+
+	private static void writeVector(File f, double... values) throws IOException {
+		DataOutputStream out = new DataOutputStream(new FileOutputStream(f));
+		try {
+			out.writeInt(values.length);
+			for (double v : values) {
+				out.writeDouble(v);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.AModelManager#readVector(String)}.
+	 */
+	@Test
+	public void testReadCached() throws Exception {
+		File root = new File("./test/mathcache");
+		File dir = new File(root, "m1");
+		dir.mkdirs();
+		try {
+			FileOutputStream out = new FileOutputStream(new File(dir, "model.xml"));
+			out.write(MODEL_XML.getBytes("UTF-8"));
+			out.close();
+			new File(dir, "classes.jar").createNewFile();
+			new File(dir, "dexclasses.jar").createNewFile();
+			writeVector(new File(dir, "v.bin"), 1, 2, 3);
+
+			FileModelManager m = new FileModelManager(root.getPath());
+			m.useModel("m1");
+			RealVector v = m.readVector("v.bin");
+			assertTrue(v.getDimension() == 3 && v.getEntry(2) == 3);
+			// Decoded only once, also after switching models
+			assertTrue(m.readVector("v.bin") == v);
+			m = new FileModelManager(root.getPath());
+			m.useModel("m1");
+			assertTrue(m.readVector("v.bin") == v);
+			assertTrue(MathObjectCache.getSize() >= 24);
+
+			// Changed files are read again
+			writeVector(new File(dir, "v.bin"), 4, 5, 6, 7);
+			RealVector v2 = m.readVector("v.bin");
+			assertTrue(v2 != v && v2.getDimension() == 4 && v2.getEntry(0) == 4);
+
+			// Without strong references the objects are still softly reachable
+			MathObjectCache.setMaxSize(0);
+			assertTrue(MathObjectCache.getSize() == 0);
+			assertTrue(m.readVector("v.bin") == v2);
+		} finally {
+			MathObjectCache.setMaxSize(MathObjectCache.DEFAULT_MAX_SIZE);
+			MathObjectCache.clear();
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+			root.delete();
+		}
+	}
+
+	private static void deleteDir(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				deleteDir(f);
+			}
+		}
+		dir.delete();
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.AModelManager#readVector(String)} and
+	 * {@link jarmos.io.AModelManager#readMatrix(String)} through a {@link CachingModelManager}, which configures the
+	 * reader of its destination manager.
+	 */
+	@Test
+	public void testReadCaching() throws Exception {
+		File root = new File("./test/mathcache");
+		File dir = new File(root, "source/m1");
+		dir.mkdirs();
+		new File(root, "cache").mkdirs();
+		try {
+			FileOutputStream out = new FileOutputStream(new File(dir, "model.xml"));
+			out.write(MODEL_XML.getBytes("UTF-8"));
+			out.close();
+			new File(dir, "classes.jar").createNewFile();
+			new File(dir, "dexclasses.jar").createNewFile();
+			writeVector(new File(dir, "v.bin"), 1, 2, 3);
+			DataOutputStream dout = new DataOutputStream(new FileOutputStream(new File(dir, "m.bin")));
+			dout.writeInt(2);
+			dout.writeInt(1);
+			dout.writeDouble(5);
+			dout.writeDouble(6);
+			dout.close();
+
+			CachingModelManager m = new CachingModelManager(new FileModelManager(new File(root, "source").getPath()),
+					new FileModelManager(new File(root, "cache").getPath()));
+			m.useModel("m1");
+			RealVector v = m.readVector("v.bin");
+			assertTrue(v.getDimension() == 3 && v.getEntry(2) == 3);
+			assertTrue(new File(root, "cache/m1/v.bin").exists());
+			assertTrue(m.readVector("v.bin") == v);
+			RealMatrix mat = m.readMatrix("m.bin");
+			assertTrue(mat.getRowDimension() == 2 && mat.getEntry(1, 0) == 6);
+			assertTrue(m.readRawDoubleVector("v.bin")[1] == 2);
+		} finally {
+			MathObjectCache.clear();
+			deleteDir(root);
+		}
+	}
+}
@@ -2,9 +2,24 @@ package jarmos.test;
 
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import jarmos.FloatRealMatrix;
+import jarmos.MappedRealMatrix;
+import jarmos.MappedRealVector;
 import jarmos.MathFactory;
 import jarmos.Util;
+import jarmos.io.IRowConsumer;
 import jarmos.io.MathObjectReader;
+import jarmos.io.MathObjectReader.MachineFormats;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
 
 import org.apache.commons.math.linear.RealMatrix;
 import org.apache.commons.math.linear.RealVector;
@@ -73,4 +88,153 @@ public class MathObjectReaderTest {
 		assertTrue(truth.equals(v));
 	}
 
+	/**
+	 * Test method for {@link jarmos.io.MathObjectReader#readMatrix(java.io.InputStream)} using the little endian
+	 * machine format, both via a plain stream and a memory mapped file.
+	 */
+	@Test
+	public void testReadMatrixLittleEndian() throws Exception {
+		double[][] data = new double[][] { new double[] { 0, -.5, 3 },
+				new double[] { 13516.23425666, -13513.336, 1e-8 } };
+		ByteBuffer b = ByteBuffer.allocate(8 + 6 * 8).order(ByteOrder.LITTLE_ENDIAN);
+		b.putInt(2).putInt(3);
+		for (double[] row : data) {
+			for (double d : row) {
+				b.putDouble(d);
+			}
+		}
+		RealMatrix truth = MathFactory.createRealMatrix(data);
+
+		MathObjectReader rd = new MathObjectReader();
+		rd.MachineFormat = MachineFormats.LittleEndian;
+		assertTrue(truth.equals(rd.readMatrix(new ByteArrayInputStream(b.array()))));
+
+		File f = File.createTempFile("lematrix", ".bin");
+		f.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(f);
+		out.write(b.array());
+		out.close();
+		assertTrue(truth.equals(rd.readMatrix(f.getPath())));
+	}
+
+	/**
+	 * Test method for
+	 * {@link jarmos.io.MathObjectReader#readMatrixRows(java.io.InputStream, jarmos.io.IRowConsumer)}.
+	 */
+	@Test
+	public void testReadMatrixRows() throws Exception {
+		MathObjectReader rd = new MathObjectReader();
+		final RealMatrix truth = rd.readMatrix("./test/test2.bin");
+		final int[] cnt = new int[1];
+		rd.readMatrixRows(new FileInputStream("./test/test2.bin"), new IRowConsumer() {
+			@Override
+			public void init(int rows, int cols) {
+				assertTrue(rows == truth.getRowDimension());
+				assertTrue(cols == truth.getColumnDimension());
+			}
+
+			@Override
+			public void row(int index, double[] row) {
+				assertTrue(Arrays.equals(truth.getRow(index), row));
+				cnt[0]++;
+			}
+		});
+		assertTrue(cnt[0] == truth.getRowDimension());
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.MathObjectReader#mapMatrix(java.lang.String)}.
+	 */
+	@Test
+	public void testMapMatrix() throws Exception {
+		MathObjectReader rd = new MathObjectReader();
+		RealMatrix truth = rd.readMatrix("./test/test2.bin");
+		RealMatrix m = rd.mapMatrix("./test/test2.bin");
+		assertTrue(m instanceof MappedRealMatrix);
+		assertTrue(truth.equals(m));
+		double[] v = new double[] { 1, 2, -3 };
+		assertTrue(Arrays.equals(truth.operate(v), m.operate(v)));
+		assertTrue(Arrays.equals(truth.getRow(1), m.getRow(1)));
+
+		RealVector vec = rd.mapVector("./test/testvec.bin");
+		assertTrue(vec instanceof MappedRealVector);
+		assertTrue(rd.readVector("./test/testvec.bin").equals(vec));
+	}
+
+	/**
+	 * Tests that dimensions whose product overflows an int are rejected instead of creating invalid matrices.
+	 */
+	@Test
+	public void testOverflowingDimensions() throws Exception {
+		File f = File.createTempFile("overflow", ".bin");
+		f.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(f);
+		// 65536x65536 matrix header (the int product is zero) with a single value
+		out.write(ByteBuffer.allocate(16).putInt(65536).putInt(65536).putDouble(1).array());
+		out.close();
+		MathObjectReader rd = new MathObjectReader();
+		try {
+			rd.mapMatrix(new FileInputStream(f));
+			fail("Expected an IOException");
+		} catch (IOException e) {
+			// expected
+		}
+		rd.SinglePrecision = true;
+		for (boolean map : new boolean[] { true, false }) {
+			rd.UseMemoryMapping = map;
+			try {
+				rd.readMatrix(new FileInputStream(f));
+				fail("Expected an IOException");
+			} catch (IOException e) {
+				// expected
+			}
+		}
+	}
+
+	/**
+	 * Tests that the matrix views reject negative dimensions and dimensions whose int product overflows.
+	 */
+	@Test
+	public void testMatrixDimensions() throws Exception {
+		// 65536 * 65537 overflows to 65536
+		int[][] dims = { { 65536, 65537 }, { -1, -65536 }, { -2, 1 } };
+		for (int[] d : dims) {
+			try {
+				new MappedRealMatrix(DoubleBuffer.allocate(65536), d[0], d[1]);
+				fail("Created a mapped " + d[0] + "x" + d[1] + " matrix");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+			try {
+				new FloatRealMatrix(new float[65536], d[0], d[1]);
+				fail("Created a " + d[0] + "x" + d[1] + " float matrix");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+			try {
+				new FloatRealMatrix(d[0], d[1]);
+				fail("Created a " + d[0] + "x" + d[1] + " float matrix");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		assertTrue(new MappedRealMatrix(DoubleBuffer.allocate(6), 2, 3).getColumnDimension() == 3);
+		assertTrue(new FloatRealMatrix(2, 3).getRowDimension() == 2);
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.MathObjectReader#readMatrix(java.io.InputStream)} with single precision.
+	 */
+	@Test
+	public void testReadMatrixSinglePrecision() throws Exception {
+		MathObjectReader rd = new MathObjectReader();
+		RealMatrix truth = rd.readMatrix("./test/test2.bin");
+		rd.SinglePrecision = true;
+		RealMatrix m = rd.readMatrix("./test/test2.bin");
+		assertTrue(m instanceof FloatRealMatrix);
+		assertTrue(m.subtract(truth).getNorm() < 1e-3);
+		rd.UseMemoryMapping = false;
+		assertTrue(m.equals(rd.readMatrix("./test/test2.bin")));
+	}
+
 }
@@ -0,0 +1,300 @@
+package jarmos.test;
+
+import static org.junit.Assert.assertTrue;
+import jarmos.ModelDescriptor;
+import jarmos.io.AModelManager;
+import jarmos.io.FileModelManager;
+import jarmos.util.IProgressReporter;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests the persistent model catalog of {@link AModelManager#getModelDescriptors(IProgressReporter)}.
+ *
+ * @author Daniel Wirtz
+ *
+ */
+public class ModelCatalogTest {
+
+	private static final String MODEL_XML = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<model type=\"JRB\">"
+			+ "<description><name>%s</name><short>%s short</short><image>img.png</image></description></model>";
+
+	/**
+	 * A manager recording the model directories it actually describes, i.e. the ones not served from the catalog.
+	 */
+	private static class CountingManager extends FileModelManager {
+		final List<String> described = Collections.synchronizedList(new ArrayList<String>());
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger maxActive = new AtomicInteger();
+		long delay = 0;
+
+		CountingManager(File root, File catalog) {
+			super(root.getPath());
+			setCatalogFile(catalog);
+		}
+
+		@Override
+		protected ModelDescriptor describeModel(String dir) throws IOException {
+			described.add(dir);
+			int n = active.incrementAndGet();
+			synchronized (maxActive) {
+				maxActive.set(Math.max(maxActive.get(), n));
+			}
+			try {
+				if (delay > 0) {
+					Thread.sleep(delay);
+				}
+				return super.describeModel(dir);
+			} catch (InterruptedException e) {
+				throw new IOException("Interrupted");
+			} finally {
+				active.decrementAndGet();
+			}
+		}
+	}
+
+	private static class CountingReporter implements IProgressReporter {
+		int total = -1;
+		int last = 0;
+		boolean finished = false;
+
+		@Override
+		public void setMessage(String msg) {
+		}
+
+		@Override
+		public void progress(int value) {
+			last = Math.max(last, value);
+		}
+
+		@Override
+		public void init(String title, int total) {
+			this.total = total;
+		}
+
+		@Override
+		public void finish() {
+			finished = true;
+		}
+	}
+
+	private static void write(File f, String content) throws IOException {
+		FileOutputStream out = new FileOutputStream(f);
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+	}
+
+	private static String readAll(InputStream in) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int c;
+		while ((c = in.read()) >= 0) {
+			sb.append((char) c);
+		}
+		in.close();
+		return sb.toString();
+	}
+
+	private static void deleteDir(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				deleteDir(f);
+			}
+		}
+		dir.delete();
+	}
+
+	private static void createModel(File root, String dir, String name) throws IOException {
+		File d = new File(root, dir);
+		d.mkdirs();
+		write(new File(d, "model.xml"), String.format(MODEL_XML, name, name));
+		write(new File(d, "img.png"), name);
+	}
+
+	/**
+	 * @param catalog
+	 * @return The number of entries in the catalog file
+	 */
+	private static int getEntryCount(File catalog) throws IOException {
+		DataInputStream in = new DataInputStream(new FileInputStream(catalog));
+		try {
+			in.readInt();
+			in.readInt();
+			return in.readInt();
+		} finally {
+			in.close();
+		}
+	}
+
+	private static ModelDescriptor find(List<ModelDescriptor> mds, String dir) {
+		for (ModelDescriptor md : mds) {
+			if (dir.equals(md.modeldir)) {
+				return md;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.AModelManager#setCatalogFile(File)}: descriptors written to the catalog are read
+	 * back unchanged without describing any model, and an unchanged catalog is not rewritten.
+	 */
+	@Test
+	public void testRoundTrip() throws Exception {
+		File root = new File("./test/catalog");
+		File catalog = new File("./test/catalog.bin");
+		try {
+			createModel(root, "m1", "First");
+			createModel(root, "m2", "Second");
+			// Not a model
+			new File(root, "junk").mkdirs();
+
+			CountingManager m = new CountingManager(root, catalog);
+			List<ModelDescriptor> scanned = m.getModelDescriptors();
+			assertTrue(scanned.size() == 2 && m.described.size() == 3);
+			assertTrue(catalog.exists() && getEntryCount(catalog) == 3);
+
+			catalog.setLastModified(0);
+			m = new CountingManager(root, catalog);
+			List<ModelDescriptor> read = m.getModelDescriptors();
+			// Served from the catalog, including the invalid directory
+			assertTrue(m.described.isEmpty());
+			assertTrue(read.size() == 2);
+			for (ModelDescriptor s : scanned) {
+				ModelDescriptor r = find(read, s.modeldir);
+				assertTrue(r != null && s.title.equals(r.title) && s.type == r.type);
+				assertTrue(s.shortDescription.equals(r.shortDescription) && "img.png".equals(r.imageFile));
+				assertTrue(s.created.getTime() == r.created.getTime() && s.contentHash == r.contentHash);
+				assertTrue(s.title.equals(readAll(r.openImage())));
+			}
+			// Nothing changed, so nothing was written
+			assertTrue(catalog.lastModified() == 0);
+		} finally {
+			deleteDir(root);
+			catalog.delete();
+		}
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.AModelManager#getModelDescriptors()}: only directories whose stamp changed are
+	 * described again.
+	 */
+	@Test
+	public void testStampInvalidation() throws Exception {
+		File root = new File("./test/catalog");
+		File catalog = new File("./test/catalog.bin");
+		try {
+			createModel(root, "m1", "First");
+			createModel(root, "m2", "Second");
+			createModel(root, "m3", "Third");
+			new CountingManager(root, catalog).getModelDescriptors();
+
+			// Changed model.xml
+			File xml = new File(root, "m1/model.xml");
+			long time = xml.lastModified();
+			write(xml, String.format(MODEL_XML, "Changed", "Changed"));
+			xml.setLastModified(time + 2000);
+			// Added file
+			File d2 = new File(root, "m2");
+			time = d2.lastModified();
+			write(new File(d2, "data.bin"), "data");
+			d2.setLastModified(time + 2000);
+
+			CountingManager m = new CountingManager(root, catalog);
+			List<ModelDescriptor> mds = m.getModelDescriptors();
+			Collections.sort(m.described);
+			assertTrue(m.described.equals(Arrays.asList("m1", "m2")));
+			assertTrue("Changed".equals(find(mds, "m1").title));
+			assertTrue("Third".equals(find(mds, "m3").title));
+
+			// The updated stamps have been written
+			m = new CountingManager(root, catalog);
+			m.getModelDescriptors();
+			assertTrue(m.described.isEmpty());
+		} finally {
+			deleteDir(root);
+			catalog.delete();
+		}
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.AModelManager#getModelDescriptors()}: the catalog is rewritten without the
+	 * entries of removed directories.
+	 */
+	@Test
+	public void testRemovedDirectories() throws Exception {
+		File root = new File("./test/catalog");
+		File catalog = new File("./test/catalog.bin");
+		try {
+			createModel(root, "m1", "First");
+			createModel(root, "m2", "Second");
+			new CountingManager(root, catalog).getModelDescriptors();
+			assertTrue(getEntryCount(catalog) == 2);
+
+			deleteDir(new File(root, "m2"));
+			catalog.setLastModified(0);
+			CountingManager m = new CountingManager(root, catalog);
+			List<ModelDescriptor> mds = m.getModelDescriptors();
+			assertTrue(m.described.isEmpty());
+			assertTrue(mds.size() == 1 && "m1".equals(mds.get(0).modeldir));
+			assertTrue(catalog.lastModified() != 0 && getEntryCount(catalog) == 1);
+		} finally {
+			deleteDir(root);
+			catalog.delete();
+		}
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.AModelManager#getModelDescriptors(IProgressReporter)}: directories are scanned
+	 * by at most {@link AModelManager#CATALOG_THREADS} threads, results keep the folder order and the progress is
+	 * reported for every directory.
+	 */
+	@Test
+	public void testConcurrentScan() throws Exception {
+		File root = new File("./test/catalog");
+		File catalog = new File("./test/catalog.bin");
+		try {
+			int n = 3 * AModelManager.CATALOG_THREADS;
+			for (int i = 0; i < n; i++) {
+				createModel(root, "m" + i, "Model " + i);
+			}
+			CountingManager m = new CountingManager(root, catalog);
+			m.delay = 50;
+			CountingReporter pr = new CountingReporter();
+			List<ModelDescriptor> mds = m.getModelDescriptors(pr);
+			assertTrue(m.maxActive.get() > 1 && m.maxActive.get() <= AModelManager.CATALOG_THREADS);
+			assertTrue(pr.total == n && pr.last == n && pr.finished);
+
+			String[] folders = root.list();
+			assertTrue(mds.size() == n && folders.length == n);
+			for (int i = 0; i < n; i++) {
+				assertTrue(folders[i].equals(mds.get(i).modeldir));
+				assertTrue(("Model " + folders[i].substring(1)).equals(mds.get(i).title));
+			}
+			assertTrue(getEntryCount(catalog) == n);
+
+			// Served from the catalog in the same order
+			m = new CountingManager(root, catalog);
+			List<ModelDescriptor> read = m.getModelDescriptors();
+			assertTrue(m.described.isEmpty() && read.size() == n);
+			for (int i = 0; i < n; i++) {
+				assertTrue(mds.get(i).modeldir.equals(read.get(i).modeldir));
+			}
+		} finally {
+			deleteDir(root);
+			catalog.delete();
+		}
+	}
+}
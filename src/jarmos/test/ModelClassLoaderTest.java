@@ -0,0 +1,72 @@
+package jarmos.test;
+
+import static org.junit.Assert.assertTrue;
+import jarmos.io.FileModelManager;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+/**
+ * Tests the caching of model class loaders.
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public class ModelClassLoaderTest {
+
+	private static final String MODEL_XML = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+			+ "<model type=\"JRB\" machformat=\"be\"><description><name>classes</name></description></model>";
+
+	/**
+	 * Test method for {@link jarmos.io.AModelManager#getClassLoader()}.
+	 */
+	@Test
+	public void testCachedClassLoader() throws Exception {
+		File root = new File("./test/classloaders");
+		File dir = new File(root, "m1");
+		dir.mkdirs();
+		try {
+			FileOutputStream out = new FileOutputStream(new File(dir, "model.xml"));
+			out.write(MODEL_XML.getBytes("UTF-8"));
+			out.close();
+			File jar = new File(dir, "classes.jar");
+			jar.createNewFile();
+			new File(dir, "dexclasses.jar").createNewFile();
+
+			FileModelManager m = new FileModelManager(root.getPath());
+			m.useModel("m1");
+			ClassLoader cl = m.getClassLoader();
+			assertTrue(cl != ClassLoader.getSystemClassLoader());
+			assertTrue(m.getClassLoader() == cl);
+			assertTrue(m.loadModelClass("java.util.ArrayList") instanceof ArrayList);
+
+			// Shared by managers of the same model
+			FileModelManager m2 = new FileModelManager(root.getPath());
+			m2.useModel("m1");
+			assertTrue(m2.getClassLoader() == cl);
+
+			// A new version of the classes gets a new loader
+			out = new FileOutputStream(jar);
+			out.write(0);
+			out.close();
+			m2.useModel("m1");
+			ClassLoader cl2 = m2.getClassLoader();
+			assertTrue(cl2 != cl);
+
+			// Unloading evicts the loader
+			m2.unloadModel();
+			m.useModel("m1");
+			assertTrue(m.getClassLoader() != cl2);
+			m.unloadModel();
+		} finally {
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+			root.delete();
+		}
+	}
+}
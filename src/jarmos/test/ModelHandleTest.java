@@ -0,0 +1,103 @@
+package jarmos.test;
+
+import static org.junit.Assert.assertTrue;
+import jarmos.ModelType;
+import jarmos.io.FileModelManager;
+import jarmos.io.MathObjectCache;
+import jarmos.io.MathObjectReader.MachineFormats;
+import jarmos.io.ModelHandle;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math.linear.RealVector;
+import org.junit.Test;
+
+/**
+ * Tests the use of several models of one manager via model handles.
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public class ModelHandleTest {
+
+	private static void writeModel(File dir, String machformat, String param, double value) throws IOException {
+		dir.mkdirs();
+		String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<model type=\"JRB\" machformat=\"" + machformat
+				+ "\"><description><name>" + dir.getName() + "</name></description><parameters><param name=\""
+				+ param + "\" min=\"0\" max=\"1\"/></parameters></model>";
+		FileOutputStream out = new FileOutputStream(new File(dir, "model.xml"));
+		out.write(xml.getBytes("UTF-8"));
+		out.close();
+		// Big endian vector of dimension one
+		DataOutputStream dout = new DataOutputStream(new FileOutputStream(new File(dir, "v.bin")));
+		try {
+			dout.writeInt(1);
+			dout.writeDouble(value);
+		} finally {
+			dout.close();
+		}
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.AModelManager#open(String)}.
+	 */
+	@Test
+	public void testOpen() throws Exception {
+		File root = new File("./test/handles");
+		ExecutorService ex = Executors.newFixedThreadPool(4);
+		try {
+			writeModel(new File(root, "m1"), "be", "a", 1);
+			writeModel(new File(root, "m2"), "be", "b", 2);
+			writeModel(new File(root, "m3"), "le", "c", 3);
+
+			final FileModelManager m = new FileModelManager(root.getPath());
+			m.useModel("m1");
+			ModelHandle h3 = m.open("m3");
+			assertTrue(h3.getModelDir().equals("m3") && h3.getModelType() == ModelType.JRB);
+			assertTrue(h3.getMathObjReader().MachineFormat == MachineFormats.LittleEndian);
+			assertTrue(h3.getParameters().getName(0).equals("c"));
+			// The current model is unchanged
+			assertTrue(m.getModelDir().equals("m1") && m.getParameters().getName(0).equals("a"));
+			assertTrue(m.getMathObjReader().MachineFormat == MachineFormats.BigEndian);
+
+			// Concurrent use of several models
+			List<Future<Double>> res = new ArrayList<Future<Double>>();
+			for (int i = 0; i < 12; i++) {
+				final String dir = "m" + (i % 2 + 1);
+				res.add(ex.submit(new Callable<Double>() {
+					@Override
+					public Double call() throws Exception {
+						ModelHandle h = m.open(dir);
+						return h.readVector("v.bin").getEntry(0);
+					}
+				}));
+			}
+			for (int i = 0; i < res.size(); i++) {
+				assertTrue(res.get(i).get() == i % 2 + 1);
+			}
+
+			// Decoded objects are shared with the manager
+			RealVector v = m.readVector("v.bin");
+			assertTrue(m.open("m1").readVector("v.bin") == v);
+		} finally {
+			ex.shutdown();
+			MathObjectCache.clear();
+			for (File d : root.listFiles()) {
+				for (File f : d.listFiles()) {
+					f.delete();
+				}
+				d.delete();
+			}
+			root.delete();
+		}
+	}
+}
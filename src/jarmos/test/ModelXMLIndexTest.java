@@ -0,0 +1,140 @@
+package jarmos.test;
+
+import static org.junit.Assert.assertTrue;
+import jarmos.io.FileModelManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Tests the model.xml index used by the model managers.
+ *
+ * @author Daniel Wirtz
+ *
+ */
+public class ModelXMLIndexTest {
+
+	private static final String MODEL_XML = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+			+ "<model type=\"JRB\" machformat=\"be\">"
+			+ "<description><name>Test <b>bold</b> name</name><short>s</short></description>"
+			+ "<parameters><param name=\"a\" min=\"0\" max=\"1\"/>"
+			+ "<param name=\"b\" min=\"1\" max=\"2\" default=\"1.5\"/></parameters>"
+			+ "<visual><fields><field type=\"Displacement3D\" mapping=\"VERTEX\">d</field></fields></visual>"
+			+ "<nested><name>other</name><b>second</b></nested><package>pkg</package></model>";
+
+	private static final String[] PATHS = { "description.name", "name", "nested.name", "visual.field", "field",
+			"parameters.param", "description.name.b", "b", "nested.b", "package", "description.nothing", "nothing",
+			"model", "", "description..name", "name.description" };
+
+	/**
+	 * Resolves the path like the former DOM based implementation: each segment selects the first element returned by
+	 * getElementsByTagName.
+	 */
+	private static Element getDOMElement(Document doc, String path) {
+		Element cur = doc.getDocumentElement();
+		for (String elem : path.split("\\.")) {
+			NodeList nl = cur.getElementsByTagName(elem);
+			if (nl.getLength() == 0) {
+				return null;
+			}
+			cur = (Element) nl.item(0);
+		}
+		return cur;
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.AModelManager#getModelXMLTagValue(String)},
+	 * {@link jarmos.io.AModelManager#xmlTagExists(String)} and
+	 * {@link jarmos.io.AModelManager#getModelXMLAttribute(String, String)}, compared to DOM's getElementsByTagName.
+	 */
+	@Test
+	public void testDescendantSemantics() throws Exception {
+		File root = new File("./test/xmlindex");
+		File dir = new File(root, "m1");
+		dir.mkdirs();
+		try {
+			FileOutputStream out = new FileOutputStream(new File(dir, "model.xml"));
+			out.write(MODEL_XML.getBytes("UTF-8"));
+			out.close();
+			FileModelManager m = new FileModelManager(root.getPath());
+			m.useModel("m1");
+			Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+					.parse(new ByteArrayInputStream(MODEL_XML.getBytes("UTF-8")));
+
+			for (String path : PATHS) {
+				Element e = getDOMElement(doc, path);
+				String text = m.getModelXMLTagValue(path);
+				assertTrue(path, e != null ? e.getTextContent().equals(text) : text == null);
+				assertTrue(path, m.xmlTagExists(path) == (e != null));
+				assertTrue(path, (e != null ? text : "default").equals(m.getModelXMLTagValue(path, "default")));
+			}
+			// Text content includes all descendants
+			assertTrue("Test bold name".equals(m.getModelXMLTagValue("description.name")));
+			// Segments may skip levels
+			assertTrue("d".equals(m.getModelXMLTagValue("visual.field")));
+			// The document element is not its own descendant
+			assertTrue(m.getModelXMLTagValue("model") == null);
+
+			// Attributes
+			assertTrue("JRB".equals(m.getModelXMLAttribute("type")));
+			assertTrue(m.getModelXMLAttribute("nothing") == null);
+			assertTrue("0".equals(m.getModelXMLAttribute("min", "param")));
+			assertTrue(m.getModelXMLAttribute("default", "param") == null);
+			assertTrue("VERTEX".equals(m.getModelXMLAttribute("mapping", "visual.fields.field")));
+			assertTrue(m.getModelXMLAttribute("mapping", "nothing.field") == null);
+			assertTrue(m.getParameters().getNumParams() == 2);
+		} finally {
+			new File(dir, "model.xml").delete();
+			dir.delete();
+			root.delete();
+		}
+	}
+
+	/**
+	 * Test method for the path memoization of the package-private ModelXMLIndex: resolved and missing paths are
+	 * remembered and return the same result.
+	 */
+	@Test
+	public void testPathMemoization() throws Exception {
+		Class<?> c = Class.forName("jarmos.io.ModelXMLIndex");
+		Method parse = c.getDeclaredMethod("parse", SAXParser.class, InputStream.class);
+		Method get = c.getDeclaredMethod("get", String.class);
+		Field paths = c.getDeclaredField("paths");
+		parse.setAccessible(true);
+		get.setAccessible(true);
+		paths.setAccessible(true);
+
+		Object idx = parse.invoke(null, SAXParserFactory.newInstance().newSAXParser(), new ByteArrayInputStream(
+				MODEL_XML.getBytes("UTF-8")));
+		Map<?, ?> memo = (Map<?, ?>) paths.get(idx);
+		assertTrue(memo.isEmpty());
+
+		Object name = get.invoke(idx, "description.name");
+		assertTrue(name != null && memo.size() == 1);
+		assertTrue(get.invoke(idx, "description.name") == name);
+		// A different path to the same element is remembered separately
+		assertTrue(get.invoke(idx, "name") == name);
+		assertTrue(memo.size() == 2);
+
+		// Misses are remembered as well
+		assertTrue(get.invoke(idx, "description.nothing") == null);
+		assertTrue(memo.size() == 3 && memo.containsKey("description.nothing"));
+		assertTrue(get.invoke(idx, "description.nothing") == null);
+		assertTrue(memo.size() == 3);
+	}
+
+}
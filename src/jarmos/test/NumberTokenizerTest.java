@@ -0,0 +1,75 @@
+package jarmos.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import jarmos.io.NumberTokenizer;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+/**
+ * @author Daniel Wirtz @date 2013-08-07
+ * 
+ */
+public class NumberTokenizerTest {
+
+	/**
+	 * Test method for {@link jarmos.io.NumberTokenizer#nextFloat()} and {@link jarmos.io.NumberTokenizer#nextInt()}.
+	 */
+	@Test
+	public void testTokens() throws Exception {
+		String[] floats = new String[] { "0", "-0.5", "3.14159", "1e-3", "-2.5E+4", "13516.23425666", ".75",
+				"0.000012345678901234567", "123456789012345678901234" };
+		StringBuilder sb = new StringBuilder("42 -7");
+		for (String f : floats) {
+			sb.append(" ").append(f);
+		}
+		sb.append("\n 12 ");
+		// Small buffer to test tokens spanning buffer boundaries
+		NumberTokenizer t = new NumberTokenizer(new StringReader(sb.toString()), 5);
+		assertTrue(t.nextInt() == 42);
+		assertTrue(t.nextShort() == -7);
+		for (String f : floats) {
+			assertTrue(f, t.nextFloat() == Float.parseFloat(f));
+		}
+		assertTrue(t.nextInt() == 12);
+		assertTrue(!t.hasNext());
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.NumberTokenizer#nextDouble()} and {@link jarmos.io.NumberTokenizer#nextFloat()}
+	 * with values that are not exactly convertible by a single floating point operation.
+	 */
+	@Test
+	public void testExactness() throws Exception {
+		String[] values = new String[] { "9007199254740993", "0.1234567890123456789", "4.9e-324", "1e-320",
+				"2.2250738585072014E-308", "-12345678901234567890e-330", "1.7976931348623157e308", "1e400",
+				"3.4028235e38", "1.4e-45", "16777217", "0.3e-30", "123456789.123456789e-5" };
+		StringBuilder sb = new StringBuilder();
+		for (String v : values) {
+			sb.append(v).append(" ").append(v).append(" ");
+		}
+		NumberTokenizer t = new NumberTokenizer(new StringReader(sb.toString()), 7);
+		for (String v : values) {
+			assertTrue(v, t.nextDouble() == Double.parseDouble(v));
+			assertTrue(v, t.nextFloat() == Float.parseFloat(v));
+		}
+		assertTrue(!t.hasNext());
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.NumberTokenizer#nextInt()} with invalid input.
+	 */
+	@Test
+	public void testInvalid() throws Exception {
+		NumberTokenizer t = new NumberTokenizer(new StringReader("1.5"));
+		try {
+			t.nextInt();
+			fail("NumberFormatException expected");
+		} catch (NumberFormatException e) {
+			// expected
+		}
+	}
+
+}
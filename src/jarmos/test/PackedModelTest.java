@@ -0,0 +1,209 @@
+package jarmos.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import jarmos.io.MathObjectReader;
+import jarmos.io.PackedModel;
+import jarmos.io.PackedModelManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * @author Daniel Wirtz @date 2013-08-07
+ * 
+ */
+public class PackedModelTest {
+
+	private static final String MODEL_XML = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+			+ "<model type=\"JRB\" machformat=\"be\"><description><name>packed</name></description></model>";
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[1024];
+		int n;
+		while ((n = in.read(buf)) > 0) {
+			out.write(buf, 0, n);
+		}
+		in.close();
+		return out.toByteArray();
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.PackedModel#pack(java.io.File, java.io.File, boolean)}.
+	 */
+	@Test
+	public void testPackRoundtrip() throws Exception {
+		File f = File.createTempFile("testmodel", ".jmp");
+		f.deleteOnExit();
+		PackedModel.pack(new File("./test"), f, true);
+
+		PackedModel p = new PackedModel(f);
+		try {
+			for (String name : new File("./test").list()) {
+				assertTrue(p.contains(name));
+				byte[] orig = readAll(new FileInputStream(new File("./test", name)));
+				assertTrue(Arrays.equals(orig, readAll(p.getInputStream(name))));
+				assertTrue(p.getSize(name) == orig.length);
+			}
+			assertTrue(!p.contains("nonexistent.bin"));
+
+			// Binary entries are stored uncompressed and read via the mapped buffer
+			MathObjectReader rd = new MathObjectReader();
+			assertTrue(rd.readMatrix("./test/test2.bin").equals(rd.readMatrix(p.getInputStream("test2.bin"))));
+			assertTrue(p.map("test2.bin").capacity() == new File("./test/test2.bin").length());
+		} finally {
+			p.close();
+		}
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.PackedModel#pack(java.io.File, java.io.File, boolean)} with file names whose
+	 * modified UTF-8 encoding is longer than the standard one.
+	 */
+	@Test
+	public void testPackNonASCIINames() throws Exception {
+		File dir = new File("./packnames");
+		dir.mkdirs();
+		File f = File.createTempFile("testmodel", ".jmp");
+		f.deleteOnExit();
+		try {
+			String[] names = { "\u00FCber.txt", "\uD83D\uDE00.bin", "\u6A21\u578B.xml" };
+			for (int i = 0; i < names.length; i++) {
+				FileOutputStream out = new FileOutputStream(new File(dir, names[i]));
+				out.write(new byte[] { (byte) i, 1, 2, 3 });
+				out.close();
+			}
+			PackedModel.pack(dir, f, false);
+
+			PackedModel p = new PackedModel(f);
+			try {
+				// Use the names as stored by the file system, which depend on the platform encoding
+				for (String name : dir.list()) {
+					assertTrue(p.contains(name));
+					byte[] orig = readAll(new FileInputStream(new File(dir, name)));
+					assertTrue(Arrays.equals(orig, readAll(p.getInputStream(name))));
+				}
+			} finally {
+				p.close();
+			}
+		} finally {
+			for (File c : dir.listFiles()) {
+				c.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.PackedModelManager#getClassLoader()} with a model directory name shorter than
+	 * the minimum prefix of temporary files.
+	 */
+	@Test
+	public void testClassLoader() throws Exception {
+		File root = new File("./test/packedclasses");
+		File dir = new File(root, "m1");
+		File packed = new File(root, "packed");
+		dir.mkdirs();
+		packed.mkdirs();
+		try {
+			FileOutputStream out = new FileOutputStream(new File(dir, "model.xml"));
+			out.write(MODEL_XML.getBytes("UTF-8"));
+			out.close();
+			new File(dir, "classes.jar").createNewFile();
+			new File(dir, "dexclasses.jar").createNewFile();
+			PackedModel.pack(dir, new File(packed, "m1" + PackedModelManager.PACK_EXTENSION), false);
+
+			PackedModelManager m = new PackedModelManager(packed.getPath());
+			try {
+				m.useModel("m1");
+				ClassLoader cl = m.getClassLoader();
+				assertTrue(cl instanceof URLClassLoader);
+				File jar = new File(((URLClassLoader) cl).getURLs()[0].toURI());
+				assertTrue(jar.isFile() && jar.getName().startsWith("jarmos-m1-"));
+				assertTrue(m.loadModelClass("java.util.ArrayList") instanceof ArrayList);
+				m.unloadModel();
+			} finally {
+				m.close();
+			}
+		} finally {
+			for (File d : new File[] { dir, packed }) {
+				for (File c : d.listFiles()) {
+					c.delete();
+				}
+				d.delete();
+			}
+			root.delete();
+		}
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.PackedModelManager#getCurrentPack()}: a repacked model is reopened, so that its
+	 * data matches the reported version.
+	 */
+	@Test
+	public void testRepack() throws Exception {
+		File root = new File("./test/repack");
+		File dir = new File(root, "m1");
+		File packed = new File(root, "packed");
+		dir.mkdirs();
+		packed.mkdirs();
+		File pack = new File(packed, "m1" + PackedModelManager.PACK_EXTENSION);
+		try {
+			FileOutputStream out = new FileOutputStream(new File(dir, "model.xml"));
+			out.write(MODEL_XML.getBytes("UTF-8"));
+			out.close();
+			new File(dir, "classes.jar").createNewFile();
+			new File(dir, "dexclasses.jar").createNewFile();
+			PackedModel.pack(dir, pack, false);
+
+			PackedModelManager m = new PackedModelManager(packed.getPath());
+			try {
+				m.useModel("m1");
+				String version = m.getModelFileVersion("model.xml");
+				PackedModel old = m.getCurrentPack();
+				assertTrue(m.getCurrentPack() == old);
+				assertTrue("packed".equals(m.getModelXMLTagValue("description.name")));
+
+				out = new FileOutputStream(new File(dir, "model.xml"));
+				out.write(MODEL_XML.replace("packed", "repacked").getBytes("UTF-8"));
+				out.close();
+				long time = pack.lastModified();
+				PackedModel.pack(dir, pack, false);
+				pack.setLastModified(time + 2000);
+
+				assertTrue(!version.equals(m.getModelFileVersion("model.xml")));
+				PackedModel p = m.getCurrentPack();
+				assertTrue(p != old && m.getCurrentPack() == p);
+				m.useModel("m1");
+				assertTrue("repacked".equals(m.getModelXMLTagValue("description.name")));
+				// The old container has been closed
+				try {
+					old.getInputStream("model.xml");
+					fail("The replaced container is still open");
+				} catch (IOException e) {
+				}
+			} finally {
+				m.close();
+			}
+		} finally {
+			for (File d : new File[] { dir, packed }) {
+				for (File c : d.listFiles()) {
+					c.delete();
+				}
+				d.delete();
+			}
+			root.delete();
+		}
+	}
+
+}
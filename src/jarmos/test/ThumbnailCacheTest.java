@@ -0,0 +1,178 @@
+package jarmos.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import jarmos.ModelDescriptor;
+import jarmos.ModelType;
+import jarmos.io.FileModelManager;
+import jarmos.io.IThumbnailDecoder;
+import jarmos.io.ThumbnailCache;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * @author Daniel Wirtz
+ * 
+ */
+public class ThumbnailCacheTest {
+
+	private static ThumbnailCache<byte[]> createCache(long maxSize) {
+		return new ThumbnailCache<byte[]>(new IThumbnailDecoder<byte[]>() {
+			@Override
+			public byte[] decode(InputStream in) throws IOException {
+				byte[] res = new byte[in.available()];
+				in.read(res);
+				return res;
+			}
+
+			@Override
+			public int getSize(byte[] thumb) {
+				return thumb.length;
+			}
+		}, maxSize);
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.ThumbnailCache#get(jarmos.ModelDescriptor)}.
+	 */
+	@Test
+	public void testLazyLRU() throws Exception {
+		final AtomicInteger opened = new AtomicInteger();
+		ModelDescriptor[] mds = new ModelDescriptor[3];
+		for (int i = 0; i < mds.length; i++) {
+			final int size = 10 * (i + 1);
+			mds[i] = new ModelDescriptor("m" + i, "Model " + i, ModelType.JRB, new Callable<InputStream>() {
+				@Override
+				public InputStream call() throws Exception {
+					opened.incrementAndGet();
+					return new ByteArrayInputStream(new byte[size]);
+				}
+			}, new Date());
+		}
+		// Nothing is opened before a thumbnail is requested
+		assertTrue(opened.get() == 0);
+
+		ThumbnailCache<byte[]> c = createCache(50);
+
+		assertTrue(c.get(mds[0]).get().length == 10);
+		assertTrue(c.get(mds[1]).get().length == 20);
+		// Served from cache
+		assertTrue(c.get(mds[0]).get().length == 10);
+		assertTrue(opened.get() == 2);
+		// Exceeds the size, evicts the least recently used model 1
+		assertTrue(c.get(mds[2]).get().length == 30);
+		assertTrue(c.getSize() == 40);
+		assertTrue(c.getIfPresent(mds[1]) == null);
+		assertTrue(c.getIfPresent(mds[0]) != null);
+	}
+
+	private static void write(File f, String content) throws IOException {
+		FileOutputStream out = new FileOutputStream(f);
+		out.write(content.getBytes("UTF-8"));
+		out.close();
+	}
+
+	private static String readAll(InputStream in) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int c;
+		while ((c = in.read()) >= 0) {
+			sb.append((char) c);
+		}
+		in.close();
+		return sb.toString();
+	}
+
+	/**
+	 * Test method for {@link jarmos.ModelDescriptor#openImage()} of descriptors returned by
+	 * {@link jarmos.io.AModelManager#getModelDescriptors()}, scanned and from the catalog.
+	 */
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testImageSources() throws Exception {
+		File root = new File("./test/images");
+		File catalog = new File("./test/images.catalog");
+		try {
+			String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<model type=\"JRB\"><description><name>%s</name>"
+					+ "%s</description></model>";
+			new File(root, "i1").mkdirs();
+			write(new File(root, "i1/model.xml"), String.format(xml, "i1", "<image>img.png</image>"));
+			write(new File(root, "i1/img.png"), "png");
+			new File(root, "i2").mkdirs();
+			write(new File(root, "i2/model.xml"), String.format(xml, "i2", ""));
+			new File(root, "i3").mkdirs();
+			write(new File(root, "i3/model.xml"), String.format(xml, "i3", "<image>missing.png</image>"));
+			// The deprecated accessor falls back to notfound.png if it is on the class path
+			boolean notfound = ModelDescriptor.class.getClassLoader().getResource("notfound.png") != null;
+
+			FileModelManager m = new FileModelManager(root.getPath());
+			m.setCatalogFile(catalog);
+			for (int pass = 0; pass < 2; pass++) {
+				List<ModelDescriptor> mds = m.getModelDescriptors();
+				assertTrue(mds.size() == 3);
+				ThumbnailCache<byte[]> c = createCache(50);
+				for (ModelDescriptor md : mds) {
+					if ("i1".equals(md.modeldir)) {
+						assertTrue("img.png".equals(md.imageFile) && md.image == null);
+						assertTrue("png".equals(readAll(md.openImage())));
+						assertTrue("png".equals(readAll(md.getImage())));
+						assertTrue("png".equals(new String(c.get(md).get(), "UTF-8")));
+						continue;
+					}
+					if ("i2".equals(md.modeldir)) {
+						// No image
+						assertTrue(md.imageFile == null && md.openImage() == null);
+						assertTrue(c.get(md).get() == null);
+					} else {
+						// Declared but missing image
+						assertTrue("missing.png".equals(md.imageFile));
+						try {
+							md.openImage();
+							fail("Opening a missing image must fail");
+						} catch (IOException e) {
+						}
+						try {
+							c.get(md).get();
+							fail("Loading a missing image must fail");
+						} catch (ExecutionException e) {
+							assertTrue(e.getCause() instanceof IOException);
+						}
+					}
+					InputStream in = md.getImage();
+					assertTrue((in != null) == notfound);
+					if (in != null) {
+						in.close();
+					}
+				}
+			}
+			assertTrue(catalog.exists());
+
+			// Descriptors with an image stream
+			InputStream img = new ByteArrayInputStream(new byte[] { 'a' });
+			ModelDescriptor md = new ModelDescriptor("m", "Model", ModelType.JRB, img, new Date());
+			assertTrue(md.image == img);
+			assertTrue("a".equals(readAll(md.openImage())));
+			md = new ModelDescriptor("m", "Model", ModelType.JRB, (InputStream) null, new Date());
+			assertTrue(md.image == null && md.openImage() == null);
+		} finally {
+			for (String dir : new String[] { "i1", "i2", "i3" }) {
+				for (File f : new File(root, dir).listFiles()) {
+					f.delete();
+				}
+				new File(root, dir).delete();
+			}
+			root.delete();
+			catalog.delete();
+		}
+	}
+}
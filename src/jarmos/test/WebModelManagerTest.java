@@ -0,0 +1,507 @@
+package jarmos.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import jarmos.io.CachingModelManager;
+import jarmos.io.FileModelManager;
+import jarmos.io.IOMetrics;
+import jarmos.io.ModelHandle;
+import jarmos.io.WebModelManager;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests the WebModelManager against an embedded http server.
+ * 
+ * @author Daniel Wirtz
+ * 
+ */
+public class WebModelManagerTest {
+
+	private static final String MODEL_XML = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n"
+			+ "<model type=\"JRB\" machformat=\"be\"><description><name>web</name></description></model>";
+
+	/**
+	 * Test method for {@link jarmos.io.WebModelManager#modelFileExists(java.lang.String)}.
+	 */
+	@Test
+	public void testModelFileExists() throws Exception {
+		Map<String, String> files = new HashMap<String, String>();
+		files.put("/m1/model.xml", MODEL_XML);
+		files.put("/m1/data.bin", "somedata");
+		files.put("/m2/model.xml", MODEL_XML);
+		files.put("/m2/files.txt", "model.xml\ndata.bin\n");
+		files.put("/m2/data.bin", "somedata");
+		List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+		HttpServer server = startServer(files, requests);
+		try {
+			WebModelManager m = new WebModelManager("http://127.0.0.1:" + server.getAddress().getPort());
+
+			m.useModel("m1");
+			requests.clear();
+			assertTrue(m.modelFileExists("data.bin"));
+			assertTrue(!m.modelFileExists("other.bin"));
+			// Checked via HEAD requests after looking for a manifest
+			assertTrue(requests.contains("HEAD /m1/data.bin"));
+			assertTrue(!requests.contains("GET /m1/data.bin"));
+			int n = requests.size();
+			// Positive and negative results are cached
+			assertTrue(m.modelFileExists("data.bin"));
+			assertTrue(!m.modelFileExists("other.bin"));
+			assertTrue(requests.size() == n);
+
+			// The manifest answers all existence checks
+			m.useModel("m2");
+			requests.clear();
+			assertTrue(m.modelFileExists("data.bin"));
+			assertTrue(!m.modelFileExists("other.bin"));
+			assertTrue(requests.size() <= 1 && !requests.contains("HEAD /m2/data.bin")
+					&& !requests.contains("HEAD /m2/other.bin"));
+
+			// Reading still works
+			assertTrue(m.getInStream("data.bin").read() == 's');
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.CachingModelManager#prefetch(int, jarmos.util.IProgressReporter)}.
+	 */
+	@Test
+	public void testPrefetch() throws Exception {
+		Map<String, String> files = new HashMap<String, String>();
+		StringBuilder manifest = new StringBuilder("model.xml\nclasses.jar\ndexclasses.jar\n");
+		files.put("/m1/model.xml", MODEL_XML);
+		files.put("/m1/classes.jar", "");
+		files.put("/m1/dexclasses.jar", "");
+		for (int i = 0; i < 10; i++) {
+			files.put("/m1/data" + i + ".bin", "somedata" + i);
+			manifest.append("data" + i + ".bin\n");
+		}
+		files.put("/m1/files.txt", manifest.toString());
+		List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+		HttpServer server = startServer(files, requests);
+		File cache = new File("./test/webcache");
+		try {
+			deleteDir(cache);
+			cache.mkdir();
+			WebModelManager source = new WebModelManager("http://127.0.0.1:" + server.getAddress().getPort());
+			CachingModelManager m = new CachingModelManager(source, new FileModelManager(cache.getPath()));
+			m.useModel("m1");
+			assertTrue(m.prefetch(4, null) > 0);
+			for (int i = 0; i < 10; i++) {
+				assertTrue(new File(cache, "m1/data" + i + ".bin").length() == ("somedata" + i).length());
+			}
+			// Fetched like on access, with the versions stored for revalidation
+			Properties validators = new Properties();
+			InputStream in = new FileInputStream(new File(cache, "m1/" + CachingModelManager.VALIDATORS_FILE));
+			validators.load(in);
+			in.close();
+			assertTrue(validators.getProperty("data3.bin") != null);
+			assertTrue(!new File(cache, "m1/" + CachingModelManager.LOCK_DIR + "/data3.bin").exists());
+			// Served from the cache
+			requests.clear();
+			assertTrue(m.getInStream("data3.bin").read() == 's');
+			assertTrue(m.prefetch(4, null) == 0);
+			assertTrue(!requests.contains("GET /m1/data3.bin"));
+		} finally {
+			server.stop(0);
+			deleteDir(cache);
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link jarmos.io.AModelManager#downloadModel(String, File, int, boolean, jarmos.util.IProgressReporter)} and
+	 * {@link jarmos.io.CachingModelManager#prefetch(int, jarmos.util.IProgressReporter)} with manifest entries
+	 * pointing outside the model directory.
+	 */
+	@Test
+	public void testUnsafeFileNames() throws Exception {
+		Map<String, String> files = new HashMap<String, String>();
+		files.put("/m1/model.xml", MODEL_XML);
+		files.put("/m1/classes.jar", "");
+		files.put("/m1/dexclasses.jar", "");
+		files.put("/m1/../evil.txt", "evil");
+		files.put("/evil.txt", "evil");
+		List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+		HttpServer server = startServer(files, requests);
+		File cache = new File("./test/webcache");
+		File download = new File("./test/webdownload");
+		File evil = new File("./test/evil.txt");
+		try {
+			deleteDir(cache);
+			cache.mkdir();
+			WebModelManager source = new WebModelManager("http://127.0.0.1:" + server.getAddress().getPort());
+			CachingModelManager m = new CachingModelManager(source, new FileModelManager(cache.getPath()));
+			m.useModel("m1");
+			String[] manifests = { "model.xml\n../evil.txt\n", "model.xml\nsub/../../../evil.txt\n",
+					"model.xml\n" + evil.getAbsolutePath() + "\n" };
+			for (String manifest : manifests) {
+				files.put("/m1/files.txt", manifest);
+				source.clearCache();
+				try {
+					m.prefetch(4, null);
+					fail("Prefetched " + manifest);
+				} catch (IOException e) {
+				}
+				try {
+					source.downloadModel("m1", download, 4, true, null);
+					fail("Downloaded " + manifest);
+				} catch (IOException e) {
+				}
+				assertTrue(!evil.exists());
+				assertTrue(!new File(download, "model.xml").exists());
+			}
+			// Names with dots inside the model directory are fine
+			files.put("/m1/files.txt", "model.xml\n..data.bin\n");
+			files.put("/m1/..data.bin", "data");
+			source.clearCache();
+			assertTrue(source.downloadModel("m1", download, 4, true, null) > 0);
+			assertTrue(new File(download, "..data.bin").length() == 4);
+		} finally {
+			server.stop(0);
+			deleteDir(cache);
+			deleteDir(download);
+			evil.delete();
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link jarmos.io.CachingModelManager#setCacheQuota(long, jarmos.io.CachingModelManager.Eviction)}.
+	 */
+	@Test
+	public void testCacheQuota() throws Exception {
+		Map<String, String> files = new HashMap<String, String>();
+		for (int i = 1; i <= 3; i++) {
+			files.put("/m" + i + "/model.xml", MODEL_XML);
+			files.put("/m" + i + "/classes.jar", "");
+			files.put("/m" + i + "/dexclasses.jar", "");
+		}
+		List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+		HttpServer server = startServer(files, requests);
+		File cache = new File("./test/webcache");
+		try {
+			deleteDir(cache);
+			cache.mkdir();
+			WebModelManager source = new WebModelManager("http://127.0.0.1:" + server.getAddress().getPort());
+			CachingModelManager m = new CachingModelManager(source, new FileModelManager(cache.getPath()));
+			m.useModel("m1");
+			long size = m.getCacheSize();
+			assertTrue(size > 0);
+			m.useModel("m2");
+			m.useModel("m1");
+			assertTrue(m.getCacheSize() == 2 * size);
+
+			// m2 is least recently used
+			m.setCacheQuota(2 * size, CachingModelManager.Eviction.LRU);
+			m.useModel("m3");
+			assertTrue(new File(cache, "m1").isDirectory());
+			assertTrue(!new File(cache, "m2").exists());
+			assertTrue(new File(cache, "m3").isDirectory());
+
+			// m3 is least frequently used but pinned as current model
+			m.setCacheQuota(size, CachingModelManager.Eviction.LFU);
+			assertTrue(!new File(cache, "m1").exists());
+			assertTrue(new File(cache, "m3").isDirectory());
+			assertTrue(m.getCacheSize() == size);
+
+			// The journal survives a restart
+			m = new CachingModelManager(source, new FileModelManager(cache.getPath()));
+			assertTrue(m.getCacheSize() == size);
+		} finally {
+			server.stop(0);
+			deleteDir(cache);
+		}
+	}
+
+	/**
+	 * Tests that models in use are not evicted and that managers sharing a cache root merge their journals.
+	 */
+	@Test
+	public void testCacheInUse() throws Exception {
+		Map<String, String> files = new HashMap<String, String>();
+		for (int i = 1; i <= 4; i++) {
+			files.put("/m" + i + "/model.xml", MODEL_XML);
+			files.put("/m" + i + "/classes.jar", "");
+			files.put("/m" + i + "/dexclasses.jar", "");
+		}
+		List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+		HttpServer server = startServer(files, requests);
+		File cache = new File("./test/webcache");
+		try {
+			deleteDir(cache);
+			cache.mkdir();
+			String url = "http://127.0.0.1:" + server.getAddress().getPort();
+			CachingModelManager m = new CachingModelManager(new WebModelManager(url), new FileModelManager(
+					cache.getPath()));
+			// Like another process using the same cache
+			CachingModelManager other = new CachingModelManager(new WebModelManager(url), new FileModelManager(
+					cache.getPath()));
+			m.useModel("m4");
+			m.useModel("m1");
+			other.useModel("m3");
+			ModelHandle h = m.open("m2");
+
+			// Both managers' models are in the journal
+			BufferedReader r = new BufferedReader(new FileReader(new File(cache, ".cachejournal")));
+			Set<String> dirs = new HashSet<String>();
+			String line;
+			while ((line = r.readLine()) != null) {
+				dirs.add(line.split("\t")[0]);
+			}
+			r.close();
+			assertTrue(dirs.containsAll(Arrays.asList("m1", "m2", "m3", "m4")));
+
+			// Only m4 is not in use
+			m.setCacheQuota(1, CachingModelManager.Eviction.LRU);
+			assertTrue(!new File(cache, "m4").exists());
+			assertTrue(new File(cache, "m1").isDirectory());
+			assertTrue(new File(cache, "m2").isDirectory());
+			assertTrue(new File(cache, "m3").isDirectory());
+
+			other.shutdown();
+			m.useModel("m1");
+			assertTrue(!new File(cache, "m3").exists());
+			assertTrue(h.getModelDir().equals("m2") && new File(cache, "m2").isDirectory());
+			m.shutdown();
+		} finally {
+			server.stop(0);
+			deleteDir(cache);
+		}
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.CachingModelManager#revalidate(String, jarmos.util.IProgressReporter)}.
+	 */
+	@Test
+	public void testRevalidate() throws Exception {
+		Map<String, String> files = new HashMap<String, String>();
+		for (int i = 1; i <= 2; i++) {
+			files.put("/m" + i + "/model.xml", MODEL_XML);
+			files.put("/m" + i + "/classes.jar", "");
+			files.put("/m" + i + "/dexclasses.jar", "");
+			files.put("/m" + i + "/data.bin", "somedata");
+		}
+		files.put("/m2/files.txt", "model.xml\nclasses.jar\ndexclasses.jar\ndata.bin 1\n");
+		List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+		HttpServer server = startServer(files, requests);
+		File cache = new File("./test/webcache");
+		try {
+			deleteDir(cache);
+			cache.mkdir();
+			WebModelManager source = new WebModelManager("http://127.0.0.1:" + server.getAddress().getPort());
+			CachingModelManager m = new CachingModelManager(source, new FileModelManager(cache.getPath()));
+
+			// Conditional requests by ETag
+			m.useModel("m1");
+			m.getInStream("data.bin").close();
+			requests.clear();
+			assertTrue(m.revalidate("m1", null) == 0);
+			assertTrue(requests.contains("304 /m1/data.bin"));
+			files.put("/m1/data.bin", "otherdata");
+			assertTrue(m.revalidate("m1", null) == 1);
+			assertTrue(m.getInStream("data.bin").read() == 'o');
+
+			// No requests with content hashes from the manifest
+			m.useModel("m2");
+			m.getInStream("data.bin").close();
+			requests.clear();
+			assertTrue(m.revalidate("m2", null) == 0);
+			assertTrue(!requests.contains("GET /m2/data.bin"));
+			files.put("/m2/data.bin", "otherdata");
+			source.clearCache();
+			assertTrue(m.revalidate("m2", null) == 0);
+			files.put("/m2/files.txt", "model.xml\nclasses.jar\ndexclasses.jar\ndata.bin 2\n");
+			source.clearCache();
+			assertTrue(m.revalidate("m2", null) == 1);
+			assertTrue(m.getInStream("data.bin").read() == 'o');
+
+			// Validators survive a restart
+			m = new CachingModelManager(source, new FileModelManager(cache.getPath()));
+			assertTrue(m.revalidateAll(null) == 0);
+		} finally {
+			server.stop(0);
+			deleteDir(cache);
+		}
+	}
+
+	/**
+	 * Test method for {@link jarmos.io.CachingModelManager#getInStream(String)} serving files while caching them.
+	 */
+	@Test
+	public void testTeeCaching() throws Exception {
+		Map<String, String> files = new HashMap<String, String>();
+		files.put("/m1/model.xml", MODEL_XML);
+		files.put("/m1/classes.jar", "");
+		files.put("/m1/dexclasses.jar", "");
+		StringBuilder data = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			data.append((char) ('a' + i % 26));
+		}
+		files.put("/m1/data.bin", data.toString());
+		List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+		HttpServer server = startServer(files, requests);
+		File cache = new File("./test/webcache");
+		try {
+			deleteDir(cache);
+			cache.mkdir();
+			WebModelManager source = new WebModelManager("http://127.0.0.1:" + server.getAddress().getPort());
+			CachingModelManager m = new CachingModelManager(source, new FileModelManager(cache.getPath()));
+			m.useModel("m1");
+			IOMetrics metrics = new IOMetrics();
+			m.addIOListener(metrics);
+			File f = new File(cache, "m1/data.bin");
+
+			// Served while caching, the cache file appears when complete
+			InputStream in = m.getInStream("data.bin");
+			assertTrue(in.read() == 'a' && in.read() == 'b');
+			assertTrue(!f.exists());
+			File lock = new File(cache, "m1/" + CachingModelManager.LOCK_DIR + "/data.bin");
+			assertTrue(lock.exists());
+			// Closing early completes the file and removes the lock file
+			in.close();
+			assertTrue(f.length() == data.length());
+			assertTrue(m.getCacheSize() >= data.length());
+			assertTrue(!lock.exists());
+
+			// Read from the cache without locking
+			requests.clear();
+			assertTrue(m.readAllAsync("data.bin").get().length == data.length());
+			assertTrue(requests.isEmpty());
+
+			IOMetrics.FileStats s = metrics.snapshot().get("m1/data.bin");
+			assertTrue(s.getOpens() == 2 && s.getCacheMisses() == 1 && s.getCacheHits() == 1);
+			assertTrue(s.getBytes() == 2 + data.length());
+			m.getInStream("data.bin").close();
+			assertTrue(!lock.exists());
+		} finally {
+			server.stop(0);
+			deleteDir(cache);
+		}
+	}
+
+	/**
+	 * Tests that concurrent users of the same uncached file trigger a single download.
+	 */
+	@Test
+	public void testConcurrentFetch() throws Exception {
+		Map<String, String> files = new HashMap<String, String>();
+		files.put("/m1/model.xml", MODEL_XML);
+		files.put("/m1/classes.jar", "");
+		files.put("/m1/dexclasses.jar", "");
+		files.put("/m1/slow.bin", "slowdata");
+		List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+		HttpServer server = startServer(files, requests);
+		File cache = new File("./test/webcache");
+		try {
+			deleteDir(cache);
+			cache.mkdir();
+			WebModelManager source = new WebModelManager("http://127.0.0.1:" + server.getAddress().getPort());
+			CachingModelManager m = new CachingModelManager(source, new FileModelManager(cache.getPath()));
+			m.useModel("m1");
+			List<Future<byte[]>> reads = new ArrayList<Future<byte[]>>();
+			for (int i = 0; i < 8; i++) {
+				reads.add(m.readAllAsync("slow.bin"));
+			}
+			for (Future<byte[]> f : reads) {
+				assertTrue(new String(f.get(), "UTF-8").equals("slowdata"));
+			}
+			assertTrue(Collections.frequency(requests, "GET /m1/slow.bin") == 1);
+			// No temporary files left
+			for (String f : new File(cache, "m1").list()) {
+				assertTrue(!f.endsWith(".tmp"));
+			}
+		} finally {
+			server.stop(0);
+			deleteDir(cache);
+		}
+	}
+
+	private HttpServer startServer(final Map<String, String> files, final List<String> requests) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange ex) throws IOException {
+				String path = ex.getRequestURI().getPath();
+				requests.add(ex.getRequestMethod() + " " + path);
+				String content = files.get(path);
+				if (path.contains("slow")) {
+					try {
+						Thread.sleep(200);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				if (content == null) {
+					ex.sendResponseHeaders(404, -1);
+				} else {
+					byte[] data = content.getBytes("UTF-8");
+					String etag = "\"" + Integer.toHexString(content.hashCode()) + "\"";
+					ex.getResponseHeaders().set("ETag", etag);
+					if (etag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+						requests.add("304 " + path);
+						ex.sendResponseHeaders(304, -1);
+						ex.close();
+						return;
+					}
+					boolean head = "HEAD".equals(ex.getRequestMethod());
+					ex.sendResponseHeaders(200, head || data.length == 0 ? -1 : data.length);
+					if (!head) {
+						OutputStream out = ex.getResponseBody();
+						out.write(data);
+						out.close();
+					}
+				}
+				ex.close();
+			}
+		});
+		server.setExecutor(Executors.newFixedThreadPool(4));
+		server.start();
+		return server;
+	}
+
+	private void deleteDir(File dir) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				deleteDir(f);
+			}
+		}
+		dir.delete();
+	}
+}